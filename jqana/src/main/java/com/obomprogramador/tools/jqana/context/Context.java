@@ -20,14 +20,12 @@
 package com.obomprogramador.tools.jqana.context;
 
 import java.util.ArrayDeque;
-import java.util.ArrayList;
 import java.util.Deque;
 import java.util.List;
 import java.util.ResourceBundle;
 
 import com.obomprogramador.tools.jqana.model.Metric;
 import com.obomprogramador.tools.jqana.model.defaultimpl.DefaultMetric;
-import com.obomprogramador.tools.jqana.model.defaultimpl.MaxLimitVerificationAlgorithm;
 
 /**
  * jQana - Open Source java source code quality analyzer.
@@ -44,6 +42,7 @@ public class Context {
     private List<Metric> validMetrics;
     private ResourceBundle bundle;
     private String statusBeforeException;
+    private MetricRegistry metricRegistry;
 
     /**
      * Just return "Status Before Exception".
@@ -76,6 +75,20 @@ public class Context {
         this.errors = new ArrayDeque<String>();
     }
 
+    /**
+     * Context that shares an already built metric registry. It is a light
+     * weight context, with its own errors and status, to be created for each
+     * analyzed file.
+     * @param metricRegistry MetricRegistry the registry of valid metrics.
+     */
+    public Context(MetricRegistry metricRegistry) {
+        super();
+        this.metricRegistry = metricRegistry;
+        this.bundle = metricRegistry.getBundle();
+        this.validMetrics = metricRegistry.getMetrics();
+        this.errors = new ArrayDeque<String>();
+    }
+
     /**
      * Default constructor.
      * @throws ClassNotFoundException if the class cannot be found.
@@ -96,34 +109,17 @@ public class Context {
      */
     private void getMetricConstants() throws ClassNotFoundException,
             InstantiationException, IllegalAccessException {
-        this.validMetrics = new ArrayList<Metric>();
-
-        // CC
-        Metric ccMetric = new DefaultMetric();
-        ccMetric.setMetricName(bundle.getString("metric.cc.name"));
-        ccMetric.setMetricMessage(bundle.getString("metric.cc.message"));
-        int maxValue = Integer.parseInt(bundle.getString("metric.cc.limit"));
-        ccMetric.setVerificationAlgorithm(new MaxLimitVerificationAlgorithm(
-                maxValue));
-        this.validMetrics.add(ccMetric);
-
-        // LCOM4
-        Metric lcom4Metric = new DefaultMetric();
-        lcom4Metric.setMetricName(bundle.getString("metric.lcom4.name"));
-        lcom4Metric.setMetricMessage(bundle.getString("metric.lcom4.message"));
-        maxValue = Integer.parseInt(bundle.getString("metric.lcom4.limit"));
-        lcom4Metric.setVerificationAlgorithm(new MaxLimitVerificationAlgorithm(
-                maxValue));
-        this.validMetrics.add(lcom4Metric);
-
-        // RFC
-        Metric rfcMetric = new DefaultMetric();
-        rfcMetric.setMetricName(bundle.getString("metric.rfc.name"));
-        rfcMetric.setMetricMessage(bundle.getString("metric.rfc.message"));
-        maxValue = Integer.parseInt(bundle.getString("metric.rfc.limit"));
-        rfcMetric.setVerificationAlgorithm(new MaxLimitVerificationAlgorithm(
-                maxValue));
-        this.validMetrics.add(rfcMetric);
+        this.metricRegistry = new MetricRegistry(this.bundle);
+        this.validMetrics = this.metricRegistry.getMetrics();
+    }
+
+    /**
+     * Getter for the metric registry, which can be shared by other contexts
+     * of the same analysis.
+     * @return MetricRegistry the registry of valid metrics.
+     */
+    public MetricRegistry getMetricRegistry() {
+        return metricRegistry;
     }
 
     /**
@@ -140,6 +136,7 @@ public class Context {
      */
     public void setValidMetrics(List<Metric> validMetrics) {
         this.validMetrics = validMetrics;
+        this.metricRegistry = null;
     }
 
     /**
@@ -180,6 +177,9 @@ public class Context {
      * @return Metric the metric.
      */
     public Metric getCurrentMetric(String metricName) {
+        if (this.metricRegistry != null) {
+            return this.metricRegistry.getMetricByName(metricName);
+        }
         Metric metric = new DefaultMetric();
         metric.setMetricName(metricName);
         int index = this.getValidMetrics().indexOf(metric);
@@ -191,6 +191,18 @@ public class Context {
         return metric;
     }
 
+    /**
+     * Getter for a metric, by its resource id.
+     * @param metricResourceId String the id, for example: "metric.cc.name".
+     * @return Metric the metric, or null, if it is not valid.
+     */
+    public Metric getMetricById(String metricResourceId) {
+        if (this.metricRegistry != null) {
+            return this.metricRegistry.getMetricById(metricResourceId);
+        }
+        return getCurrentMetric(this.bundle.getString(metricResourceId));
+    }
+
     /**
      * Getter for the resource bundle.
      * @return ResourceBundle the bundle.
@@ -200,11 +212,18 @@ public class Context {
     }
 
     /**
-     * Setter for resource bundle.
+     * Setter for resource bundle. The metric registry (if the metrics were
+     * not replaced by "setValidMetrics()") is rebuilt from the new bundle, so,
+     * the metrics' names and limits, and the contexts that share the
+     * registry, agree with it.
      * @param bundle ResourceBundle. 
      */
     public void setBundle(ResourceBundle bundle) {
         this.bundle = bundle;
+        if (this.metricRegistry != null) {
+            this.metricRegistry = new MetricRegistry(bundle);
+            this.validMetrics = this.metricRegistry.getMetrics();
+        }
     }
 
 }
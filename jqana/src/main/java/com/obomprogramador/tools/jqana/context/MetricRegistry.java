@@ -0,0 +1,115 @@
+/**
+ * jQana - Open Source Java(TM) code quality analyzer.
+ * 
+ * Copyright 2013 Cleuton Sampaio de Melo Jr
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * Project website: http://www.jqana.com
+ */
+package com.obomprogramador.tools.jqana.context;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.ResourceBundle;
+
+import com.obomprogramador.tools.jqana.model.Metric;
+import com.obomprogramador.tools.jqana.model.defaultimpl.DefaultMetric;
+import com.obomprogramador.tools.jqana.model.defaultimpl.MaxLimitVerificationAlgorithm;
+
+/**
+ * jQana - Open Source java source code quality analyzer.
+ * 
+ * The valid metrics, built once per analysis from the resource bundle. The
+ * registry is immutable, so, it can be shared by all threads and all files'
+ * contexts. Metrics are found by their resource id (for example:
+ * "metric.cc.name") or by their name. The metric instances must not be
+ * changed.
+ * 
+ * @author Cleuton Sampaio
+ * 
+ */
+public final class MetricRegistry {
+
+    private static final String[] METRIC_IDS = {"metric.cc", "metric.lcom4",
+        "metric.rfc"};
+
+    private final ResourceBundle bundle;
+    private final List<Metric> metrics;
+    private final Map<String, Metric> metricsById;
+    private final Map<String, Metric> metricsByName;
+
+    /**
+     * Constructor with fields.
+     * @param bundle ResourceBundle the bundle with metric names and limits.
+     */
+    public MetricRegistry(ResourceBundle bundle) {
+        super();
+        this.bundle = bundle;
+        List<Metric> list = new ArrayList<Metric>(METRIC_IDS.length);
+        Map<String, Metric> byId = new HashMap<String, Metric>();
+        Map<String, Metric> byName = new HashMap<String, Metric>();
+        for (String id : METRIC_IDS) {
+            Metric metric = new DefaultMetric();
+            metric.setMetricName(bundle.getString(id + ".name"));
+            metric.setMetricMessage(bundle.getString(id + ".message"));
+            int maxValue = Integer.parseInt(bundle.getString(id + ".limit"));
+            metric.setVerificationAlgorithm(new MaxLimitVerificationAlgorithm(
+                    maxValue));
+            list.add(metric);
+            byId.put(id + ".name", metric);
+            byName.put(metric.getMetricName(), metric);
+        }
+        this.metrics = Collections.unmodifiableList(list);
+        this.metricsById = Collections.unmodifiableMap(byId);
+        this.metricsByName = Collections.unmodifiableMap(byName);
+    }
+
+    /**
+     * Getter for the resource bundle.
+     * @return ResourceBundle the bundle.
+     */
+    public ResourceBundle getBundle() {
+        return bundle;
+    }
+
+    /**
+     * Getter for the valid metrics, in report order.
+     * @return List<Metric> unmodifiable list of metrics.
+     */
+    public List<Metric> getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Finds a metric by its resource id.
+     * @param metricResourceId String the id, for example: "metric.cc.name".
+     * @return Metric the metric, or null, if it is not valid.
+     */
+    public Metric getMetricById(String metricResourceId) {
+        return metricsById.get(metricResourceId);
+    }
+
+    /**
+     * Finds a metric by its name.
+     * @param metricName String the metric name.
+     * @return Metric the metric, or null, if it is not valid.
+     */
+    public Metric getMetricByName(String metricName) {
+        return metricsByName.get(metricName);
+    }
+
+}
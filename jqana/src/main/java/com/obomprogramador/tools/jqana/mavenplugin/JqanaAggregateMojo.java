@@ -0,0 +1,155 @@
+/**
+ * jQana - Open Source Java(TM) code quality analyzer.
+ * 
+ * Copyright 2013 Cleuton Sampaio de Melo Jr
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * Project website: http://www.jqana.com
+ */
+package com.obomprogramador.tools.jqana.mavenplugin;
+
+import java.io.File;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.project.MavenProject;
+import org.apache.maven.reporting.MavenReportException;
+
+import com.obomprogramador.tools.jqana.model.Measurement;
+import com.obomprogramador.tools.jqana.model.defaultimpl.AggregateProjectProcessor;
+import com.obomprogramador.tools.jqana.model.defaultimpl.DefaultProjectProcessor;
+import com.obomprogramador.tools.jqana.model.defaultimpl.DefaultXmlGenerator;
+import com.obomprogramador.tools.jqana.parsers.ParsingStatistics;
+
+/**
+ * This is the Mojo of the aggregate report: it analyzes all the modules of
+ * the reactor in one pass, sharing one worker pool. The report shows the
+ * packages of all modules, and each module's measurements are also kept in
+ * "target/jqana-output/jqana-[module].xml".
+ * 
+ * The analysis parameters of the "report" goal apply to all modules, with
+ * the thread pool shared by them. Sharded analysis and archives are not
+ * supported: they are bound to a single project.
+ * 
+ * @author Cleuton Sampaio
+ * 
+ */
+@Mojo(
+        name = "aggregate", aggregator = true)
+public class JqanaAggregateMojo extends JqanaMojo {
+
+    /**
+     * The projects of the reactor.
+     */
+    @Parameter(
+            defaultValue = "${reactorProjects}", readonly = true)
+    private List<MavenProject> reactorProjects;
+
+    @Override
+    public String getDescription(Locale arg0) {
+        return getBundle(arg0).getString("report.aggregate.description");
+    }
+
+    @Override
+    public String getName(Locale arg0) {
+        return getBundle(arg0).getString("report.aggregate.name");
+    }
+
+    @Override
+    public String getOutputName() {
+        return "jqana-aggregate-report";
+    }
+
+    @Override
+    protected String getReportXmlName() {
+        return "jqana-aggregate.xml";
+    }
+
+    @Override
+    protected Measurement measure() throws Exception {
+        if (this.shard != null) {
+            throw new MavenReportException(
+                    "Sharded analysis is not supported by the aggregate report.");
+        }
+        if (this.sourcesArchive != null || this.classesArchive != null) {
+            throw new MavenReportException(
+                    "Archives are not supported by the aggregate report.");
+        }
+        this.context
+                .setStatusBeforeException("Instantiating AggregateProjectProcessor.");
+        AggregateProjectProcessor app = new AggregateProjectProcessor(
+                this.context);
+        app.setLog(getLog());
+        app.setThreads(this.threads);
+        app.setIncludes(this.includes);
+        app.setExcludes(this.excludes);
+        app.setFileTimeBudget(this.fileTimeBudget);
+        app.setChangedSince(this.changedSince);
+        app.setLexerOnlyCc(this.lexerOnlyCc);
+        app.setStreamingParse(this.streamingParse);
+        app.setLargeFileThreshold(this.largeFileThreshold);
+        app.setDecisionProfile(this.decisionProfile);
+        if (this.detailLevel != null) {
+            app.setDetailLevel(DefaultProjectProcessor
+                    .getDetailLevel(this.detailLevel));
+        }
+        for (MavenProject module : this.reactorProjects) {
+            File sourceDir = new File(module.getBuild().getSourceDirectory()
+                    .replace("\\", "/"));
+            if (!sourceDir.isDirectory()) {
+                getLog().debug(">>>>>>> Module without sources: "
+                        + module.getArtifactId());
+                continue;
+            }
+            File objectDir = new File(module.getBuild().getDirectory()
+                    + "/classes");
+            File cacheDir = null;
+            if (this.incremental || this.changedSince != null) {
+                cacheDir = new File(module.getBuild().getDirectory()
+                        + File.separator + "jqana-output");
+            }
+            app.addModule(module.getArtifactId(), sourceDir, objectDir,
+                    cacheDir);
+        }
+
+        this.context
+                .setStatusBeforeException("Invoking aggregate processing. Modules: "
+                        + this.reactorProjects.size());
+        Measurement overall = app.process(this.getProject().getName());
+        this.skippedFiles = app.getSkippedFiles();
+
+        this.context
+                .setStatusBeforeException("Persisting modules' XML files.");
+        DefaultXmlGenerator generator = new DefaultXmlGenerator(this.context);
+        for (Map.Entry<String, Measurement> entry : app
+                .getModuleMeasurements().entrySet()) {
+            persistXml(generator.serialize(entry.getValue()), generator,
+                    "jqana-" + entry.getKey() + ".xml");
+        }
+        if (this.decisionProfile) {
+            this.context
+                    .setStatusBeforeException("Writing the decisions profiles.");
+            for (Map.Entry<String, ParsingStatistics> entry : app
+                    .getModuleStatistics().entrySet()) {
+                persistDecisionProfile(entry.getValue().getDecisionProfiler(),
+                        "jqana-decisions-" + entry.getKey() + ".txt");
+            }
+        }
+        return overall;
+    }
+
+}
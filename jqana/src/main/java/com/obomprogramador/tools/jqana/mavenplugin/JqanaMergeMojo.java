@@ -0,0 +1,83 @@
+/**
+ * jQana - Open Source Java(TM) code quality analyzer.
+ * 
+ * Copyright 2013 Cleuton Sampaio de Melo Jr
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * Project website: http://www.jqana.com
+ */
+package com.obomprogramador.tools.jqana.mavenplugin;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.util.Arrays;
+
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.reporting.MavenReportException;
+
+import com.obomprogramador.tools.jqana.model.Measurement;
+import com.obomprogramador.tools.jqana.model.defaultimpl.DefaultProjectProcessor;
+import com.obomprogramador.tools.jqana.model.defaultimpl.PartialResults;
+
+/**
+ * This is the Mojo of the sharded analysis' merge: it combines the partial
+ * results of all shards (see the "jqana.shard" parameter) into the project's
+ * report, which is identical to the report of the analysis of the whole
+ * project.
+ * 
+ * @author Cleuton Sampaio
+ * 
+ */
+@Mojo(
+        name = "merge")
+public class JqanaMergeMojo extends JqanaMojo {
+
+    /**
+     * Directory with the partial results' files of all shards
+     * ("jqana-shard-i-of-N.xml").
+     */
+    @Parameter(
+            defaultValue = "${project.build.directory}/jqana-output", property = "jqana.partialResults")
+    private File partialResultsDirectory;
+
+    @Override
+    protected Measurement measure() throws Exception {
+        File[] files = this.partialResultsDirectory
+                .listFiles(new FilenameFilter() {
+                    @Override
+                    public boolean accept(File dir, String name) {
+                        return name.startsWith(PartialResults.FILE_PREFIX)
+                                && name.endsWith(".xml");
+                    }
+                });
+        if (files == null || files.length == 0) {
+            throw new MavenReportException("No partial results found in: "
+                    + this.partialResultsDirectory.getPath());
+        }
+        Arrays.sort(files);
+
+        this.context
+                .setStatusBeforeException("Merging partial results. Files: "
+                        + files.length);
+        DefaultProjectProcessor dpp = new DefaultProjectProcessor(
+                this.context);
+        dpp.setLog(getLog());
+        Measurement projectMeasurement = dpp.merge(this.getProject()
+                .getName(), Arrays.asList(files));
+        this.skippedFiles = dpp.getSkippedFiles();
+        return projectMeasurement;
+    }
+
+}
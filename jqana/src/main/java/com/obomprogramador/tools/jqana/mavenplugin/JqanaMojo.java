@@ -25,7 +25,9 @@ import java.io.FileWriter;
 import java.io.IOException;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
 import java.util.Locale;
 import java.util.ResourceBundle;
 
@@ -46,6 +48,8 @@ import com.obomprogramador.tools.jqana.model.Measurement;
 import com.obomprogramador.tools.jqana.model.defaultimpl.DefaultProjectProcessor;
 import com.obomprogramador.tools.jqana.model.defaultimpl.DefaultXml2HtmlConverter;
 import com.obomprogramador.tools.jqana.model.defaultimpl.DefaultXmlGenerator;
+import com.obomprogramador.tools.jqana.model.defaultimpl.PartialResults;
+import com.obomprogramador.tools.jqana.parsers.DecisionProfiler;
 
 /**
  * This is the Mojo that implements jQana maven plugin.
@@ -73,11 +77,142 @@ public class JqanaMojo extends AbstractMavenReport {
     @Parameter(
             defaultValue = "${project.build.sourceDirectory}")
     private File sourceDirectory;
+
+    /**
+     * Sources archive (for example: a "-sources.jar" file). If informed, the
+     * source files are read straight from it, instead of the source
+     * directory, and package names come from the entries' paths.
+     */
+    @Parameter(
+            property = "jqana.sourcesArchive")
+    protected File sourcesArchive;
+
+    /**
+     * Jar (or zip) file with the compiled classes, used by the RFC metric.
+     * If informed, the classes are read straight from it, instead of
+     * "target/classes".
+     */
+    @Parameter(
+            property = "jqana.classesArchive")
+    protected File classesArchive;
+
+    /**
+     * Number of threads used to analyze the source files. The default (1)
+     * processes the files sequentially. Values lower than one mean one thread
+     * per available processor.
+     */
+    @Parameter(
+            defaultValue = "1", property = "jqana.threads")
+    protected int threads;
+
+    /**
+     * Incremental analysis. If true, the measurements of each source file are
+     * kept in "target/jqana-output", and files that have not changed since
+     * the last run are not analyzed again.
+     */
+    @Parameter(
+            defaultValue = "false", property = "jqana.incremental")
+    protected boolean incremental;
+
+    /**
+     * Changed files analysis, for pull request builds. If informed (for
+     * example: "origin/master"), only the source files changed since the
+     * merge base of this git reference are analyzed, and the others'
+     * measurements come from the incremental analysis cache.
+     */
+    @Parameter(
+            property = "jqana.changedSince")
+    protected String changedSince;
+
+    /**
+     * Glob patterns of the source files to analyze, relative to the source
+     * directory (for example: "com/acme/**"). If empty, all java files are
+     * analyzed.
+     */
+    @Parameter
+    protected String[] includes;
+
+    /**
+     * Time budget of each source file, in milliseconds. A file whose analysis
+     * takes longer is skipped, and listed in the report. The default (0)
+     * means no limit.
+     */
+    @Parameter(
+            defaultValue = "0", property = "jqana.fileTimeBudget")
+    protected long fileTimeBudget;
+
+    /**
+     * Sharded analysis, informed as "i/N" (for example: "2/4"). Only the
+     * packages of this shard are analyzed, and they are also kept in
+     * "target/jqana-output/jqana-shard-i-of-N.xml", to be combined by the
+     * "merge" goal.
+     */
+    @Parameter(
+            property = "jqana.shard")
+    protected String shard;
+
+    /**
+     * Glob patterns of the source files (or folders) that must not be
+     * analyzed, relative to the source directory (for example:
+     * "com/acme/generated/**").
+     */
+    @Parameter
+    protected String[] excludes;
+
+    /**
+     * If true, only the cyclomatic complexity is calculated, with the lexer
+     * and a hand-written parser (no parse trees), which is much cheaper.
+     * LCOM4 is not calculated. It only knows the Java 7 syntax.
+     */
+    @Parameter(
+            defaultValue = "false", property = "jqana.lexerOnlyCc")
+    protected boolean lexerOnlyCc;
+
+    /**
+     * If true, the source files are parsed without building parse trees,
+     * with the metric listeners attached to the parser. It uses much less
+     * memory, with the same results.
+     */
+    @Parameter(
+            defaultValue = "false", property = "jqana.streamingParse")
+    protected boolean streamingParse;
+
+    /**
+     * Source files with this size (in bytes), or larger, are parsed through
+     * unbuffered streams, without parse trees, so, the memory used does not
+     * depend on their size. Zero, or less, disables it.
+     */
+    @Parameter(
+            defaultValue = "16777216", property = "jqana.largeFileThreshold")
+    protected long largeFileThreshold;
+
+    /**
+     * If true, the parser's decisions are profiled, and a report, ranking
+     * the decisions by prediction time (with their grammar rules), and the
+     * slowest files, is written to "jqana-output/jqana-decisions.txt". It is
+     * a diagnostics mode: parsing is slower.
+     */
+    @Parameter(
+            defaultValue = "false", property = "jqana.decisionProfile")
+    protected boolean decisionProfile;
+
+    /**
+     * The most detailed measurements kept: "project", "package", "class" or
+     * "method". Below "method", no method measurements are created, and the
+     * report (and the memory used) only has the measurements of the chosen
+     * level and above. The incremental analysis needs "method". Sharded
+     * analyses keep it in their partial results, and the "merge" goal uses
+     * the shards' level.
+     */
+    @Parameter(
+            defaultValue = "method", property = "jqana.detailLevel")
+    protected String detailLevel;
+
     /**
      * The Maven Project.
      */
     @Component
-    private MavenProject project;
+    protected MavenProject project;
 
     /**
      * Doxia Site Renderer.
@@ -107,7 +242,12 @@ public class JqanaMojo extends AbstractMavenReport {
         return "jqana-report";
     }
 
-    private Context context;
+    protected Context context;
+
+    /**
+     * Files skipped because they exceeded the time budget.
+     */
+    protected List<String> skippedFiles = new ArrayList<String>();
 
     @Override
     protected void executeReport(Locale locale) throws MavenReportException {
@@ -166,24 +306,7 @@ public class JqanaMojo extends AbstractMavenReport {
     private void reportPackageMetrics(Sink sink, Locale locale) {
 
         try {
-            this.context
-                    .setStatusBeforeException("Instantiating DefaultProjectProcessor.");
-            DefaultProjectProcessor dpp = new DefaultProjectProcessor(
-                    this.context);
-            dpp.setLog(getLog());
-            File sourceDir = new File(this.project.getModel().getBuild()
-                    .getSourceDirectory().replace("\\", "/"));
-            File objectDir = new File(this.project.getBuild().getDirectory()
-                    + "/classes");
-            getLog().debug(">>>>>>> ObjectDir: " + objectDir.getPath());
-
-            this.context
-                    .setStatusBeforeException("Invoking Package processing. SourceDir: "
-                            + sourceDir.getName()
-                            + ", ObjectDir: "
-                            + objectDir.getName());
-            Measurement projectMeasurement = dpp.process(this.getProject()
-                    .getName(), sourceDir, objectDir);
+            Measurement projectMeasurement = measure();
 
             this.context
                     .setStatusBeforeException("Invoking XML Serialization.");
@@ -192,13 +315,14 @@ public class JqanaMojo extends AbstractMavenReport {
             Document report = generator.serialize(projectMeasurement);
 
             this.context.setStatusBeforeException("Persisting XML file.");
-            persistXml(report, generator);
+            persistXml(report, generator, getReportXmlName());
 
             this.context.setStatusBeforeException("Converting XML to HTML.");
             DefaultXml2HtmlConverter converter = new DefaultXml2HtmlConverter();
             String output = converter.convert(generator
                     .xml2String(report, true));
             sink.rawText(output);
+            reportSkippedFiles(sink, locale);
         } catch (Exception ex) {
             getLog().error(
                     ">>>>>>>>>> jQana Report Error: "
@@ -207,17 +331,122 @@ public class JqanaMojo extends AbstractMavenReport {
         }
     }
 
-    private void persistXml(Document report, DefaultXmlGenerator generator)
-            throws MavenReportException {
-        String targetPath = project.getBuild().getDirectory();
-        File outputDir = new File(targetPath + File.separator + "jqana-output");
+    private void reportSkippedFiles(Sink sink, Locale locale) {
+        if (!this.skippedFiles.isEmpty()) {
+            sink.lineBreak();
+            sink.text(getBundle(locale).getString("report.skippedFiles")
+                    + ":");
+            sink.list();
+            for (String skipped : this.skippedFiles) {
+                sink.listItem();
+                sink.text(skipped);
+                sink.listItem_();
+            }
+            sink.list_();
+        }
+    }
+
+    /**
+     * Measures the project.
+     * @return Measurement the project's measurement.
+     * @throws Exception in case of any error.
+     */
+    protected Measurement measure() throws Exception {
+        this.context
+                .setStatusBeforeException("Instantiating DefaultProjectProcessor.");
+        DefaultProjectProcessor dpp = new DefaultProjectProcessor(
+                this.context);
+        dpp.setLog(getLog());
+        dpp.setThreads(this.threads);
+        dpp.setIncludes(this.includes);
+        dpp.setExcludes(this.excludes);
+        dpp.setFileTimeBudget(this.fileTimeBudget);
+        dpp.setLexerOnlyCc(this.lexerOnlyCc);
+        dpp.setStreamingParse(this.streamingParse);
+        dpp.setLargeFileThreshold(this.largeFileThreshold);
+        dpp.setDecisionProfile(this.decisionProfile);
+        if (this.detailLevel != null) {
+            dpp.setDetailLevel(this.detailLevel);
+        }
+        if (this.incremental || this.changedSince != null) {
+            dpp.setCacheDirectory(getJqanaOutputDirectory());
+            dpp.setChangedSince(this.changedSince);
+        }
+        if (this.shard != null) {
+            dpp.setShard(this.shard);
+            dpp.setPartialResultFile(new File(getJqanaOutputDirectory(),
+                    PartialResults.getFileName(dpp.getShardIndex(),
+                            dpp.getShardCount())));
+        }
+        File sourceDir = new File(this.project.getModel().getBuild()
+                .getSourceDirectory().replace("\\", "/"));
+        if (this.sourcesArchive != null) {
+            sourceDir = this.sourcesArchive;
+        }
+        File objectDir = new File(this.project.getBuild().getDirectory()
+                + "/classes");
+        if (this.classesArchive != null) {
+            objectDir = this.classesArchive;
+        }
+        getLog().debug(">>>>>>> ObjectDir: " + objectDir.getPath());
+
+        this.context
+                .setStatusBeforeException("Invoking Package processing. SourceDir: "
+                        + sourceDir.getName()
+                        + ", ObjectDir: "
+                        + objectDir.getName());
+        Measurement projectMeasurement = dpp.process(this.getProject()
+                .getName(), sourceDir, objectDir);
+        this.skippedFiles = dpp.getSkippedFiles();
+        if (this.decisionProfile) {
+            this.context
+                    .setStatusBeforeException("Writing the decisions profile.");
+            persistDecisionProfile(dpp.getParsingStatistics()
+                    .getDecisionProfiler(), "jqana-decisions.txt");
+        }
+        return projectMeasurement;
+    }
+
+    protected void persistDecisionProfile(DecisionProfiler profiler,
+            String fileName) throws MavenReportException {
+        File outputDir = getJqanaOutputDirectory();
+        if (!outputDir.exists()) {
+            outputDir.mkdirs();
+        }
+        try {
+            BufferedWriter bw = new BufferedWriter(new FileWriter(new File(
+                    outputDir, fileName)));
+            try {
+                profiler.writeReport(bw);
+            } finally {
+                bw.close();
+            }
+            getLog().info(
+                    "Decisions profile: " + profiler.getParsedFiles()
+                            + " files profiled.");
+        } catch (IOException e) {
+            throw new MavenReportException("Decisions profile writing error");
+        }
+    }
+
+    /**
+     * Name of the XML file of the report, inside "target/jqana-output".
+     * @return String the file name.
+     */
+    protected String getReportXmlName() {
+        return "jqana.xml";
+    }
+
+    protected void persistXml(Document report, DefaultXmlGenerator generator,
+            String fileName) throws MavenReportException {
+        File outputDir = getJqanaOutputDirectory();
         if (!outputDir.exists()) {
             outputDir.mkdirs();
         }
         try {
             String xmlOutput = generator.xml2String(report, false);
             File outputXml = new File(outputDir.getPath() + File.separator
-                    + "jqana.xml");
+                    + fileName);
             if (outputXml.exists()) {
                 outputXml.delete();
             }
@@ -234,6 +463,11 @@ public class JqanaMojo extends AbstractMavenReport {
         }
     }
 
+    protected File getJqanaOutputDirectory() {
+        String targetPath = project.getBuild().getDirectory();
+        return new File(targetPath + File.separator + "jqana-output");
+    }
+
     @Override
     protected String getOutputDirectory() {
         return outputDirectory.getAbsolutePath();
@@ -249,7 +483,7 @@ public class JqanaMojo extends AbstractMavenReport {
         return siteRenderer;
     }
 
-    private ResourceBundle getBundle(Locale locale) {
+    protected ResourceBundle getBundle(Locale locale) {
         return ResourceBundle.getBundle("report", locale, this.getClass()
                 .getClassLoader());
     }
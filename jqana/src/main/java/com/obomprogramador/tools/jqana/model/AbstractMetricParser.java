@@ -1,8 +1,16 @@
 package com.obomprogramador.tools.jqana.model;
 
 import org.antlr.v4.runtime.ANTLRInputStream;
+import org.antlr.v4.runtime.BailErrorStrategy;
+import org.antlr.v4.runtime.CharStream;
 import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.ConsoleErrorListener;
+import org.antlr.v4.runtime.DefaultErrorStrategy;
+import org.antlr.v4.runtime.UnbufferedTokenStream;
+import org.antlr.v4.runtime.atn.PredictionMode;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
 import org.antlr.v4.runtime.tree.ParseTree;
+import org.antlr.v4.runtime.tree.ParseTreeListener;
 import org.antlr.v4.runtime.tree.ParseTreeWalker;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -13,6 +21,11 @@ import com.obomprogramador.tools.jqana.antlrparser.JavaParser;
 import com.obomprogramador.tools.jqana.context.Context;
 import com.obomprogramador.tools.jqana.model.Measurement.MEASUREMENT_TYPE;
 import com.obomprogramador.tools.jqana.model.defaultimpl.MetricValue;
+import com.obomprogramador.tools.jqana.parsers.InterruptibleTokenStream;
+import com.obomprogramador.tools.jqana.parsers.JavaParserPool;
+import com.obomprogramador.tools.jqana.parsers.ParseListenerFactory;
+import com.obomprogramador.tools.jqana.parsers.ProfilingParserATNSimulator;
+import com.obomprogramador.tools.jqana.parsers.ParsingStatistics;
 
 /**
  * This is the abstract parser used as a base class for all parsers.
@@ -29,6 +42,10 @@ public abstract class AbstractMetricParser implements Parser {
     protected MetricValue metricValue;
     protected JavaBaseListener listener;
     protected String metricResourceId;
+    protected ParsingStatistics parsingStatistics;
+    protected boolean streaming;
+    protected MEASUREMENT_TYPE detailLevel =
+            MEASUREMENT_TYPE.METHOD_MEASUREMENT;
 
     /**
      * Default constructor.
@@ -42,8 +59,7 @@ public abstract class AbstractMetricParser implements Parser {
         this.context = context;
         this.packageMeasurement = packageMeasurement;
         this.metricResourceId = metricResourceId;
-        this.metric = context.getCurrentMetric(context.getBundle().getString(
-                metricResourceId));
+        this.metric = context.getMetricById(metricResourceId);
         if (this.metric == null) {
             throw new IllegalArgumentException(
                     "Context is not valid. Metric is null.");
@@ -55,40 +71,249 @@ public abstract class AbstractMetricParser implements Parser {
         return this.metric.getMetricName();
     }
 
+    /**
+     * Setter for the parsing counters of the current run.
+     * @param parsingStatistics ParsingStatistics the counters, or null.
+     */
+    public void setParsingStatistics(ParsingStatistics parsingStatistics) {
+        this.parsingStatistics = parsingStatistics;
+    }
+
+    /**
+     * Getter for the streaming mode.
+     * @return boolean true if the parse tree is not built.
+     */
+    public boolean isStreaming() {
+        return streaming;
+    }
+
+    /**
+     * Setter for the streaming mode. If true, the listener is attached to
+     * the parser, and gets its events while the source file is parsed: the
+     * parse tree is not built, so, the memory used by each file is much
+     * smaller. The listener must not depend on the rules' children.
+     * @param streaming boolean do not build the parse tree.
+     */
+    public void setStreaming(boolean streaming) {
+        this.streaming = streaming;
+    }
+
+    /**
+     * Getter for the detail level.
+     * @return MEASUREMENT_TYPE the most detailed measurement kept.
+     */
+    public MEASUREMENT_TYPE getDetailLevel() {
+        return detailLevel;
+    }
+
+    /**
+     * Setter for the detail level. Parsers that measure methods only create
+     * method measurements at METHOD_MEASUREMENT (default) level: at the
+     * other levels, the methods are only added to their classes' values.
+     * @param detailLevel MEASUREMENT_TYPE the most detailed measurement kept.
+     */
+    public void setDetailLevel(MEASUREMENT_TYPE detailLevel) {
+        this.detailLevel = detailLevel;
+    }
+
     @Override
     public Measurement parse(String compiledClassPath, String sourceCode) {
-        this.measurement = new Measurement(); // Class name will be set inside
-                                              // listener.
+        startMeasurement();
+        try {
+            JavaParser p = JavaParserPool.getParser(new ANTLRInputStream(
+                    sourceCode));
+            if (this.streaming) {
+                parseCompilationUnit(p, this.parsingStatistics,
+                        new ParseListenerFactory() {
+                            @Override
+                            public ParseTreeListener newListener(JavaParser p) {
+                                startMeasurement();
+                                return createListener(p);
+                            }
+                        });
+            } else {
+                ParseTree tree = parseCompilationUnit(p,
+                        this.parsingStatistics);
+                ParseTreeWalker walker = new ParseTreeWalker();
+                walker.walk(createListener(p), tree);
+            }
+            finishMeasurement();
+        } catch (Exception e) {
+            registerError(e);
+        }
+
+        return this.measurement;
+    }
+
+    /**
+     * Creates an ANTLR4 parser for a source code.
+     * @param sourceCode String the source code to parse.
+     * @return JavaParser the parser, ready to parse the compilation unit.
+     */
+    public static JavaParser newJavaParser(String sourceCode) {
+        return newJavaParser(new ANTLRInputStream(sourceCode));
+    }
+
+    /**
+     * Creates an ANTLR4 parser for an already loaded char stream.
+     * @param source CharStream the source code to parse.
+     * @return JavaParser the parser, ready to parse the compilation unit.
+     */
+    public static JavaParser newJavaParser(CharStream source) {
+        JavaLexer lexer = new JavaLexer(source);
+        CommonTokenStream tokens = new InterruptibleTokenStream(lexer);
+        return new JavaParser(tokens);
+    }
+
+    /**
+     * Parses the compilation unit in two stages. First, with SLL prediction
+     * and an error strategy that bails out at the first syntax error, which
+     * is much faster and gives the same parse tree for valid code. If it
+     * fails, the tokens are rewound and the file is parsed again with full
+     * LL prediction and the default error strategy (reporting and recovering
+     * from syntax errors, as before).
+     * @param p JavaParser a new (or pooled) parser, ready to parse.
+     * @param statistics ParsingStatistics the counters to update, or null.
+     * @return ParseTree the compilation unit's parse tree.
+     */
+    public static ParseTree parseCompilationUnit(JavaParser p,
+            ParsingStatistics statistics) {
+        return parseCompilationUnit(p, statistics, null);
+    }
+
+    /**
+     * Same as "parseCompilationUnit(JavaParser, ParsingStatistics)", but, if
+     * a listener factory is informed, the parse tree is not built: the
+     * factory's listener is attached to the parser, and gets its events
+     * while the file is parsed. If the SLL stage fails, a new listener is
+     * attached before the full LL stage.
+     * 
+     * If the statistics have a decision profiler, the parser's decisions are
+     * profiled, and the file's statistics are added to the profiler.
+     * 
+     * An unbuffered token stream cannot be rewound, so, its file is parsed
+     * in a single stage, with full LL prediction and the default error
+     * strategy. It is slower than SLL prediction, but SLL may reject valid
+     * sources, and there would be no second stage to parse them again.
+     * 
+     * At the end, this thread's pooled parser is released (see
+     * "JavaParserPool.release()").
+     * @param p JavaParser a new (or pooled) parser, ready to parse.
+     * @param statistics ParsingStatistics the counters to update, or null.
+     * @param listeners ParseListenerFactory creates the listeners, or null,
+     * to build the parse tree.
+     * @return ParseTree the compilation unit's parse tree. Without the tree,
+     * it is the compilation unit's context, with no children.
+     */
+    public static ParseTree parseCompilationUnit(JavaParser p,
+            ParsingStatistics statistics, ParseListenerFactory listeners) {
+        if (listeners != null) {
+            p.setBuildParseTree(false);
+            p.addParseListener(listeners.newListener(p));
+        }
+        ProfilingParserATNSimulator profiling = null;
+        if (statistics != null && statistics.getDecisionProfiler() != null) {
+            profiling = ProfilingParserATNSimulator.install(p);
+        }
+        long start = System.nanoTime();
+        ParseTree tree = null;
+        boolean llFallback = false;
+        try {
+            if (p.getInputStream() instanceof UnbufferedTokenStream) {
+                // The tokens cannot be read again (see above):
+                p.setErrorHandler(new DefaultErrorStrategy());
+                p.getInterpreter().setPredictionMode(PredictionMode.LL);
+                tree = p.compilationUnit();
+            } else {
+                p.getInterpreter().setPredictionMode(PredictionMode.SLL);
+                p.setErrorHandler(new BailErrorStrategy());
+                p.removeErrorListeners();
+                try {
+                    tree = p.compilationUnit();
+                } catch (ParseCancellationException e) {
+                    if (Thread.currentThread().isInterrupted()) {
+                        // Not a syntax error: the parsing was cancelled
+                        throw e;
+                    }
+                    llFallback = true;
+                    if (listeners != null) {
+                        p.removeParseListeners();
+                        p.addParseListener(listeners.newListener(p));
+                    }
+                    p.setErrorHandler(new DefaultErrorStrategy());
+                    p.addErrorListener(ConsoleErrorListener.INSTANCE);
+                    p.getInterpreter().setPredictionMode(PredictionMode.LL);
+                    p.reset();
+                    tree = p.compilationUnit();
+                }
+            }
+            if (statistics != null) {
+                statistics.count(llFallback);
+            }
+            if (profiling != null) {
+                statistics.getDecisionProfiler().addFile(
+                        p.getInputStream().getSourceName(),
+                        System.nanoTime() - start, profiling.takeDecisions());
+            }
+        } finally {
+            // The pooled parser must not keep the file's chars and tokens:
+            JavaParserPool.release();
+        }
+        return tree;
+    }
+
+    /**
+     * First step of the analysis of a source file: creates this class'
+     * measurement and metric value. Class name will be set inside listener.
+     */
+    public void startMeasurement() {
+        this.measurement = new Measurement();
         this.measurement.setType(MEASUREMENT_TYPE.CLASS_MEASUREMENT);
         this.metricValue = new MetricValue();
         this.metricValue.setName(this.metric.getMetricName());
         this.measurement.getMetricValues().add(this.metricValue);
+    }
 
-        JavaLexer lexer;
-        try {
-            lexer = new JavaLexer(new ANTLRInputStream(sourceCode));
-            CommonTokenStream tokens = new CommonTokenStream(lexer);
-            JavaParser p = new JavaParser(tokens);
-            ParseTree tree = (ParseTree) (p.compilationUnit());
-            ParseTreeWalker walker = new ParseTreeWalker();
+    /**
+     * Second step: creates the listener that will walk the parse tree.
+     * @param p JavaParser the parser being used.
+     * @return JavaBaseListener the listener (template method hook).
+     */
+    public JavaBaseListener createListener(JavaParser p) {
+        // Template method hook:
+        this.listener = getListener(p);
+        return this.listener;
+    }
 
-            // Template method hook:
-            this.listener = getListener(p);
+    /**
+     * Last step, after the parse tree was walked: computes the final value
+     * and updates the package's measurement.
+     */
+    public void finishMeasurement() {
+        logger.debug("**** " + this.metric.getMetricName() + ": "
+                + this.measurement.toString());
 
-            walker.walk(this.listener, tree);
-            logger.debug("**** " + this.metric.getMetricName() + ": "
-                    + this.measurement.toString());
+        // Template method hook:
+        afterProcessing();
 
-            // Template method hook:
-            afterProcessing();
+        updatePackageMeasurement();
+    }
 
-            updatePackageMeasurement();
-        } catch (Exception e) {
-            context.getErrors().push(e.getMessage());
-            logger.error(e.getMessage());
-        }
+    /**
+     * Registers an error that aborted the analysis of a source file.
+     * @param e Exception the error.
+     */
+    public void registerError(Exception e) {
+        context.getErrors().push(e.getMessage());
+        logger.error(e.getMessage());
+    }
 
-        return this.measurement;
+    /**
+     * Getter for the current class' measurement.
+     * @return Measurement the measurement.
+     */
+    public Measurement getMeasurement() {
+        return measurement;
     }
 
     /**
@@ -0,0 +1,28 @@
+package com.obomprogramador.tools.jqana.model;
+
+/**
+ * Receives the measurements while the project is processed. Each package is
+ * notified as soon as it is complete: first its classes, then the package
+ * itself, with its aggregated metric values.
+ * 
+ * @author Cleuton Sampaio
+ * 
+ */
+public interface MeasurementConsumer {
+    /**
+     * A class of a complete package was measured.
+     * 
+     * @param packageMeasurement Measurement the class' package.
+     * @param classMeasurement Measurement the class' measurement, with its
+     *            methods' measurements.
+     */
+    void classMeasured(Measurement packageMeasurement,
+            Measurement classMeasurement);
+
+    /**
+     * A package is complete. Its aggregated metric values are final.
+     * 
+     * @param packageMeasurement Measurement the package's measurement.
+     */
+    void packageMeasured(Measurement packageMeasurement);
+}
@@ -39,4 +39,32 @@ public interface ProjectProcessor {
             JAXBException, ParserConfigurationException, TransformerException,
             ClassNotFoundException, InstantiationException,
             IllegalAccessException;
+
+    /**
+     * Streaming variant of "process()". Each package is handed to the
+     * consumer as soon as it is complete, so, reports and quality gates can
+     * start working before the whole project is processed.
+     * 
+     * @param projectName String the project's name. 
+     * @param projectSourceRoot
+     *            File. Source root directory.
+     * @param projectObjectRoot
+     *            File. Compiled classes directory.
+     * @param consumer MeasurementConsumer receives each class and package.
+     * @return Project consolidated measurement.
+     * @throws URISyntaxException in case of a resource location error.
+     * @throws IOException in case of any IO error.
+     * @throws JAXBException in case of a Marshalling / Unmarshalling error.
+     * @throws ParserConfigurationException Any DOM Parser configuration problem.
+     * @throws TransformerException In case of any problem transforming Object to XML.
+     * @throws ClassNotFoundException In case of any class load error.
+     * @throws InstantiationException In case of problems instantiating classes.
+     * @throws IllegalAccessException In case of problem trying to marshall the instances to XML.
+     */
+    Measurement process(String projectName, File projectSourceRoot,
+            File projectObjectRoot, MeasurementConsumer consumer)
+            throws URISyntaxException, IOException, JAXBException,
+            ParserConfigurationException, TransformerException,
+            ClassNotFoundException, InstantiationException,
+            IllegalAccessException;
 }
@@ -0,0 +1,348 @@
+/**
+ * jQana - Open Source Java(TM) code quality analyzer.
+ * 
+ * Copyright 2013 Cleuton Sampaio de Melo Jr
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * Project website: http://www.jqana.com
+ */
+package com.obomprogramador.tools.jqana.model.defaultimpl;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.maven.plugin.logging.Log;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.obomprogramador.tools.jqana.context.Context;
+import com.obomprogramador.tools.jqana.model.Measurement;
+import com.obomprogramador.tools.jqana.model.Measurement.MEASUREMENT_TYPE;
+import com.obomprogramador.tools.jqana.parsers.ParsingStatistics;
+
+/**
+ * Analyzes several modules (for example, all the projects of a maven reactor)
+ * in one pass. The modules are processed concurrently, and all of them share
+ * one worker pool, so, the parser is set up and warmed only once.
+ * 
+ * Each module gets its own project measurement, and the overall measurement
+ * contains the packages of all modules, in the order the modules were added.
+ * 
+ * @author Cleuton Sampaio
+ * 
+ */
+public class AggregateProjectProcessor {
+
+    protected Context context;
+    protected Logger logger;
+    protected Log log;
+    protected int threads = Runtime.getRuntime().availableProcessors();
+    protected String[] includes;
+    protected String[] excludes;
+    protected long fileTimeBudget;
+    protected String changedSince;
+    protected boolean lexerOnlyCc;
+    protected boolean streamingParse;
+    protected boolean decisionProfile;
+    protected MEASUREMENT_TYPE detailLevel =
+            MEASUREMENT_TYPE.METHOD_MEASUREMENT;
+    protected long largeFileThreshold =
+            DefaultProjectProcessor.DEFAULT_LARGE_FILE_THRESHOLD;
+    protected List<String> skippedFiles = new ArrayList<String>();
+    protected List<Module> modules = new ArrayList<Module>();
+    protected Map<String, Measurement> moduleMeasurements;
+    protected Map<String, ParsingStatistics> moduleStatistics;
+
+    /**
+     * Constructor with context.
+     * @param context Context the context of the analysis.
+     */
+    public AggregateProjectProcessor(Context context) {
+        super();
+        this.context = context;
+        this.logger = LoggerFactory.getLogger(this.getClass());
+    }
+
+    /**
+     * Setter for maven log.
+     * @param log Log the maven plugin log.
+     */
+    public void setLog(Log log) {
+        this.log = log;
+    }
+
+    /**
+     * Setter for the number of threads of the shared worker pool. Values
+     * lower than one mean one thread per available processor.
+     * @param threads int the number of threads.
+     */
+    public void setThreads(int threads) {
+        if (threads < 1) {
+            threads = Runtime.getRuntime().availableProcessors();
+        }
+        this.threads = threads;
+    }
+
+    /**
+     * Setter for include patterns, used in all modules.
+     * @param includes String[] glob patterns, relative to the source roots.
+     */
+    public void setIncludes(String[] includes) {
+        this.includes = includes;
+    }
+
+    /**
+     * Setter for exclude patterns, used in all modules.
+     * @param excludes String[] glob patterns, relative to the source roots.
+     */
+    public void setExcludes(String[] excludes) {
+        this.excludes = excludes;
+    }
+
+    /**
+     * Setter for the time budget of each file, used in all modules.
+     * @param fileTimeBudget long the budget, in milliseconds (0: no limit).
+     */
+    public void setFileTimeBudget(long fileTimeBudget) {
+        this.fileTimeBudget = fileTimeBudget;
+    }
+
+    /**
+     * Setter for the changed files analysis, used in all modules. It needs
+     * the modules' cache directories (see "addModule()").
+     * @param changedSince String the base git reference, for example:
+     * "origin/master".
+     */
+    public void setChangedSince(String changedSince) {
+        this.changedSince = changedSince;
+    }
+
+    /**
+     * Setter for the lexer-only cyclomatic complexity, used in all modules.
+     * @param lexerOnlyCc boolean calculate only CC, with the lexer.
+     */
+    public void setLexerOnlyCc(boolean lexerOnlyCc) {
+        this.lexerOnlyCc = lexerOnlyCc;
+    }
+
+    /**
+     * Setter for the streaming parse, used in all modules.
+     * @param streamingParse boolean parse without building parse trees.
+     */
+    public void setStreamingParse(boolean streamingParse) {
+        this.streamingParse = streamingParse;
+    }
+
+    /**
+     * Setter for the large file threshold, used in all modules.
+     * @param largeFileThreshold long the size, in bytes, from which files are
+     * parsed through unbuffered streams. Zero, or less, disables it.
+     */
+    public void setLargeFileThreshold(long largeFileThreshold) {
+        this.largeFileThreshold = largeFileThreshold;
+    }
+
+    /**
+     * Setter for the decision profile. Each module gets its own profile (see
+     * "getModuleStatistics()").
+     * @param decisionProfile boolean profile the parser's decisions.
+     */
+    public void setDecisionProfile(boolean decisionProfile) {
+        this.decisionProfile = decisionProfile;
+    }
+
+    /**
+     * Setter for the detail level, used in all modules. At project level,
+     * each module's measurement keeps only the module's aggregates, and the
+     * overall measurement has no packages.
+     * @param detailLevel MEASUREMENT_TYPE the most detailed measurement kept.
+     */
+    public void setDetailLevel(MEASUREMENT_TYPE detailLevel) {
+        this.detailLevel = detailLevel;
+    }
+
+    /**
+     * Getter for the files skipped because they exceeded the time budget.
+     * @return List<String> the files' paths, prefixed by the module name.
+     */
+    public List<String> getSkippedFiles() {
+        return skippedFiles;
+    }
+
+    /**
+     * Adds a module to be analyzed.
+     * @param moduleName String the module's name.
+     * @param sourceRoot File the module's source root folder.
+     * @param objectRoot File the module's compiled root folder.
+     * @param cacheDirectory File folder of the module's incremental analysis
+     * cache, or null, if the analysis is not incremental.
+     */
+    public void addModule(String moduleName, File sourceRoot, File objectRoot,
+            File cacheDirectory) {
+        Module module = new Module();
+        module.name = moduleName;
+        module.sourceRoot = sourceRoot;
+        module.objectRoot = objectRoot;
+        module.cacheDirectory = cacheDirectory;
+        this.modules.add(module);
+    }
+
+    /**
+     * Getter for the modules' measurements, after the processing.
+     * @return Map<String, Measurement> each module's project measurement, in
+     * the order the modules were added.
+     */
+    public Map<String, Measurement> getModuleMeasurements() {
+        return moduleMeasurements;
+    }
+
+    /**
+     * Getter for the modules' parsing statistics, after the processing.
+     * @return Map<String, ParsingStatistics> each module's statistics, in the
+     * order the modules were added.
+     */
+    public Map<String, ParsingStatistics> getModuleStatistics() {
+        return moduleStatistics;
+    }
+
+    /**
+     * Analyzes all modules.
+     * @param projectName String the name of the overall project.
+     * @return Measurement the overall measurement, with all modules'
+     * packages.
+     * @throws IOException in case of any error processing a module.
+     */
+    public Measurement process(String projectName) throws IOException {
+        Measurement overall = new Measurement();
+        overall.setName(projectName);
+        overall.setType(MEASUREMENT_TYPE.PROJECT_MEASUREMENT);
+        this.moduleMeasurements = new LinkedHashMap<String, Measurement>();
+        this.moduleStatistics = new LinkedHashMap<String, ParsingStatistics>();
+        this.skippedFiles = new ArrayList<String>();
+        if (this.modules.isEmpty()) {
+            return overall;
+        }
+        ExecutorService workers = Executors.newFixedThreadPool(this.threads);
+        // Module drivers just scan and aggregate, the work is in the pool:
+        ExecutorService drivers = Executors.newFixedThreadPool(Math.min(
+                this.modules.size(), this.threads));
+        List<Future<Measurement>> results = new ArrayList<Future<Measurement>>();
+        logger.debug("**** Aggregate processing. Modules: "
+                + this.modules.size() + ", threads: " + this.threads);
+        try {
+            for (Module module : this.modules) {
+                results.add(drivers.submit(new ModuleWork(module, workers)));
+            }
+            for (int x = 0; x < this.modules.size(); x++) {
+                Module module = this.modules.get(x);
+                Measurement moduleMeasurement = results.get(x).get();
+                this.moduleMeasurements.put(module.name, moduleMeasurement);
+                this.moduleStatistics.put(module.name,
+                        module.parsingStatistics);
+                for (String skipped : module.skippedFiles) {
+                    this.skippedFiles.add(module.name + ": " + skipped);
+                }
+                overall.getInnerMeasurements().addAll(
+                        moduleMeasurement.getInnerMeasurements());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Aggregate processing interrupted.");
+        } catch (ExecutionException e) {
+            logger.error(e.getMessage());
+            throw new IOException("Aggregate processing error: "
+                    + e.getCause().getMessage());
+        } finally {
+            drivers.shutdownNow();
+            workers.shutdownNow();
+        }
+        return overall;
+    }
+
+    /*
+     * (non javadoc) Creates the processor of one module. It has its own
+     * context (errors and status), sharing the metric registry.
+     */
+    protected DefaultProjectProcessor newModuleProcessor(Module module,
+            ExecutorService workers) throws ClassNotFoundException,
+            InstantiationException, IllegalAccessException {
+        Context moduleContext = null;
+        if (this.context.getMetricRegistry() == null) {
+            moduleContext = new Context(this.context.getBundle());
+        } else {
+            moduleContext = new Context(this.context.getMetricRegistry());
+        }
+        DefaultProjectProcessor dpp = new DefaultProjectProcessor(moduleContext);
+        dpp.setLog(this.log);
+        dpp.setThreads(this.threads);
+        dpp.setWorkerPool(workers);
+        dpp.setIncludes(this.includes);
+        dpp.setExcludes(this.excludes);
+        dpp.setFileTimeBudget(this.fileTimeBudget);
+        dpp.setCacheDirectory(module.cacheDirectory);
+        dpp.setChangedSince(this.changedSince);
+        dpp.setLexerOnlyCc(this.lexerOnlyCc);
+        dpp.setStreamingParse(this.streamingParse);
+        dpp.setLargeFileThreshold(this.largeFileThreshold);
+        dpp.setDecisionProfile(this.decisionProfile);
+        dpp.setDetailLevel(this.detailLevel);
+        return dpp;
+    }
+
+    /**
+     * A module to be analyzed.
+     */
+    protected static class Module {
+        private String name;
+        private File sourceRoot;
+        private File objectRoot;
+        private File cacheDirectory;
+        private List<String> skippedFiles;
+        private ParsingStatistics parsingStatistics;
+    }
+
+    /**
+     * Processes one module, using the shared worker pool.
+     */
+    protected class ModuleWork implements Callable<Measurement> {
+        private Module module;
+        private ExecutorService workers;
+
+        ModuleWork(Module module, ExecutorService workers) {
+            this.module = module;
+            this.workers = workers;
+        }
+
+        @Override
+        public Measurement call() throws Exception {
+            DefaultProjectProcessor dpp = newModuleProcessor(this.module,
+                    this.workers);
+            Measurement moduleMeasurement = dpp.process(this.module.name,
+                    this.module.sourceRoot, this.module.objectRoot);
+            this.module.skippedFiles = dpp.getSkippedFiles();
+            this.module.parsingStatistics = dpp.getParsingStatistics();
+            return moduleMeasurement;
+        }
+    }
+
+}
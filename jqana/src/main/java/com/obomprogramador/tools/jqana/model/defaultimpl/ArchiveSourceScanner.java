@@ -0,0 +1,208 @@
+/**
+ * jQana - Open Source Java(TM) code quality analyzer.
+ * 
+ * Copyright 2013 Cleuton Sampaio de Melo Jr
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * Project website: http://www.jqana.com
+ */
+package com.obomprogramador.tools.jqana.model.defaultimpl;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.antlr.v4.runtime.CharStream;
+
+/**
+ * Discovers the java source files of a sources archive (a "-sources.jar" or
+ * any zip file), and loads them straight from the archive, without
+ * extracting them to disk.
+ * 
+ * Package names are computed from the entries' paths. The source files are
+ * notified as files under the archive's path (for example:
+ * "lib-sources.jar/abc/ClassA.java"), so, their paths relative to the
+ * source root are their entry names. Packages are notified in the order of
+ * their names, and the end of a package is notified after the end of its sub
+ * packages, as the folder scanner does.
+ * 
+ * The archive is opened only once, and it must be closed after the run. It
+ * is safe to load entries from several threads.
+ * 
+ * @author Cleuton Sampaio
+ * 
+ */
+public class ArchiveSourceScanner extends SourceScanner {
+
+    private File archiveFile;
+    private ZipFile archive;
+
+    /**
+     * Constructor with fields.
+     * @param archiveFile File the sources archive.
+     * @throws IOException if the archive cannot be opened.
+     */
+    public ArchiveSourceScanner(File archiveFile) throws IOException {
+        super(archiveFile);
+        this.archiveFile = archiveFile;
+        this.archive = new ZipFile(archiveFile);
+    }
+
+    /**
+     * Visits the archive's entries, notifying the handler.
+     * @param handler SourceHandler the handler of source files.
+     */
+    @Override
+    public void scan(SourceHandler handler) {
+        Folder root = new Folder();
+        Enumeration<? extends ZipEntry> entries = this.archive.entries();
+        while (entries.hasMoreElements()) {
+            ZipEntry entry = entries.nextElement();
+            String entryName = entry.getName();
+            int pos = entryName.lastIndexOf('/');
+            if (!entry.isDirectory()
+                    && isJavaFileName(entryName.substring(pos + 1))
+                    && isIncluded(entryName)) {
+                Folder folder = root;
+                String[] names = entryName.split("/");
+                StringBuilder path = new StringBuilder();
+                for (int x = 0; x < names.length - 1 && folder != null; x++) {
+                    if (path.length() > 0) {
+                        path.append('/');
+                    }
+                    path.append(names[x]);
+                    folder = folder.getSubFolder(names[x], path.toString());
+                }
+                if (folder != null) {
+                    folder.files.add(entryName);
+                }
+            }
+        }
+        scanFolder(root, "", handler);
+    }
+
+    private void scanFolder(Folder folder, String relativePath,
+            SourceHandler handler) {
+        String packageName = DEFAULT_PACKAGE;
+        if (relativePath.length() > 0) {
+            packageName = relativePath.replace('/', '.');
+        }
+        for (String entryName : folder.files) {
+            handler.sourceFile(packageName,
+                    new File(this.archiveFile, entryName));
+        }
+        for (Map.Entry<String, Folder> subFolder : folder.subFolders
+                .entrySet()) {
+            String subPath = subFolder.getKey();
+            if (relativePath.length() > 0) {
+                subPath = relativePath + "/" + subFolder.getKey();
+            }
+            scanFolder(subFolder.getValue(), subPath, handler);
+        }
+        if (!folder.files.isEmpty()) {
+            handler.endOfPackage(packageName);
+        }
+    }
+
+    /**
+     * Loads a source file from the archive.
+     * @param sourceFile File the source file, as notified by the scanner.
+     * @param loader SourceLoader the loader (of the current thread).
+     * @return CharStream the ANTLR4 char stream.
+     * @throws IOException if the entry cannot be read.
+     */
+    public CharStream load(File sourceFile, SourceLoader loader)
+            throws IOException {
+        ZipEntry entry = getEntry(sourceFile);
+        InputStream in = this.archive.getInputStream(entry);
+        try {
+            return loader.load(in, entry.getSize(), sourceFile.getPath());
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Uncompressed size of a source file.
+     * @param sourceFile File the source file, as notified by the scanner.
+     * @return long the size, in bytes, or -1 if it is not known.
+     * @throws IOException if the entry is not found.
+     */
+    public long getSize(File sourceFile) throws IOException {
+        return getEntry(sourceFile).getSize();
+    }
+
+    /**
+     * Opens a source file of the archive, to be read as a stream. The caller
+     * must close it.
+     * @param sourceFile File the source file, as notified by the scanner.
+     * @return InputStream the entry's stream.
+     * @throws IOException if the entry cannot be opened.
+     */
+    public InputStream open(File sourceFile) throws IOException {
+        return this.archive.getInputStream(getEntry(sourceFile));
+    }
+
+    private ZipEntry getEntry(File sourceFile) throws IOException {
+        String entryName = sourceFile.getPath()
+                .substring(this.archiveFile.getPath().length() + 1)
+                .replace('\\', '/');
+        ZipEntry entry = this.archive.getEntry(entryName);
+        if (entry == null) {
+            throw new FileNotFoundException(entryName + " (not found in "
+                    + this.archiveFile.getPath() + ")");
+        }
+        return entry;
+    }
+
+    /**
+     * Closes the archive.
+     * @throws IOException in case of any IO error.
+     */
+    public void close() throws IOException {
+        this.archive.close();
+    }
+
+    /*
+     * (non javadoc) A folder of the archive, with its java files and its sub
+     * folders, sorted by name.
+     */
+    private class Folder {
+        private List<String> files = new ArrayList<String>();
+        private Map<String, Folder> subFolders = new TreeMap<String, Folder>();
+        private boolean excluded;
+
+        /*
+         * (non javadoc) Returns the sub folder, or null if it is excluded.
+         */
+        private Folder getSubFolder(String name, String relativePath) {
+            Folder subFolder = this.subFolders.get(name);
+            if (subFolder == null) {
+                subFolder = new Folder();
+                subFolder.excluded = isExcludedFolder(relativePath);
+                this.subFolders.put(name, subFolder);
+            }
+            return subFolder.excluded ? null : subFolder;
+        }
+    }
+
+}
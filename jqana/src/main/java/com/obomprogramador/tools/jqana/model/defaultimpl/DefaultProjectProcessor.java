@@ -1,32 +1,54 @@
 package com.obomprogramador.tools.jqana.model.defaultimpl;
 
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.net.URISyntaxException;
-import java.util.ResourceBundle;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 import javax.xml.bind.JAXBException;
 import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.transform.TransformerException;
 
-import org.apache.bcel.classfile.ClassParser;
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.UnbufferedCharStream;
 import org.apache.bcel.classfile.JavaClass;
-import org.apache.commons.io.FileUtils;
 import org.apache.maven.plugin.logging.Log;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.obomprogramador.tools.jqana.context.Context;
+import com.obomprogramador.tools.jqana.model.AbstractMetricParser;
 import com.obomprogramador.tools.jqana.model.Measurement;
 import com.obomprogramador.tools.jqana.model.Measurement.MEASUREMENT_TYPE;
-import com.obomprogramador.tools.jqana.model.Parser;
+import com.obomprogramador.tools.jqana.model.MeasurementConsumer;
 import com.obomprogramador.tools.jqana.model.ProjectProcessor;
 import com.obomprogramador.tools.jqana.parsers.CyclomaticComplexityParser;
+import com.obomprogramador.tools.jqana.parsers.DecisionProfiler;
+import com.obomprogramador.tools.jqana.parsers.JavaClassCache;
+import com.obomprogramador.tools.jqana.parsers.JavaParserPool;
 import com.obomprogramador.tools.jqana.parsers.Lcom4Parser;
+import com.obomprogramador.tools.jqana.parsers.LexerCyclomaticComplexityParser;
+import com.obomprogramador.tools.jqana.parsers.MultiMetricParser;
+import com.obomprogramador.tools.jqana.parsers.ParsingStatistics;
 import com.obomprogramador.tools.jqana.parsers.RfcBcelParser;
 
 /**
@@ -37,6 +59,24 @@ import com.obomprogramador.tools.jqana.parsers.RfcBcelParser;
  */
 public class DefaultProjectProcessor implements ProjectProcessor {
 
+    /**
+     * Default number of reader threads of the parallel processing.
+     */
+    public static final int DEFAULT_READER_THREADS = 2;
+
+    /**
+     * Default number of files in flight in the parallel processing.
+     */
+    public static final int DEFAULT_QUEUE_CAPACITY = 64;
+
+    /**
+     * Default size (in bytes) from which source files are parsed through
+     * unbuffered streams.
+     */
+    public static final long DEFAULT_LARGE_FILE_THRESHOLD = 16 * 1024 * 1024;
+
+    private static final FileWork END_OF_SOURCES = new FileWork(null, null);
+
     protected Context context;
     protected File projectSourceRoot;
     protected File projectObjectRoot;
@@ -44,7 +84,43 @@ public class DefaultProjectProcessor implements ProjectProcessor {
     protected Measurement project;
     protected Logger logger;
     protected Log log;
-    private static final int JAVAPATHSIZE = 5;
+    protected int threads = 1;
+    protected Map<String, AbstractMetricParser> aggregationRules;
+    protected JavaClassCache javaClassCache;
+    protected ParsingStatistics parsingStatistics;
+    protected File cacheDirectory;
+    protected MeasurementCache measurementCache;
+    protected String[] includes;
+    protected String[] excludes;
+    protected int readerThreads = DEFAULT_READER_THREADS;
+    protected int queueCapacity = DEFAULT_QUEUE_CAPACITY;
+    protected MeasurementConsumer consumer;
+    protected ExecutorService workerPool;
+    protected String changedSince;
+    protected long fileTimeBudget;
+    protected ScheduledExecutorService watchdog;
+    protected List<String> skippedFiles = new ArrayList<String>();
+    protected Set<String> changedFiles;
+    protected MEASUREMENT_TYPE detailLevel =
+            MEASUREMENT_TYPE.METHOD_MEASUREMENT;
+    protected int shardIndex = 1;
+    protected int shardCount = 1;
+    protected File partialResultFile;
+    protected PartialResults partialResults;
+    protected int scannedPackages;
+    protected ArchiveSourceScanner sourceArchive;
+    protected boolean lexerOnlyCc;
+    protected boolean ccValidation;
+    protected boolean streamingParse;
+    protected boolean decisionProfile;
+    protected long largeFileThreshold = DEFAULT_LARGE_FILE_THRESHOLD;
+    protected List<String> ccValidationErrors = new ArrayList<String>();
+    protected ThreadLocal<SourceLoader> sourceLoaders = new ThreadLocal<SourceLoader>() {
+        @Override
+        protected SourceLoader initialValue() {
+            return new SourceLoader();
+        }
+    };
 
     /**
      * Enumeration form message type.
@@ -71,6 +147,330 @@ public class DefaultProjectProcessor implements ProjectProcessor {
         this.log = log;
     }
 
+    /**
+     * Number of worker threads used to analyze source files.
+     * @return int the number of threads.
+     */
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Setter for the number of worker threads. One (the default) means the
+     * sequential processing. Values lower than one mean one thread per
+     * available processor.
+     * @param threads int the number of threads.
+     */
+    public void setThreads(int threads) {
+        if (threads < 1) {
+            threads = Runtime.getRuntime().availableProcessors();
+        }
+        this.threads = threads;
+    }
+
+    /**
+     * Directory of the persistent measurement cache.
+     * @return File the directory, or null if incremental analysis is off.
+     */
+    public File getCacheDirectory() {
+        return cacheDirectory;
+    }
+
+    /**
+     * Setter for the directory of the persistent measurement cache. If it is
+     * informed, the analysis is incremental: source files that have not
+     * changed since the last run (and whose compiled class has not changed
+     * either) are not analyzed again.
+     * @param cacheDirectory File the directory, or null to analyze all files.
+     */
+    public void setCacheDirectory(File cacheDirectory) {
+        this.cacheDirectory = cacheDirectory;
+    }
+
+    /**
+     * Setter for the changed files analysis. If informed, only the source
+     * files changed since the merge base of this git reference and HEAD are
+     * analyzed; the others' measurements come from the incremental analysis
+     * cache (if a file is not in the cache, it is analyzed). It needs the
+     * cache directory.
+     * @param changedSince String the base reference, for example:
+     * "origin/master".
+     */
+    public void setChangedSince(String changedSince) {
+        this.changedSince = changedSince;
+    }
+
+    /**
+     * Setter for the time budget of each file. A file whose analysis takes
+     * longer is interrupted and skipped, and the analysis of the other files
+     * goes on. Zero (the default) means no limit.
+     * @param fileTimeBudget long the budget, in milliseconds.
+     */
+    public void setFileTimeBudget(long fileTimeBudget) {
+        this.fileTimeBudget = fileTimeBudget;
+    }
+
+    /**
+     * Getter for the files skipped because they exceeded the time budget.
+     * @return List<String> the files' paths, relative to the source root.
+     */
+    public List<String> getSkippedFiles() {
+        return skippedFiles;
+    }
+
+    /**
+     * Getter for the parsing counters of the last run.
+     * @return ParsingStatistics the counters of the two-stage parsing.
+     */
+    public ParsingStatistics getParsingStatistics() {
+        return parsingStatistics;
+    }
+
+    /**
+     * Setter for the number of reader threads of the parallel processing,
+     * which prefetch the source and compiled files.
+     * @param readerThreads int the number of reader threads.
+     */
+    public void setReaderThreads(int readerThreads) {
+        this.readerThreads = Math.max(1, readerThreads);
+    }
+
+    /**
+     * Setter for the capacity of the parallel processing queue: the maximum
+     * number of files read or analyzed ahead of the aggregation.
+     * @param queueCapacity int the queue capacity.
+     */
+    public void setQueueCapacity(int queueCapacity) {
+        this.queueCapacity = Math.max(1, queueCapacity);
+    }
+
+    /**
+     * Setter for a shared worker pool. If informed, the processing is
+     * parallel, and the source files are parsed by this pool, which can be
+     * shared with other processors. It is not shut down by this processor.
+     * @param workerPool ExecutorService the shared pool.
+     */
+    public void setWorkerPool(ExecutorService workerPool) {
+        this.workerPool = workerPool;
+    }
+
+    /**
+     * Setter for method detail discarding. If true, the detail level is
+     * CLASS_MEASUREMENT, so, the memory use does not grow with the number of
+     * methods. If false, it is METHOD_MEASUREMENT.
+     * @param discardMethodDetail boolean discard methods' measurements.
+     * @deprecated use {@link #setDetailLevel(MEASUREMENT_TYPE)}.
+     */
+    @Deprecated
+    public void setDiscardMethodDetail(boolean discardMethodDetail) {
+        setDetailLevel(discardMethodDetail ? MEASUREMENT_TYPE.CLASS_MEASUREMENT
+                : MEASUREMENT_TYPE.METHOD_MEASUREMENT);
+    }
+
+    /**
+     * Getter for the detail level.
+     * @return MEASUREMENT_TYPE the most detailed measurement kept.
+     */
+    public MEASUREMENT_TYPE getDetailLevel() {
+        return detailLevel;
+    }
+
+    /**
+     * Setter for the detail level: the most detailed measurements kept in
+     * the project's measurement. METHOD_MEASUREMENT (default) keeps them
+     * all. CLASS_MEASUREMENT creates no method measurements: the methods are
+     * only counted in their classes' values. PACKAGE_MEASUREMENT also drops
+     * the classes of each package after it is consumed, and
+     * PROJECT_MEASUREMENT drops the packages too, keeping only their
+     * aggregates in the project's metric values. The values of the
+     * measurements kept are the same at any level. Incremental analysis
+     * needs the METHOD_MEASUREMENT level.
+     * @param detailLevel MEASUREMENT_TYPE the most detailed measurement kept.
+     */
+    public void setDetailLevel(MEASUREMENT_TYPE detailLevel) {
+        this.detailLevel = detailLevel;
+    }
+
+    /**
+     * Setter for the detail level, by name.
+     * @param detailLevel String "project", "package", "class" or "method".
+     */
+    public void setDetailLevel(String detailLevel) {
+        setDetailLevel(getDetailLevel(detailLevel));
+    }
+
+    /**
+     * Converts the name of a detail level.
+     * @param detailLevel String "project", "package", "class" or "method".
+     * @return MEASUREMENT_TYPE the detail level.
+     */
+    public static MEASUREMENT_TYPE getDetailLevel(String detailLevel) {
+        try {
+            return MEASUREMENT_TYPE.valueOf(detailLevel.trim().toUpperCase()
+                    + "_MEASUREMENT");
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid detail level: "
+                    + detailLevel
+                    + ". It must be project, package, class or method.");
+        }
+    }
+
+    /**
+     * Setter for the shard of a sharded analysis. Only the packages of this
+     * shard are analyzed; each package belongs to one shard, chosen by a
+     * stable hash of its name, so, the shards can run on different machines.
+     * @param shardIndex int the shard, from 1 to shardCount.
+     * @param shardCount int the number of shards. One means no sharding.
+     */
+    public void setShard(int shardIndex, int shardCount) {
+        if (shardCount < 1 || shardIndex < 1 || shardIndex > shardCount) {
+            throw new IllegalArgumentException("Invalid shard: " + shardIndex
+                    + "/" + shardCount);
+        }
+        this.shardIndex = shardIndex;
+        this.shardCount = shardCount;
+    }
+
+    /**
+     * Getter for the shard index.
+     * @return int the shard being analyzed, from 1 to the number of shards.
+     */
+    public int getShardIndex() {
+        return shardIndex;
+    }
+
+    /**
+     * Getter for the number of shards.
+     * @return int the number of shards. One means no sharding.
+     */
+    public int getShardCount() {
+        return shardCount;
+    }
+
+    /**
+     * Setter for the shard of a sharded analysis, as "i/N".
+     * @param shard String the shard, for example: "2/4" (the second of four
+     * shards).
+     */
+    public void setShard(String shard) {
+        String[] parts = shard.trim().split("/");
+        if (parts.length != 2) {
+            throw new IllegalArgumentException("Invalid shard: " + shard
+                    + ". It must be informed as \"i/N\".");
+        }
+        try {
+            setShard(Integer.parseInt(parts[0].trim()),
+                    Integer.parseInt(parts[1].trim()));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid shard: " + shard
+                    + ". It must be informed as \"i/N\".");
+        }
+    }
+
+    /**
+     * Setter for the lexer-only cyclomatic complexity. If true, CC is
+     * calculated only with the lexer (see LexerCyclomaticComplexityParser),
+     * without parse trees, and LCOM4 is not calculated. It is much cheaper,
+     * for projects that only verify CC.
+     * @param lexerOnlyCc boolean calculate only CC, with the lexer.
+     */
+    public void setLexerOnlyCc(boolean lexerOnlyCc) {
+        this.lexerOnlyCc = lexerOnlyCc;
+    }
+
+    /**
+     * Setter for the streaming parse. If true, the metric listeners are
+     * attached to the parser, and the parse trees are not built. The
+     * measurements are the same, but the memory used by each file is much
+     * smaller.
+     * @param streamingParse boolean parse without building parse trees.
+     */
+    public void setStreamingParse(boolean streamingParse) {
+        this.streamingParse = streamingParse;
+    }
+
+    /**
+     * Setter for the large file threshold. Source files with this size, or
+     * larger, are not loaded into memory: they are parsed through unbuffered
+     * char and token streams, in streaming mode, so, the memory used does not
+     * depend on their size. It does not apply to the lexer-only CC and to the
+     * CC validation, which need the whole file.
+     * @param largeFileThreshold long the size, in bytes. Zero, or less,
+     * means that all files are loaded into memory.
+     */
+    public void setLargeFileThreshold(long largeFileThreshold) {
+        this.largeFileThreshold = largeFileThreshold;
+    }
+
+    /**
+     * Setter for the decision profile. If true, the parser's decisions are
+     * profiled, and the profile is kept in the parsing statistics (see
+     * "getParsingStatistics().getDecisionProfiler()"). Parsing is slower.
+     * @param decisionProfile boolean profile the parser's decisions.
+     */
+    public void setDecisionProfile(boolean decisionProfile) {
+        this.decisionProfile = decisionProfile;
+    }
+
+    /**
+     * Setter for the cyclomatic complexity validation. If true, CC is also
+     * calculated with the lexer, and both measurements of each class are
+     * compared. The differences are logged and kept in
+     * "getCcValidationErrors()".
+     * @param ccValidation boolean compare the lexer's CC to the parser's.
+     */
+    public void setCcValidation(boolean ccValidation) {
+        this.ccValidation = ccValidation;
+    }
+
+    /**
+     * Getter for the differences found by the CC validation of the last run.
+     * @return List<String> the differences, with the class and method names.
+     */
+    public List<String> getCcValidationErrors() {
+        return ccValidationErrors;
+    }
+
+    /**
+     * Setter for the partial results' file. If informed, the analyzed
+     * packages are also persisted in this file, with their aggregation
+     * accumulators, to be merged with the other shards' files.
+     * @param partialResultFile File the partial results' file.
+     * @see #merge(String, List)
+     */
+    public void setPartialResultFile(File partialResultFile) {
+        this.partialResultFile = partialResultFile;
+    }
+
+    /**
+     * The shard of a package. String's hash code is specified by the
+     * language, so, it is the same on every machine and JVM.
+     * @param packageName String the package name.
+     * @param shardCount int the number of shards.
+     * @return int the package's shard, from 1 to shardCount.
+     */
+    public static int getShardOf(String packageName, int shardCount) {
+        return (packageName.hashCode() & Integer.MAX_VALUE) % shardCount + 1;
+    }
+
+    /**
+     * Setter for include patterns. If informed, only the source files
+     * matching any of them are analyzed.
+     * @param includes String[] glob patterns, relative to the source root.
+     */
+    public void setIncludes(String[] includes) {
+        this.includes = includes;
+    }
+
+    /**
+     * Setter for exclude patterns. Source files (or folders) matching any of
+     * them are not analyzed.
+     * @param excludes String[] glob patterns, relative to the source root.
+     */
+    public void setExcludes(String[] excludes) {
+        this.excludes = excludes;
+    }
+
     /**
      * Default constructor with context.
      * @param context Context the context to use.
@@ -84,8 +484,10 @@ public class DefaultProjectProcessor implements ProjectProcessor {
     /**
      * Main method.
      * @param projectName String the project's name.
-     * @param projectSourceRoot File the project's source root folder.
-     * @param projectObjectRoot File the project's compiled root folder.
+     * @param projectSourceRoot File the project's source root folder, or a
+     * sources archive (for example: a "-sources.jar" file).
+     * @param projectObjectRoot File the project's compiled root folder, or a
+     * jar (or zip) file with the compiled classes.
      * @throws URISyntaxException in case of any resource or folder error.
      * @throws IOException in case of any IO error.
      * @throws JAXBException in case of a DOM parsing exception.
@@ -102,8 +504,99 @@ public class DefaultProjectProcessor implements ProjectProcessor {
             JAXBException, ParserConfigurationException, TransformerException,
             ClassNotFoundException, InstantiationException,
             IllegalAccessException {
+        return process(projectName, projectSourceRoot, projectObjectRoot, null);
+    }
+
+    /**
+     * Streaming variant of "process()". Each complete package is handed to
+     * the consumer. If method detail is discarded, the classes kept in the
+     * project's measurement lose their methods' measurements after being
+     * consumed.
+     * @param projectName String the project's name.
+     * @param projectSourceRoot File the project's source root folder, or a
+     * sources archive (for example: a "-sources.jar" file).
+     * @param projectObjectRoot File the project's compiled root folder, or a
+     * jar (or zip) file with the compiled classes.
+     * @param consumer MeasurementConsumer receives each class and package.
+     * @throws URISyntaxException in case of any resource or folder error.
+     * @throws IOException in case of any IO error.
+     * @throws JAXBException in case of a DOM parsing exception.
+     * @throws ParserConfigurationException in case of any problem configuring the parser.
+     * @throws TransformerException in case of any XML transform problem.
+     * @throws ClassNotFoundException it should not happen.
+     * @throws InstantiationException it should not happen.
+     * @throws IllegalAccessException it should not happen.
+     * @return Measurement the project's measurement. 
+     */
+    @Override
+    public Measurement process(String projectName, File projectSourceRoot,
+            File projectObjectRoot, MeasurementConsumer consumer)
+            throws URISyntaxException, IOException, JAXBException,
+            ParserConfigurationException, TransformerException,
+            ClassNotFoundException, InstantiationException,
+            IllegalAccessException {
+        this.consumer = consumer;
         this.projectSourceRoot = projectSourceRoot;
         this.projectObjectRoot = projectObjectRoot;
+        this.javaClassCache = newJavaClassCache();
+        this.parsingStatistics = new ParsingStatistics();
+        if (this.decisionProfile) {
+            this.parsingStatistics.setDecisionProfiler(new DecisionProfiler());
+        }
+        JavaParserPool.warmUp();
+        this.aggregationRules = getAggregationRules();
+        this.sourceArchive = null;
+        if (projectSourceRoot.isFile()) {
+            logMsg("**** Sources archive: " + projectSourceRoot.getPath(),
+                    MSG_TYPE.DEBUG);
+            this.sourceArchive = new ArchiveSourceScanner(projectSourceRoot);
+        }
+        this.measurementCache = null;
+        if (this.cacheDirectory != null && this.sourceArchive != null) {
+            logMsg("**** Incremental analysis needs a source folder."
+                    + " All files will be analyzed.", MSG_TYPE.INFO);
+        } else if (this.cacheDirectory != null && this.lexerOnlyCc) {
+            logMsg("**** Incremental analysis needs all metrics."
+                    + " All files will be analyzed.", MSG_TYPE.INFO);
+        } else if (this.cacheDirectory != null
+                && this.detailLevel != MEASUREMENT_TYPE.METHOD_MEASUREMENT) {
+            logMsg("**** Incremental analysis needs method detail."
+                    + " All files will be analyzed.", MSG_TYPE.INFO);
+        } else if (this.cacheDirectory != null) {
+            this.measurementCache = new MeasurementCache(this.cacheDirectory,
+                    this.context);
+            this.measurementCache.load();
+            logMsg("**** Incremental analysis. Cached files: "
+                    + this.measurementCache.getPreviousSize(), MSG_TYPE.DEBUG);
+        }
+        this.skippedFiles = Collections
+                .synchronizedList(new ArrayList<String>());
+        this.ccValidationErrors = Collections
+                .synchronizedList(new ArrayList<String>());
+        this.watchdog = null;
+        if (this.fileTimeBudget > 0) {
+            this.watchdog = Executors
+                    .newSingleThreadScheduledExecutor(new ThreadFactory() {
+                        @Override
+                        public Thread newThread(Runnable r) {
+                            Thread thread = new Thread(r, "jqana-watchdog");
+                            thread.setDaemon(true);
+                            return thread;
+                        }
+                    });
+        }
+        this.changedFiles = null;
+        if (this.changedSince != null) {
+            findChangedFiles();
+        }
+        this.scannedPackages = 0;
+        this.partialResults = null;
+        if (this.partialResultFile != null) {
+            this.partialResults = new PartialResults();
+            this.partialResults.setShardIndex(this.shardIndex);
+            this.partialResults.setShardCount(this.shardCount);
+            this.partialResults.setDetailLevel(this.detailLevel);
+        }
         this.project = new Measurement();
         this.project.setName(projectName);
         this.project.setType(MEASUREMENT_TYPE.PROJECT_MEASUREMENT);
@@ -111,7 +604,11 @@ public class DefaultProjectProcessor implements ProjectProcessor {
         logMsg("**** Project: " + projectName + ", resources: "
                 + projectSourceRoot.getPath(), MSG_TYPE.DEBUG);
         try {
-            processFolder(this.projectSourceRoot);
+            if (this.threads > 1 || this.workerPool != null) {
+                processFolderInParallel(this.projectSourceRoot);
+            } else {
+                processFolder(this.projectSourceRoot);
+            }
 
         } catch (ClassNotFoundException e) {
             logger.error(e.getMessage());
@@ -122,26 +619,245 @@ public class DefaultProjectProcessor implements ProjectProcessor {
         } catch (IllegalAccessException e) {
             logger.error(e.getMessage());
             throw e;
+        } finally {
+            if (this.watchdog != null) {
+                this.watchdog.shutdownNow();
+            }
+            this.javaClassCache.close();
+            if (this.sourceArchive != null) {
+                this.sourceArchive.close();
+            }
         }
+        completeProject();
+        Collections.sort(this.skippedFiles);
 
-        updatePackagesAggregates();
+        logMsg("**** Class files parsed: "
+                + this.javaClassCache.getParsedClasses() + ", cache hits: "
+                + this.javaClassCache.getCacheHits(), MSG_TYPE.DEBUG);
+        logMsg("**** Source files parsed: "
+                + this.parsingStatistics.getParsedFiles()
+                + ", full LL fallbacks: "
+                + this.parsingStatistics.getLlFallbacks(), MSG_TYPE.DEBUG);
+        if (this.measurementCache != null) {
+            this.measurementCache.save();
+        }
+        if (this.partialResults != null) {
+            this.partialResults.getSkippedFiles().addAll(this.skippedFiles);
+            this.partialResults.save(this.partialResultFile);
+            logMsg("**** Shard " + this.shardIndex + "/" + this.shardCount
+                    + ", packages: " + this.partialResults.getPackages().size(),
+                    MSG_TYPE.DEBUG);
+        }
 
         return this.project;
     }
 
+    /**
+     * Merges the partial results of all shards of a sharded analysis. The
+     * packages' aggregates are updated only now, from the accumulators of
+     * each package, so, the project's measurement is identical to the one
+     * of the analysis of the whole project. The detail level is the one the
+     * shards were analyzed with.
+     * @param projectName String the project's name.
+     * @param partialResultFiles List<File> the partial results' files, one
+     * per shard, in any order.
+     * @return Measurement the project's measurement.
+     * @throws JAXBException in case of an Unmarshalling error.
+     * @throws IOException if a shard is missing or repeated, or if the
+     * shards have different detail levels.
+     */
+    public Measurement merge(String projectName, List<File> partialResultFiles)
+            throws JAXBException, IOException {
+        this.consumer = null;
+        this.skippedFiles = new ArrayList<String>();
+        this.project = new Measurement();
+        this.project.setName(projectName);
+        this.project.setType(MEASUREMENT_TYPE.PROJECT_MEASUREMENT);
+        int expectedShards = 0;
+        MEASUREMENT_TYPE shardsDetailLevel = null;
+        Set<Integer> shards = new HashSet<Integer>();
+        List<PartialResults.PartialPackage> packages = new ArrayList<PartialResults.PartialPackage>();
+        for (File file : partialResultFiles) {
+            PartialResults partial = PartialResults.load(file);
+            MEASUREMENT_TYPE partialDetailLevel = partial.getDetailLevel();
+            if (partialDetailLevel == null) {
+                partialDetailLevel = MEASUREMENT_TYPE.METHOD_MEASUREMENT;
+            }
+            if (expectedShards == 0) {
+                expectedShards = partial.getShardCount();
+                shardsDetailLevel = partialDetailLevel;
+            } else if (partial.getShardCount() != expectedShards) {
+                throw new IOException("Partial results of different analyses: "
+                        + file.getName());
+            } else if (partialDetailLevel != shardsDetailLevel) {
+                throw new IOException(
+                        "Partial results of different detail levels: "
+                                + file.getName());
+            }
+            if (!shards.add(partial.getShardIndex())) {
+                throw new IOException("Repeated shard: "
+                        + partial.getShardIndex() + ", file: "
+                        + file.getName());
+            }
+            packages.addAll(partial.getPackages());
+            this.skippedFiles.addAll(partial.getSkippedFiles());
+        }
+        if (shards.size() != expectedShards) {
+            throw new IOException("Missing shards. Expected: "
+                    + expectedShards + ", found: " + shards.size());
+        }
+        Collections.sort(packages,
+                new Comparator<PartialResults.PartialPackage>() {
+                    @Override
+                    public int compare(PartialResults.PartialPackage p1,
+                            PartialResults.PartialPackage p2) {
+                        return p1.getOrdinal() < p2.getOrdinal() ? -1 : (p1
+                                .getOrdinal() == p2.getOrdinal() ? 0 : 1);
+                    }
+                });
+        if (shardsDetailLevel != null) {
+            this.detailLevel = shardsDetailLevel;
+        }
+        if (this.detailLevel == MEASUREMENT_TYPE.PROJECT_MEASUREMENT) {
+            try {
+                this.aggregationRules = getAggregationRules();
+            } catch (Exception e) {
+                throw new IOException("Cannot create the aggregation rules: "
+                        + e.getMessage());
+            }
+        }
+        for (PartialResults.PartialPackage partialPackage : packages) {
+            completePackage(partialPackage.getMeasurement());
+        }
+        completeProject();
+        Collections.sort(this.skippedFiles);
+        logMsg("**** Merged shards: " + shards.size() + ", packages: "
+                + packages.size(), MSG_TYPE.DEBUG);
+        return this.project;
+    }
+
+    /*
+     * (non javadoc) Asks git for the files changed since the base reference.
+     * The other files' measurements come from the cache. Without the cache,
+     * or if git fails, all files are analyzed.
+     */
+    protected void findChangedFiles() {
+        if (this.measurementCache == null) {
+            logMsg("**** Changed files analysis needs the measurement cache."
+                    + " All files will be analyzed.", MSG_TYPE.INFO);
+            return;
+        }
+        try {
+            this.changedFiles = new GitChangedFiles(this.projectSourceRoot)
+                    .getChangedFiles(this.changedSince);
+            logMsg("**** Files changed since " + this.changedSince + ": "
+                    + this.changedFiles.size(), MSG_TYPE.DEBUG);
+        } catch (IOException e) {
+            logMsg("**** Cannot find the changed files: " + e.getMessage()
+                    + ". All files will be analyzed.", MSG_TYPE.ERROR);
+        }
+    }
+
     /**
      * This only updates the package aggregates metrics.
+     * @param m Measurement the complete package's measurement.
+     */
+    protected void updatePackageAggregates(Measurement m) {
+        MetricValue mv = m.getMetricValue(this.context.getBundle().getString(
+                "metric.cc.name"));
+        mv.setValue((double) mv.getValue() / (double) mv.getQtdElements());
+        mv = m.getMetricValue(this.context.getBundle().getString(
+                "metric.rfc.name"));
+        mv.setValue((double) mv.getValue() / (double) mv.getQtdElements());
+    }
+
+    /*
+     * (non javadoc) A package is complete: its aggregates are updated, it is
+     * added to the project's measurement (or, at project detail level, to
+     * the project's aggregates) and handed to the consumer. Then, if asked,
+     * its classes lose their methods' measurements, or, at package and
+     * project detail levels, it loses its classes.
+     */
+    protected void completePackage(Measurement packageMeasurement) {
+        if (this.partialResults != null) {
+            this.partialResults.getPackages().add(
+                    new PartialResults.PartialPackage(this.scannedPackages,
+                            copyMetricValues(packageMeasurement)));
+        }
+        updatePackageAggregates(packageMeasurement);
+        if (this.detailLevel == MEASUREMENT_TYPE.PROJECT_MEASUREMENT) {
+            updateProjectAggregates(packageMeasurement);
+        } else {
+            this.project.getInnerMeasurements().add(packageMeasurement);
+        }
+        if (this.consumer != null) {
+            for (Measurement classMeasurement : packageMeasurement
+                    .getInnerMeasurements()) {
+                this.consumer.classMeasured(packageMeasurement,
+                        classMeasurement);
+            }
+            this.consumer.packageMeasured(packageMeasurement);
+        }
+        if (this.detailLevel == MEASUREMENT_TYPE.PROJECT_MEASUREMENT
+                || this.detailLevel == MEASUREMENT_TYPE.PACKAGE_MEASUREMENT) {
+            packageMeasurement.setInnerMeasurements(new ArrayList<Measurement>());
+        }
+    }
+
+    /*
+     * (non javadoc) At project detail level, the package's metric values are
+     * aggregated into the project's, with the same rules used for the
+     * classes of a package (average or maximum value).
+     */
+    protected void updateProjectAggregates(Measurement packageMeasurement) {
+        for (MetricValue mv : packageMeasurement.getMetricValues()) {
+            MetricValue projectMv = this.project.getMetricValue(mv.getName());
+            if (projectMv == null) {
+                projectMv = new MetricValue();
+                projectMv.setName(mv.getName());
+                this.project.getMetricValues().add(projectMv);
+            }
+            this.aggregationRules.get(mv.getName()).updatePackageMetrics(
+                    projectMv, mv);
+        }
+    }
+
+    /*
+     * (non javadoc) All packages are complete. At project detail level, the
+     * project's averages are updated.
+     */
+    protected void completeProject() {
+        if (this.detailLevel == MEASUREMENT_TYPE.PROJECT_MEASUREMENT
+                && !this.project.getMetricValues().isEmpty()) {
+            updatePackageAggregates(this.project);
+        }
+    }
+
+    /*
+     * (non javadoc) A copy of the package's measurement, with its own metric
+     * values (that keep the accumulators) and the same classes.
      */
-    protected void updatePackagesAggregates() {
-        for (Measurement m : this.project.getInnerMeasurements()) {
-            MetricValue mv = m.getMetricValue(this.context.getBundle()
-                    .getString("metric.cc.name"));
-            mv.setValue((double) mv.getValue() / (double) mv.getQtdElements());
-            mv = m.getMetricValue(this.context.getBundle().getString(
-                    "metric.rfc.name"));
-            mv.setValue((double) mv.getValue() / (double) mv.getQtdElements());
+    protected Measurement copyMetricValues(Measurement packageMeasurement) {
+        List<MetricValue> values = new ArrayList<MetricValue>();
+        for (MetricValue mv : packageMeasurement.getMetricValues()) {
+            MetricValue copy = new MetricValue();
+            copy.setName(mv.getName());
+            copy.setValue(mv.getValue());
+            copy.setQtdElements(mv.getQtdElements());
+            copy.setViolated(mv.isViolated());
+            values.add(copy);
         }
+        return new Measurement(packageMeasurement.getName(),
+                packageMeasurement.getDate(), packageMeasurement.getType(),
+                values, packageMeasurement.getInnerMeasurements());
+    }
 
+    /*
+     * (non javadoc) Whether a package belongs to the shard being analyzed.
+     */
+    protected boolean isInShard(String packageName) {
+        return this.shardCount <= 1
+                || getShardOf(packageName, this.shardCount) == this.shardIndex;
     }
 
     /*
@@ -152,54 +868,373 @@ public class DefaultProjectProcessor implements ProjectProcessor {
      */
     protected void processFolder(File sourceDir) throws ClassNotFoundException,
             InstantiationException, IllegalAccessException {
-        boolean hasJavaFiles = false;
-        File[] listFiles = sourceDir.listFiles();
-        Measurement packageMeasurement = new Measurement();
-        packageMeasurement.setName(getPackageName(sourceDir));
-        packageMeasurement.setType(MEASUREMENT_TYPE.PACKAGE_MEASUREMENT);
-        logMsg("**** Pagkage: " + sourceDir.getName(), MSG_TYPE.DEBUG);
-        for (int x = 0; x < listFiles.length; x++) {
-            File oneFile = listFiles[x];
-            if (oneFile.isFile()) {
-                if (isJavaFile(oneFile) && processMetrics(packageMeasurement, oneFile)) {
-                    hasJavaFiles = true;
+        final Map<String, PackageWork> openPackages = new HashMap<String, PackageWork>();
+        newSourceScanner(sourceDir).scan(new SourceScanner.SourceHandler() {
+            @Override
+            public void sourceFile(String packageName, File sourceFile) {
+                if (!isInShard(packageName)) {
+                    return;
+                }
+                PackageWork work = openPackages.get(packageName);
+                if (work == null) {
+                    work = new PackageWork(newPackageMeasurement(packageName));
+                    openPackages.put(packageName, work);
+                }
+                if (processFile(work.packageMeasurement, sourceFile)) {
+                    work.hasJavaFiles = true;
+                }
+            }
+
+            @Override
+            public void endOfPackage(String packageName) {
+                PackageWork work = openPackages.remove(packageName);
+                scannedPackages++;
+                if (work != null && work.hasJavaFiles) {
+                    // if this package has java files, then we add it to the
+                    // project's measurements
+                    completePackage(work.packageMeasurement);
+                }
+            }
+        });
+    }
+
+    /*
+     * (non javadoc) Parallel version of "processFolder()", organized as a
+     * pipeline. The scanner thread puts each file (and each end of package)
+     * into a bounded queue, in the scanning order. Reader threads prefetch
+     * the file's compiled class and source code (or take its measurements
+     * from the cache), a CPU pool parses and walks the source code, and this
+     * thread is the single aggregator: it takes the queue items in order,
+     * waits for their results and merges them into the package and project
+     * measurements. The queue bound limits the files in flight, so the memory
+     * use does not grow with the project, and the aggregates are identical to
+     * the sequential processing.
+     */
+    protected void processFolderInParallel(File sourceDir)
+            throws ClassNotFoundException, InstantiationException,
+            IllegalAccessException, IOException {
+        BlockingQueue<FileWork> queue = new ArrayBlockingQueue<FileWork>(
+                this.queueCapacity);
+        ExecutorService readers = Executors
+                .newFixedThreadPool(this.readerThreads);
+        ExecutorService parsers = this.workerPool;
+        if (parsers == null) {
+            parsers = Executors.newFixedThreadPool(this.threads);
+        }
+        SourceFeeder feeder = new SourceFeeder(sourceDir, queue, readers,
+                parsers);
+        Thread scanner = new Thread(feeder, "jqana-scanner");
+        Map<String, PackageWork> openPackages = new HashMap<String, PackageWork>();
+        logMsg("**** Parallel processing. Threads: " + this.threads
+                + ", readers: " + this.readerThreads + ", queue: "
+                + this.queueCapacity, MSG_TYPE.DEBUG);
+        try {
+            scanner.start();
+            FileWork item = queue.take();
+            while (item != END_OF_SOURCES) {
+                PackageWork work = openPackages.get(item.packageName);
+                if (work == null) {
+                    work = new PackageWork(
+                            newPackageMeasurement(item.packageName));
+                    openPackages.put(item.packageName, work);
+                }
+                if (item.sourceFile != null) {
+                    FileResult result = item.getResult();
+                    mergePackageMeasurement(work.packageMeasurement,
+                            result.partialMeasurement);
+                    if (result.processingOk) {
+                        work.hasJavaFiles = true;
+                    }
+                } else {
+                    openPackages.remove(item.packageName);
+                    this.scannedPackages++;
+                    if (work.hasJavaFiles) {
+                        completePackage(work.packageMeasurement);
+                    }
                 }
+                item = queue.take();
+            }
+            if (feeder.failure != null) {
+                throw new IOException("Source scanning error: "
+                        + feeder.failure.getMessage());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Parallel processing interrupted.");
+        } catch (ExecutionException e) {
+            logger.error(e.getMessage());
+            throw new IOException("Parallel processing error: "
+                    + e.getCause().getMessage());
+        } finally {
+            scanner.interrupt();
+            readers.shutdownNow();
+            if (parsers != this.workerPool) {
+                parsers.shutdownNow();
+            }
+        }
+    }
+
+    /*
+     * (non javadoc) Creates the scanner that discovers the source files. If
+     * the source root is an archive, its scanner is used.
+     */
+    protected SourceScanner newSourceScanner(File sourceDir) {
+        SourceScanner scanner = this.sourceArchive;
+        if (scanner == null) {
+            scanner = new SourceScanner(sourceDir);
+        }
+        scanner.setIncludes(this.includes);
+        scanner.setExcludes(this.excludes);
+        return scanner;
+    }
+
+    /*
+     * (non javadoc) Analyzes one file and merges its measurements into the
+     * package's measurement.
+     */
+    protected boolean processFile(Measurement packageMeasurement, File oneFile) {
+        FileResult result = analyzeFile(packageMeasurement.getName(), oneFile);
+        mergePackageMeasurement(packageMeasurement, result.partialMeasurement);
+        return result.processingOk;
+    }
+
+    /*
+     * (non javadoc) Analyzes one file against a private package measurement.
+     * If the analysis is incremental and the file has not changed, its
+     * measurements come from the cache.
+     */
+    protected FileResult analyzeFile(String packageName, File oneFile) {
+        FileWork item = new FileWork(packageName, oneFile);
+        FileResult result = getCachedResult(item);
+        if (result == null) {
+            result = measureFile(item);
+        }
+        return result;
+    }
+
+    /*
+     * (non javadoc) If the analysis is incremental and the file has not
+     * changed, returns its cached measurements. Otherwise, returns null,
+     * leaving the file's hash in the work item, to update the cache later.
+     */
+    protected FileResult getCachedResult(FileWork item) {
+        if (this.measurementCache == null) {
+            return null;
+        }
+        item.fileKey = getFileKey(item.sourceFile);
+        if (this.changedFiles != null
+                && !this.changedFiles.contains(item.fileKey)) {
+            MeasurementCache.CachedMeasurement entry = this.measurementCache
+                    .get(item.fileKey);
+            if (entry != null) {
+                logger.debug("Source file not changed since "
+                        + this.changedSince + ": " + item.fileKey);
+                return newFileResult(entry);
+            }
+        }
+        try {
+            if (this.javaClassCache.isArchive()) {
+                item.hash = this.measurementCache.computeHash(
+                        item.sourceFile,
+                        this.javaClassCache
+                                .getArchiveChecksum(getObjectFilePath(item.sourceFile)));
             } else {
-                // Is a directory (sub package)
-                processFolder(oneFile);
+                item.hash = this.measurementCache.computeHash(
+                        item.sourceFile,
+                        new File(getObjectFilePath(item.sourceFile)));
             }
+            MeasurementCache.CachedMeasurement entry = this.measurementCache
+                    .get(item.fileKey, item.hash);
+            if (entry != null) {
+                logger.debug("Source file not changed: " + item.fileKey);
+                return newFileResult(entry);
+            }
+        } catch (IOException e) {
+            logger.error("Cannot verify measurement cache for file: "
+                    + item.fileKey + ", message: " + e.getMessage());
+            item.hash = null;
         }
-        if (hasJavaFiles) {
-            // if this package has java files, then we add it to the project's
-            // measurements
-            project.getInnerMeasurements().add(packageMeasurement);
+        return null;
+    }
 
+    private FileResult newFileResult(MeasurementCache.CachedMeasurement entry) {
+        FileResult result = new FileResult();
+        result.partialMeasurement = entry.getPartialMeasurement();
+        result.processingOk = entry.isProcessingOk();
+        return result;
+    }
+
+    /*
+     * (non javadoc) Measures one file against a private package measurement,
+     * using its source code, if it was already loaded, and updates the
+     * cache. This may run in a worker thread.
+     */
+    protected FileResult measureFile(FileWork item) {
+        FileResult result = new FileResult();
+        result.partialMeasurement = new Measurement();
+        result.partialMeasurement.setName(item.packageName);
+        result.partialMeasurement.setType(MEASUREMENT_TYPE.PACKAGE_MEASUREMENT);
+        FileBudget budget = startBudget();
+        boolean exceeded = false;
+        try {
+            result.processingOk = processMetrics(result.partialMeasurement,
+                    item.sourceFile, item.source);
+        } finally {
+            exceeded = stopBudget(budget);
+        }
+        if (exceeded) {
+            // Whatever was measured is discarded, and it is not cached:
+            String fileKey = getFileKey(item.sourceFile);
+            logMsg(">>>>>>>>>> FILE SKIPPED! Time budget of "
+                    + this.fileTimeBudget + " ms exceeded: " + fileKey,
+                    MSG_TYPE.ERROR);
+            this.skippedFiles.add(fileKey);
+            result.partialMeasurement = new Measurement();
+            result.partialMeasurement.setName(item.packageName);
+            result.partialMeasurement
+                    .setType(MEASUREMENT_TYPE.PACKAGE_MEASUREMENT);
+            result.processingOk = false;
+            return result;
+        }
+        if (item.hash != null) {
+            this.measurementCache.put(item.fileKey, item.hash,
+                    result.partialMeasurement, result.processingOk);
         }
+        return result;
+    }
 
+    /*
+     * (non javadoc) Starts the watchdog of the current thread's file, if there
+     * is a time budget.
+     */
+    protected FileBudget startBudget() {
+        if (this.watchdog == null) {
+            return null;
+        }
+        FileBudget budget = new FileBudget(Thread.currentThread());
+        budget.alarm = this.watchdog.schedule(budget, this.fileTimeBudget,
+                TimeUnit.MILLISECONDS);
+        return budget;
     }
 
-    protected String getPackageName(File sourceDir) {
-        String packageName = null;
-        if (sourceDir.getName().equalsIgnoreCase("java")) {
-            packageName = "<default>";
-        } else {
-            int inx = sourceDir.getPath().indexOf("java\\");
-            if (inx < 0) {
-                inx = sourceDir.getPath().indexOf("java/");
+    /*
+     * (non javadoc) Stops the watchdog of the current thread's file,
+     * returning true if the budget was exceeded. In this case, the thread's
+     * interruption is cleared, so, it can go on with other files.
+     */
+    protected boolean stopBudget(FileBudget budget) {
+        if (budget == null) {
+            return false;
+        }
+        boolean exceeded = budget.stop();
+        budget.alarm.cancel(false);
+        if (exceeded) {
+            Thread.interrupted();
+        }
+        return exceeded;
+    }
+
+    /*
+     * (non javadoc) Reader stage of the pipeline: prefetches the compiled
+     * class and, for classes, the source code. May run in a reader thread.
+     */
+    protected void prefetch(FileWork item) {
+        try {
+            if (isAclassFile(item.sourceFile)
+                    && !isLargeFile(item.sourceFile)) {
+                item.source = loadSource(item.sourceFile);
             }
-            packageName = sourceDir.getPath().substring(inx + JAVAPATHSIZE);
-            packageName = packageName.replace("\\", ".");
-            packageName = packageName.replace("/", ".");
+        } catch (IOException e) {
+            // The error will be reported by the measurement
+            logger.debug("Cannot prefetch file: " + item.sourceFile.getName()
+                    + ", message: " + e.getMessage());
         }
-        return packageName;
     }
 
-    protected boolean isJavaFile(File oneFile) {
-        boolean returnCode = false;
-        if (FileUtils.getExtension(oneFile.getName()).equalsIgnoreCase("java")) {
-            returnCode = true;
+    /*
+     * (non javadoc) The file's path, relative to the source root.
+     */
+    protected String getFileKey(File oneFile) {
+        String fileKey = oneFile.getPath();
+        if (fileKey.startsWith(this.projectSourceRoot.getPath())) {
+            fileKey = fileKey.substring(this.projectSourceRoot.getPath()
+                    .length() + 1);
         }
-        return returnCode;
+        return fileKey.replace("\\", "/");
+    }
+
+    /*
+     * (non javadoc) Merges the measurements of one file, taken against a
+     * private package measurement, into the real package measurement. Class
+     * measurements are added (or have their metric values replaced, if the
+     * class was already measured), and the package metric values are
+     * aggregated by the same rule used by each metric's parser.
+     */
+    protected void mergePackageMeasurement(Measurement packageMeasurement,
+            Measurement partialMeasurement) {
+        for (Measurement classMeasurement : partialMeasurement
+                .getInnerMeasurements()) {
+            int indx = packageMeasurement.getInnerMeasurements().indexOf(
+                    classMeasurement);
+            if (indx >= 0) {
+                Measurement existing = packageMeasurement
+                        .getInnerMeasurements().get(indx);
+                for (MetricValue mv : classMeasurement.getMetricValues()) {
+                    existing.getMetricValues().remove(mv);
+                    existing.getMetricValues().add(mv);
+                }
+            } else {
+                // A copy, as the measurement may also be kept by the cache:
+                packageMeasurement.getInnerMeasurements().add(
+                        new Measurement(classMeasurement.getName(),
+                                classMeasurement.getDate(), classMeasurement
+                                        .getType(), new ArrayList<MetricValue>(
+                                        classMeasurement.getMetricValues()),
+                                classMeasurement.getInnerMeasurements()));
+            }
+        }
+        for (MetricValue mv : partialMeasurement.getMetricValues()) {
+            MetricValue packageMv = packageMeasurement.getMetricValue(mv
+                    .getName());
+            if (packageMv == null) {
+                // A copy, because the package's value will be changed:
+                packageMv = new MetricValue();
+                packageMv.setName(mv.getName());
+                packageMv.setValue(mv.getValue());
+                packageMv.setQtdElements(mv.getQtdElements());
+                packageMv.setViolated(mv.isViolated());
+                packageMeasurement.getMetricValues().add(packageMv);
+            } else {
+                this.aggregationRules.get(mv.getName()).updatePackageMetrics(
+                        packageMv, mv);
+            }
+        }
+    }
+
+    /*
+     * (non javadoc) The parsers know how to aggregate their metric values
+     * into the package's metric value (average or maximum value).
+     */
+    protected Map<String, AbstractMetricParser> getAggregationRules()
+            throws ClassNotFoundException, InstantiationException,
+            IllegalAccessException {
+        Context ctx = newFileContext();
+        Map<String, AbstractMetricParser> rules = new HashMap<String, AbstractMetricParser>();
+        AbstractMetricParser[] parsers = {
+            new CyclomaticComplexityParser(null, ctx),
+            new Lcom4Parser(null, ctx), new RfcBcelParser(null, ctx) };
+        for (AbstractMetricParser parser : parsers) {
+            rules.put(parser.getParserName(), parser);
+        }
+        return rules;
+    }
+
+    protected Measurement newPackageMeasurement(String packageName) {
+        Measurement packageMeasurement = new Measurement();
+        packageMeasurement.setName(packageName);
+        packageMeasurement.setType(MEASUREMENT_TYPE.PACKAGE_MEASUREMENT);
+        logMsg("**** Pagkage: " + packageName, MSG_TYPE.DEBUG);
+        return packageMeasurement;
     }
 
     /*
@@ -209,31 +1244,38 @@ public class DefaultProjectProcessor implements ProjectProcessor {
      */
     protected boolean processMetrics(Measurement packageMeasurement,
             File oneFile) {
+        return processMetrics(packageMeasurement, oneFile, null);
+    }
+
+    /*
+     * (non javadoc) Same as "processMetrics(Measurement, File)", using the
+     * source code already loaded (if it is not null). The status is kept by
+     * each call, as files may be processed by many threads at once.
+     */
+    protected boolean processMetrics(Measurement packageMeasurement,
+            File oneFile, CharStream source) {
         boolean processingOk = true;
+        String status = null;
         try {
             logger.debug("Source file: " + oneFile.getName());
-            this.context
-                    .setStatusBeforeException("Verifying if it is a Java Class file: "
-                            + oneFile.getName()
-                            + ", package: "
-                            + packageMeasurement.getName());
+            status = "Verifying if it is a Java Class file: "
+                    + oneFile.getName() + ", package: "
+                    + packageMeasurement.getName();
             if (isAclassFile(oneFile)) {
-                String sourceCode = this.getSource(oneFile);
-                this.context
-                        .setStatusBeforeException("Calculating CC for file: "
-                                + oneFile.getName() + ", package: "
-                                + packageMeasurement.getName());
-                processCyclomaticMetric(sourceCode, packageMeasurement);
-                this.context
-                        .setStatusBeforeException("Calculating LCOM4 for file: "
-                                + oneFile.getName()
-                                + ", package: "
-                                + packageMeasurement.getName());
-                processLcom4Metric(sourceCode, packageMeasurement);
-                this.context
-                        .setStatusBeforeException("Calculating RFC for file: "
-                                + oneFile.getName() + ", package: "
-                                + packageMeasurement.getName());
+                status = "Calculating CC and LCOM4 for file: "
+                        + oneFile.getName() + ", package: "
+                        + packageMeasurement.getName();
+                if (source == null && isLargeFile(oneFile)) {
+                    processLargeSourceMetrics(oneFile, packageMeasurement);
+                } else {
+                    CharStream sourceCode = source;
+                    if (sourceCode == null) {
+                        sourceCode = loadSource(oneFile);
+                    }
+                    processSourceMetrics(sourceCode, packageMeasurement);
+                }
+                status = "Calculating RFC for file: " + oneFile.getName()
+                        + ", package: " + packageMeasurement.getName();
                 processRfcMetric(oneFile, packageMeasurement);
             } else {
                 logger.debug(" ****  File ignored, not a java Class file, maybe an Interface type: "
@@ -244,11 +1286,14 @@ public class DefaultProjectProcessor implements ProjectProcessor {
             }
         } catch (Exception ex) {
             logger.error(">>>>>>>>>> Package Processing ERROR: "
-                    + context.getStatusBeforeException()
+                    + status
                     + ". FILE IGNORED! Exception: "
                     + ex.getClass().getSimpleName() + ", message: "
                     + ex.getMessage());
             processingOk = false;
+        } finally {
+            // The class file model is not needed anymore:
+            this.javaClassCache.release(getObjectFilePath(oneFile));
         }
         return processingOk;
 
@@ -257,8 +1302,7 @@ public class DefaultProjectProcessor implements ProjectProcessor {
     protected boolean isAclassFile(File oneFile) throws IOException {
         boolean returnCode = true;
         String objectPath = getObjectFilePath(oneFile);
-        ClassParser cParser = new ClassParser(objectPath);
-        JavaClass oneClass = cParser.parse();
+        JavaClass oneClass = this.javaClassCache.getJavaClass(objectPath);
         if (oneClass.isInterface()) {
             returnCode = false;
         }
@@ -266,33 +1310,77 @@ public class DefaultProjectProcessor implements ProjectProcessor {
     }
 
     /*
-     * (non javadoc) Analyzes Cyclomatic complexity for a source file.
+     * (non javadoc) Analyzes CC and LCOM4 for a very large source file,
+     * which is read through an unbuffered char stream.
      */
-    protected void processCyclomaticMetric(String sourceFile,
-            Measurement packageMeasurement) throws ClassNotFoundException,
-            InstantiationException, IllegalAccessException {
-
-        Context ctx = new Context();
-        ResourceBundle bundle = ResourceBundle.getBundle("report");
-        context.setBundle(bundle);
-        Parser parser = new CyclomaticComplexityParser(packageMeasurement,
-                ctx);
-        parser.parse(null, sourceFile);
-
+    protected void processLargeSourceMetrics(File oneFile,
+            Measurement packageMeasurement) throws IOException,
+            ClassNotFoundException, InstantiationException,
+            IllegalAccessException {
+        logMsg("**** Large source file, parsed with unbuffered streams: "
+                + oneFile.getName(), MSG_TYPE.DEBUG);
+        InputStream in = openSource(oneFile);
+        try {
+            processSourceMetrics(
+                    getSourceLoader().loadUnbuffered(in, oneFile.getPath()),
+                    packageMeasurement);
+        } finally {
+            in.close();
+        }
     }
 
     /*
-     * (non javadoc) Analyzes LCOM4 for a source file.
+     * (non javadoc) Analyzes CC and LCOM4 for a source file already loaded
+     * into a char stream. An unbuffered char stream is always parsed in
+     * streaming mode.
      */
-    protected void processLcom4Metric(String sourceFile,
+    protected void processSourceMetrics(CharStream sourceFile,
             Measurement packageMeasurement) throws ClassNotFoundException,
             InstantiationException, IllegalAccessException {
-        Context ctx = new Context();
-        ResourceBundle bundle = ResourceBundle.getBundle("report");
-        context.setBundle(bundle);
-        Parser parser = new Lcom4Parser(packageMeasurement, ctx);
-        Measurement mt = parser.parse(null, sourceFile);
+        Context ctx = newFileContext();
+        if (this.lexerOnlyCc) {
+            LexerCyclomaticComplexityParser lexerParser = new LexerCyclomaticComplexityParser(
+                    packageMeasurement, ctx);
+            lexerParser.setDetailLevel(this.detailLevel);
+            Measurement mt = lexerParser.parse(sourceFile);
+            logger.debug(mt.toString());
+            return;
+        }
+        List<AbstractMetricParser> parsers = new ArrayList<AbstractMetricParser>();
+        parsers.add(new CyclomaticComplexityParser(packageMeasurement, ctx));
+        parsers.add(new Lcom4Parser(packageMeasurement, ctx));
+        for (AbstractMetricParser metricParser : parsers) {
+            metricParser.setDetailLevel(this.detailLevel);
+        }
+        MultiMetricParser parser = new MultiMetricParser(parsers);
+        parser.setParsingStatistics(this.parsingStatistics);
+        parser.setStreaming(this.streamingParse
+                || sourceFile instanceof UnbufferedCharStream);
+        Measurement mt = parser.parse(sourceFile);
         logger.debug(mt.toString());
+        if (this.ccValidation) {
+            validateCc(sourceFile, parsers.get(0).getMeasurement());
+        }
+    }
+
+    /*
+     * (non javadoc) Calculates CC again, only with the lexer, and compares
+     * it to the parser's measurement. The lexer's measurement is discarded.
+     */
+    protected void validateCc(CharStream sourceFile, Measurement expected)
+            throws ClassNotFoundException, InstantiationException,
+            IllegalAccessException {
+        Context ctx = newFileContext();
+        LexerCyclomaticComplexityParser lexerParser = new LexerCyclomaticComplexityParser(
+                new Measurement(), ctx);
+        lexerParser.setDetailLevel(this.detailLevel);
+        Measurement actual = lexerParser.parse(sourceFile);
+        for (String difference : LexerCyclomaticComplexityParser.compare(
+                expected, actual, ctx.getBundle().getString("metric.cc.name"))) {
+            String msg = sourceFile.getSourceName() + ": " + difference;
+            logMsg("**** CC validation: " + msg, MSG_TYPE.ERROR);
+            this.ccValidationErrors.add(msg);
+        }
     }
 
     /*
@@ -301,46 +1389,98 @@ public class DefaultProjectProcessor implements ProjectProcessor {
     protected void processRfcMetric(File oneFile, Measurement packageMeasurement)
             throws ClassNotFoundException, InstantiationException,
             IllegalAccessException {
-        Context ctx = new Context();
+        Context ctx = newFileContext();
         String objectPath = getObjectFilePath(oneFile);
-        ResourceBundle bundle = ResourceBundle.getBundle("report");
-        context.setBundle(bundle);
-        Parser parser = new RfcBcelParser(packageMeasurement, ctx);
+        RfcBcelParser parser = new RfcBcelParser(packageMeasurement, ctx);
+        parser.setJavaClassCache(this.javaClassCache);
         parser.parse(objectPath, null);
 
     }
 
+    /*
+     * (non javadoc) Creates the context of one file's analysis: it has its
+     * own errors and status, but shares the metric registry, built once.
+     */
+    protected Context newFileContext() throws ClassNotFoundException,
+            InstantiationException, IllegalAccessException {
+        if (this.context.getMetricRegistry() == null) {
+            return new Context(this.context.getBundle());
+        }
+        return new Context(this.context.getMetricRegistry());
+    }
+
+    /*
+     * (non javadoc) The cache of class models. If the project's compiled root
+     * is a file, it is a jar (or zip) archive, and the classes are read
+     * straight from it.
+     */
+    protected JavaClassCache newJavaClassCache() throws IOException {
+        if (this.projectObjectRoot.isFile()) {
+            logMsg("**** Compiled classes archive: "
+                    + this.projectObjectRoot.getPath(), MSG_TYPE.DEBUG);
+            return new JavaClassCache(this.projectObjectRoot);
+        }
+        return new JavaClassCache();
+    }
+
+    /*
+     * (non javadoc) Path of the compiled class of a source file. If the
+     * classes come from an archive, it is the class' entry name.
+     */
     protected String getObjectFilePath(File oneFile) {
+        if (this.javaClassCache != null && this.javaClassCache.isArchive()) {
+            return getFileKey(oneFile).replace(".java", ".class");
+        }
         String objectPath = oneFile.getPath().replace(".java", ".class");
         objectPath = objectPath.replace(this.projectSourceRoot.getPath(),
                 this.projectObjectRoot.getPath());
         return objectPath;
     }
 
-    protected String getSource(File oneFile) {
-        BufferedReader br = null;
-        StringBuilder sb = new StringBuilder();
-        try {
-            br = new BufferedReader(new InputStreamReader(new FileInputStream(
-                    oneFile), "UTF-8"));
-            String line = br.readLine();
-
-            while (line != null) {
-                sb.append(line);
-                sb.append("\n");
-                line = br.readLine();
-            }
-            return sb.toString();
-        } catch (IOException e) {
-            e.printStackTrace();
-        } finally {
-            try {
-                br.close();
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
+    /*
+     * (non javadoc) Each thread has its own source loader, as it reuses its
+     * decoder and read buffer.
+     */
+    protected SourceLoader getSourceLoader() {
+        return this.sourceLoaders.get();
+    }
+
+    /*
+     * (non javadoc) Loads a source file, from the source folder or straight
+     * from the sources archive.
+     */
+    protected CharStream loadSource(File oneFile) throws IOException {
+        if (this.sourceArchive != null) {
+            return this.sourceArchive.load(oneFile, getSourceLoader());
         }
-        return sb.toString();
+        return getSourceLoader().load(oneFile);
+    }
+
+    /*
+     * (non javadoc) Opens a source file, from the source folder or from the
+     * sources archive, to be read as a stream.
+     */
+    protected InputStream openSource(File oneFile) throws IOException {
+        if (this.sourceArchive != null) {
+            return this.sourceArchive.open(oneFile);
+        }
+        return new FileInputStream(oneFile);
+    }
+
+    /*
+     * (non javadoc) A file that is not loaded into memory (see
+     * "setLargeFileThreshold()").
+     */
+    protected boolean isLargeFile(File oneFile) throws IOException {
+        if (this.largeFileThreshold <= 0 || this.lexerOnlyCc
+                || this.ccValidation) {
+            return false;
+        }
+        long size = oneFile.length();
+        if (this.sourceArchive != null) {
+            size = this.sourceArchive.getSize(oneFile);
+        }
+        return size >= this.largeFileThreshold;
     }
 
     protected InputStream getStream(String sourceFile) {
@@ -375,4 +1515,193 @@ public class DefaultProjectProcessor implements ProjectProcessor {
         }
     }
 
+    /**
+     * A package being processed.
+     */
+    protected static class PackageWork {
+        private Measurement packageMeasurement;
+        private boolean hasJavaFiles;
+
+        PackageWork(Measurement packageMeasurement) {
+            this.packageMeasurement = packageMeasurement;
+        }
+    }
+
+    /**
+     * Result of one file analysis.
+     */
+    protected static class FileResult {
+        private Measurement partialMeasurement;
+        private boolean processingOk;
+    }
+
+    /**
+     * Watchdog of one file's analysis: when the alarm goes off, it interrupts
+     * the thread, unless the analysis is already finished.
+     */
+    protected static class FileBudget implements Runnable {
+        private Thread worker;
+        private boolean active = true;
+        private boolean exceeded;
+        private ScheduledFuture<?> alarm;
+
+        FileBudget(Thread worker) {
+            this.worker = worker;
+        }
+
+        @Override
+        public synchronized void run() {
+            if (this.active) {
+                this.exceeded = true;
+                this.worker.interrupt();
+            }
+        }
+
+        synchronized boolean stop() {
+            this.active = false;
+            return this.exceeded;
+        }
+    }
+
+    /**
+     * One file passing through the analysis. In the pipeline, an item without
+     * source file marks the end of a package.
+     */
+    protected static class FileWork {
+        private String packageName;
+        private File sourceFile;
+        private String fileKey;
+        private String hash;
+        private CharStream source;
+        private FileResult result;
+        private Throwable failure;
+        private CountDownLatch done = new CountDownLatch(1);
+
+        FileWork(String packageName, File sourceFile) {
+            this.packageName = packageName;
+            this.sourceFile = sourceFile;
+        }
+
+        void complete(FileResult result) {
+            this.result = result;
+            this.source = null;
+            this.done.countDown();
+        }
+
+        void fail(Throwable failure) {
+            this.failure = failure;
+            this.source = null;
+            this.done.countDown();
+        }
+
+        FileResult getResult() throws InterruptedException,
+                ExecutionException {
+            this.done.await();
+            if (this.failure != null) {
+                throw new ExecutionException(this.failure);
+            }
+            return this.result;
+        }
+    }
+
+    /**
+     * Scanner stage of the pipeline: feeds the queue, in the scanning order,
+     * and hands each file to the reader threads. It blocks while the queue is
+     * full.
+     */
+    protected class SourceFeeder implements Runnable,
+            SourceScanner.SourceHandler {
+        private File sourceDir;
+        private BlockingQueue<FileWork> queue;
+        private ExecutorService readers;
+        private ExecutorService parsers;
+        private volatile Throwable failure;
+
+        SourceFeeder(File sourceDir, BlockingQueue<FileWork> queue,
+                ExecutorService readers, ExecutorService parsers) {
+            this.sourceDir = sourceDir;
+            this.queue = queue;
+            this.readers = readers;
+            this.parsers = parsers;
+        }
+
+        @Override
+        public void run() {
+            try {
+                newSourceScanner(this.sourceDir).scan(this);
+            } catch (RuntimeException e) {
+                this.failure = e;
+            } catch (Error e) {
+                this.failure = e;
+                throw e;
+            } finally {
+                end();
+            }
+        }
+
+        private void end() {
+            try {
+                this.queue.put(END_OF_SOURCES);
+            } catch (InterruptedException e) {
+                // The aggregator gave up
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @Override
+        public void sourceFile(String packageName, File sourceFile) {
+            if (!isInShard(packageName)) {
+                return;
+            }
+            final FileWork item = new FileWork(packageName, sourceFile);
+            put(item);
+            this.readers.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        FileResult result = getCachedResult(item);
+                        if (result != null) {
+                            item.complete(result);
+                        } else {
+                            prefetch(item);
+                            parsers.execute(new Runnable() {
+                                @Override
+                                public void run() {
+                                    try {
+                                        item.complete(measureFile(item));
+                                    } catch (RuntimeException e) {
+                                        item.fail(e);
+                                    } catch (Error e) {
+                                        // The aggregator must not wait forever
+                                        item.fail(e);
+                                        throw e;
+                                    }
+                                }
+                            });
+                        }
+                    } catch (RuntimeException e) {
+                        item.fail(e);
+                    } catch (Error e) {
+                        item.fail(e);
+                        throw e;
+                    }
+                }
+            });
+        }
+
+        @Override
+        public void endOfPackage(String packageName) {
+            put(new FileWork(packageName, null));
+        }
+
+        private void put(FileWork item) {
+            try {
+                this.queue.put(item);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Source scanning interrupted.");
+            }
+        }
+    }
+
 }
@@ -1,7 +1,10 @@
 package com.obomprogramador.tools.jqana.model.defaultimpl;
 
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.TokenStream;
 import org.antlr.v4.runtime.tree.ParseTree;
 
+import com.obomprogramador.tools.jqana.antlrparser.JavaParser;
 import com.obomprogramador.tools.jqana.antlrparser.JavaParser.ClassDeclarationContext;
 
 /**
@@ -40,4 +43,36 @@ public final class GetClassNameFromContext {
         }
         return className;
     }
+
+    /**
+     * Get the class name while the class declaration is being parsed, when
+     * its children are not known yet: the name follows the "class" keyword.
+     * 
+     * @param tokens
+     *            TokenStream positioned at the class declaration's start.
+     * @return Class name.
+     */
+    public static String getClassName(TokenStream tokens) {
+        return tokens.LT(2).getText();
+    }
+
+    /**
+     * Get the method (or constructor) name while its declaration is being
+     * parsed: it is the token before the formal parameters.
+     * 
+     * @param tokens
+     *            TokenStream positioned at the method declaration's start.
+     * @return Method name.
+     */
+    public static String getMethodName(TokenStream tokens) {
+        String methodName = "<no name>";
+        int k = 1;
+        Token token = tokens.LT(k);
+        while (token.getType() != JavaParser.LPAREN
+                && token.getType() != Token.EOF) {
+            methodName = token.getText();
+            token = tokens.LT(++k);
+        }
+        return methodName;
+    }
 }
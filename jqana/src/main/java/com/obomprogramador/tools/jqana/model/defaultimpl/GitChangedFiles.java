@@ -0,0 +1,170 @@
+/**
+ * jQana - Open Source Java(TM) code quality analyzer.
+ * 
+ * Copyright 2013 Cleuton Sampaio de Melo Jr
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * Project website: http://www.jqana.com
+ */
+package com.obomprogramador.tools.jqana.model.defaultimpl;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Finds the java source files changed since the merge base of a git
+ * reference (for example: "origin/master") and the current HEAD, using the
+ * local git binary. Uncommitted and untracked files are considered changed
+ * too.
+ * 
+ * The paths are relative to the working directory (usually, the source
+ * root), using "/" as separator.
+ * 
+ * @author Cleuton Sampaio
+ * 
+ */
+public class GitChangedFiles {
+
+    private File workingDirectory;
+    private String gitCommand = "git";
+
+    /**
+     * Constructor with fields.
+     * @param workingDirectory File the folder to which the paths are
+     * relative. It must be inside a git working tree.
+     */
+    public GitChangedFiles(File workingDirectory) {
+        super();
+        this.workingDirectory = workingDirectory;
+    }
+
+    /**
+     * Setter for the git command.
+     * @param gitCommand String the git binary (default: "git").
+     */
+    public void setGitCommand(String gitCommand) {
+        this.gitCommand = gitCommand;
+    }
+
+    /**
+     * Finds the changed java files.
+     * @param baseRef String the base reference (branch, tag or commit).
+     * @return Set<String> the changed java files' relative paths.
+     * @throws IOException if git fails or cannot be executed.
+     */
+    public Set<String> getChangedFiles(String baseRef) throws IOException {
+        List<String> mergeBase = run("merge-base", baseRef, "HEAD");
+        if (mergeBase.isEmpty()) {
+            throw new IOException("No merge base for: " + baseRef);
+        }
+        Set<String> changedFiles = new HashSet<String>();
+        // Compared to the working tree, so, uncommitted changes are included:
+        addJavaFiles(changedFiles, run("diff", "--name-only", "--relative",
+                mergeBase.get(0)));
+        addJavaFiles(changedFiles, run("ls-files", "--others",
+                "--exclude-standard"));
+        return changedFiles;
+    }
+
+    private void addJavaFiles(Set<String> changedFiles, List<String> paths) {
+        for (String path : paths) {
+            if (path.endsWith(".java")) {
+                changedFiles.add(path);
+            }
+        }
+    }
+
+    /*
+     * (non javadoc) Runs a git command in the working directory, returning
+     * its output lines.
+     */
+    protected List<String> run(String... args) throws IOException {
+        List<String> command = new ArrayList<String>();
+        command.add(this.gitCommand);
+        command.add("-c");
+        command.add("core.quotepath=off");
+        command.addAll(Arrays.asList(args));
+        ProcessBuilder builder = new ProcessBuilder(command);
+        builder.directory(this.workingDirectory);
+        Process process = builder.start();
+        // Both streams are read at once, or git may block on a full pipe:
+        ErrorReader errors = new ErrorReader(process.getErrorStream());
+        errors.start();
+        try {
+            List<String> output = readLines(process.getInputStream());
+            int exitValue = process.waitFor();
+            errors.join();
+            if (exitValue != 0) {
+                throw new IOException("Command failed: " + command + ": "
+                        + errors.lines);
+            }
+            return output;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Command interrupted: " + command);
+        } finally {
+            process.destroy();
+        }
+    }
+
+    private List<String> readLines(InputStream stream) throws IOException {
+        List<String> lines = new ArrayList<String>();
+        BufferedReader br = new BufferedReader(new InputStreamReader(stream,
+                "UTF-8"));
+        try {
+            String line = br.readLine();
+            while (line != null) {
+                if (line.trim().length() > 0) {
+                    lines.add(line.trim());
+                }
+                line = br.readLine();
+            }
+        } finally {
+            br.close();
+        }
+        return lines;
+    }
+
+    /*
+     * (non javadoc) Reads the error output of a git command in its own
+     * thread, while the standard output is being read.
+     */
+    private class ErrorReader extends Thread {
+        private InputStream stream;
+        private List<String> lines = new ArrayList<String>();
+
+        ErrorReader(InputStream stream) {
+            this.stream = stream;
+            setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            try {
+                this.lines = readLines(this.stream);
+            } catch (IOException e) {
+                this.lines.add(e.getMessage());
+            }
+        }
+    }
+
+}
@@ -0,0 +1,393 @@
+/**
+ * jQana - Open Source Java(TM) code quality analyzer.
+ * 
+ * Copyright 2013 Cleuton Sampaio de Melo Jr
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * Project website: http://www.jqana.com
+ */
+package com.obomprogramador.tools.jqana.model.defaultimpl;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Marshaller;
+import javax.xml.bind.Unmarshaller;
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlRootElement;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.obomprogramador.tools.jqana.context.Context;
+import com.obomprogramador.tools.jqana.model.Measurement;
+
+/**
+ * Persistent cache of the measurements of each source file, used by the
+ * incremental analysis.
+ * 
+ * Each entry holds everything a source file added to its package's
+ * measurement (the class measurement and the package metric values), and it
+ * is keyed by a hash of the source file, its compiled class file and the
+ * metric thresholds. If none of them has changed, the file does not need to be
+ * analyzed again, and only the package and project aggregates are computed.
+ * 
+ * The cache is persisted as an XML file, using JAXB. It is safe to use it from
+ * several threads.
+ * 
+ * @author Cleuton Sampaio
+ * 
+ */
+public class MeasurementCache {
+
+    /**
+     * Name of the cache file, inside the cache directory.
+     */
+    public static final String CACHE_FILE_NAME = "jqana-cache.xml";
+    private static final int BUFFER_SIZE = 8192;
+    private static final int HEX_MASK = 0xff;
+    private static final int HEX_RADIX = 16;
+
+    private File cacheFile;
+    private String thresholds;
+    private ConcurrentMap<String, CachedMeasurement> previousEntries = new ConcurrentHashMap<String, CachedMeasurement>();
+    private ConcurrentMap<String, CachedMeasurement> currentEntries = new ConcurrentHashMap<String, CachedMeasurement>();
+    private Logger logger;
+
+    /**
+     * Constructor with fields.
+     * @param cacheDirectory File the directory where the cache is persisted.
+     * @param context Context the context, with the metric thresholds.
+     */
+    public MeasurementCache(File cacheDirectory, Context context) {
+        super();
+        this.logger = LoggerFactory.getLogger(this.getClass());
+        this.cacheFile = new File(cacheDirectory, CACHE_FILE_NAME);
+        this.thresholds = context.getBundle().getString("jqana.version") + ":"
+                + context.getBundle().getString("metric.cc.limit") + ":"
+                + context.getBundle().getString("metric.lcom4.limit") + ":"
+                + context.getBundle().getString("metric.rfc.limit");
+    }
+
+    /**
+     * Loads the entries persisted by the previous run. If the cache file
+     * cannot be read, all files will be analyzed.
+     */
+    public void load() {
+        if (this.cacheFile.exists()) {
+            try {
+                JAXBContext jcontext = JAXBContext
+                        .newInstance(CachedMeasurements.class);
+                Unmarshaller u = jcontext.createUnmarshaller();
+                CachedMeasurements cached = (CachedMeasurements) u
+                        .unmarshal(this.cacheFile);
+                for (CachedMeasurement entry : cached.getEntries()) {
+                    this.previousEntries.put(entry.getFileKey(), entry);
+                }
+            } catch (JAXBException e) {
+                logger.error("Invalid measurement cache, ignored: "
+                        + e.getMessage());
+                this.previousEntries.clear();
+            }
+        }
+    }
+
+    /**
+     * Persists the entries of the current run. Entries of files that were not
+     * found in this run are discarded.
+     * @throws JAXBException in case of a Marshalling error.
+     */
+    public void save() throws JAXBException {
+        if (!this.cacheFile.getParentFile().exists()) {
+            this.cacheFile.getParentFile().mkdirs();
+        }
+        CachedMeasurements cached = new CachedMeasurements();
+        cached.getEntries().addAll(this.currentEntries.values());
+        JAXBContext jcontext = JAXBContext
+                .newInstance(CachedMeasurements.class);
+        Marshaller m = jcontext.createMarshaller();
+        m.marshal(cached, this.cacheFile);
+    }
+
+    /**
+     * Calculates the hash of a source file, its compiled class file and the
+     * metric thresholds.
+     * @param sourceFile File the source file.
+     * @param classFile File the compiled class file.
+     * @return String the hash, as hexadecimal digits.
+     * @throws IOException in case of any IO error.
+     */
+    public String computeHash(File sourceFile, File classFile)
+            throws IOException {
+        MessageDigest digest = newDigest();
+        byte[] buffer = new byte[BUFFER_SIZE];
+        updateDigest(digest, sourceFile, buffer);
+        updateDigest(digest, classFile, buffer);
+        return toHex(digest);
+    }
+
+    /**
+     * Calculates the hash of a source file, the checksum of its compiled
+     * class (when it is inside an archive) and the metric thresholds.
+     * @param sourceFile File the source file.
+     * @param classChecksum long the compiled class' checksum, or -1 if it is
+     * missing.
+     * @return String the hash, as hexadecimal digits.
+     * @throws IOException in case of any IO error.
+     */
+    public String computeHash(File sourceFile, long classChecksum)
+            throws IOException {
+        MessageDigest digest = newDigest();
+        updateDigest(digest, sourceFile, new byte[BUFFER_SIZE]);
+        digest.update(Long.toString(classChecksum).getBytes("UTF-8"));
+        return toHex(digest);
+    }
+
+    private MessageDigest newDigest() throws IOException {
+        MessageDigest digest = null;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException("SHA-1 is not available.");
+        }
+        digest.update(this.thresholds.getBytes("UTF-8"));
+        return digest;
+    }
+
+    private String toHex(MessageDigest digest) {
+        StringBuilder hash = new StringBuilder();
+        for (byte b : digest.digest()) {
+            String hex = Integer.toString(b & HEX_MASK, HEX_RADIX);
+            if (hex.length() == 1) {
+                hash.append('0');
+            }
+            hash.append(hex);
+        }
+        return hash.toString();
+    }
+
+    private void updateDigest(MessageDigest digest, File file, byte[] buffer)
+            throws IOException {
+        // A missing file is also a state to remember:
+        digest.update((byte) (file.exists() ? 1 : 0));
+        if (file.exists()) {
+            InputStream in = new FileInputStream(file);
+            try {
+                int count = in.read(buffer);
+                while (count >= 0) {
+                    digest.update(buffer, 0, count);
+                    count = in.read(buffer);
+                }
+            } finally {
+                in.close();
+            }
+        }
+    }
+
+    /**
+     * Returns the cached entry of a file, if it is still valid. A valid entry
+     * is kept for the next run.
+     * @param fileKey String the file's key (path relative to source root).
+     * @param hash String the file's current hash.
+     * @return CachedMeasurement the entry, or null if the file must be
+     *         analyzed.
+     */
+    public CachedMeasurement get(String fileKey, String hash) {
+        CachedMeasurement entry = this.previousEntries.get(fileKey);
+        if (entry != null && entry.getHash().equals(hash)) {
+            this.currentEntries.put(fileKey, entry);
+        } else {
+            entry = null;
+        }
+        return entry;
+    }
+
+    /**
+     * Returns the cached entry of a file, without verifying its hash. It is
+     * used when the file is known to be unchanged (for example, by the
+     * version control system). The entry is only valid if it was measured
+     * by the same jQana version with the same metric thresholds, and it is
+     * kept for the next run.
+     * @param fileKey String the file's key (path relative to source root).
+     * @return CachedMeasurement the entry, or null if there is none.
+     */
+    public CachedMeasurement get(String fileKey) {
+        CachedMeasurement entry = this.previousEntries.get(fileKey);
+        if (entry != null && this.thresholds.equals(entry.getThresholds())) {
+            this.currentEntries.put(fileKey, entry);
+        } else {
+            entry = null;
+        }
+        return entry;
+    }
+
+    /**
+     * Stores the result of a file analysis.
+     * @param fileKey String the file's key (path relative to source root).
+     * @param hash String the file's hash.
+     * @param partialMeasurement Measurement what the file added to its
+     *            package.
+     * @param processingOk boolean whether the file was a valid class or not.
+     */
+    public void put(String fileKey, String hash,
+            Measurement partialMeasurement, boolean processingOk) {
+        CachedMeasurement entry = new CachedMeasurement();
+        entry.setFileKey(fileKey);
+        entry.setHash(hash);
+        entry.setThresholds(this.thresholds);
+        entry.setPartialMeasurement(partialMeasurement);
+        entry.setProcessingOk(processingOk);
+        this.currentEntries.put(fileKey, entry);
+    }
+
+    /**
+     * Number of entries loaded from the previous run.
+     * @return int the number of entries.
+     */
+    public int getPreviousSize() {
+        return this.previousEntries.size();
+    }
+
+    /**
+     * The persisted list of entries.
+     */
+    @XmlRootElement(
+            name = "measurementCache")
+    public static class CachedMeasurements {
+        private List<CachedMeasurement> entries = new ArrayList<CachedMeasurement>();
+
+        /**
+         * Getter for the entries.
+         * @return List<CachedMeasurement> the entries.
+         */
+        @XmlElement(
+                name = "entry")
+        public List<CachedMeasurement> getEntries() {
+            return entries;
+        }
+
+        /**
+         * Setter for the entries.
+         * @param entries List<CachedMeasurement> the entries.
+         */
+        public void setEntries(List<CachedMeasurement> entries) {
+            this.entries = entries;
+        }
+    }
+
+    /**
+     * One cached entry: the measurement of a source file.
+     */
+    public static class CachedMeasurement {
+        private String fileKey;
+        private String hash;
+        private String thresholds;
+        private boolean processingOk;
+        private Measurement partialMeasurement;
+
+        /**
+         * Getter for the file key.
+         * @return String the path relative to the source root.
+         */
+        public String getFileKey() {
+            return fileKey;
+        }
+
+        /**
+         * Setter for the file key.
+         * @param fileKey String the path relative to the source root.
+         */
+        public void setFileKey(String fileKey) {
+            this.fileKey = fileKey;
+        }
+
+        /**
+         * Getter for the hash.
+         * @return String the hash of the file, when it was analyzed.
+         */
+        public String getHash() {
+            return hash;
+        }
+
+        /**
+         * Setter for the hash.
+         * @param hash String the hash of the file.
+         */
+        public void setHash(String hash) {
+            this.hash = hash;
+        }
+
+        /**
+         * Getter for the thresholds.
+         * @return String the jQana version and the metric thresholds, when
+         *         the file was analyzed.
+         */
+        public String getThresholds() {
+            return thresholds;
+        }
+
+        /**
+         * Setter for the thresholds.
+         * @param thresholds String the jQana version and the metric
+         *            thresholds.
+         */
+        public void setThresholds(String thresholds) {
+            this.thresholds = thresholds;
+        }
+
+        /**
+         * Whether the file was a valid class file or not.
+         * @return boolean true if the file was accounted.
+         */
+        public boolean isProcessingOk() {
+            return processingOk;
+        }
+
+        /**
+         * Setter for processing status.
+         * @param processingOk boolean true if the file was accounted.
+         */
+        public void setProcessingOk(boolean processingOk) {
+            this.processingOk = processingOk;
+        }
+
+        /**
+         * Getter for the partial package measurement.
+         * @return Measurement what the file added to its package.
+         */
+        public Measurement getPartialMeasurement() {
+            return partialMeasurement;
+        }
+
+        /**
+         * Setter for the partial package measurement.
+         * @param partialMeasurement Measurement what the file added to its
+         *            package.
+         */
+        public void setPartialMeasurement(Measurement partialMeasurement) {
+            this.partialMeasurement = partialMeasurement;
+        }
+    }
+
+}
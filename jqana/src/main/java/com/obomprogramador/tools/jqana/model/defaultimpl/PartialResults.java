@@ -0,0 +1,246 @@
+/**
+ * jQana - Open Source Java(TM) code quality analyzer.
+ * 
+ * Copyright 2013 Cleuton Sampaio de Melo Jr
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * Project website: http://www.jqana.com
+ */
+package com.obomprogramador.tools.jqana.model.defaultimpl;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Marshaller;
+import javax.xml.bind.Unmarshaller;
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlRootElement;
+
+import com.obomprogramador.tools.jqana.model.Measurement;
+import com.obomprogramador.tools.jqana.model.Measurement.MEASUREMENT_TYPE;
+
+/**
+ * Partial result of a sharded analysis: the packages analyzed by one shard.
+ * 
+ * Each package is kept before its aggregates are updated, so, its metric
+ * values still hold the accumulators of the aggregation rules (the sum and
+ * the count of elements of averaged metrics, or the maximum value). Each
+ * package also has its scanning order, and the merge of all shards' partial
+ * results gives the same measurements, in the same order, as the analysis
+ * of the whole project.
+ * 
+ * The partial result is persisted as an XML file, using JAXB.
+ * 
+ * @author Cleuton Sampaio
+ * 
+ */
+@XmlRootElement(
+        name = "partialResults")
+public class PartialResults {
+
+    /**
+     * Prefix of the partial results' file names.
+     */
+    public static final String FILE_PREFIX = "jqana-shard-";
+
+    private int shardIndex;
+    private int shardCount;
+    private MEASUREMENT_TYPE detailLevel;
+    private List<PartialPackage> packages = new ArrayList<PartialPackage>();
+    private List<String> skippedFiles = new ArrayList<String>();
+
+    /**
+     * Name of the partial results' file of a shard.
+     * @param shardIndex int the shard (from 1 to shardCount).
+     * @param shardCount int the number of shards.
+     * @return String the file name, for example: "jqana-shard-1-of-4.xml".
+     */
+    public static String getFileName(int shardIndex, int shardCount) {
+        return FILE_PREFIX + shardIndex + "-of-" + shardCount + ".xml";
+    }
+
+    /**
+     * Loads a partial results' file.
+     * @param file File the file.
+     * @return PartialResults the partial results.
+     * @throws JAXBException in case of an Unmarshalling error.
+     */
+    public static PartialResults load(File file) throws JAXBException {
+        JAXBContext jcontext = JAXBContext.newInstance(PartialResults.class);
+        Unmarshaller u = jcontext.createUnmarshaller();
+        return (PartialResults) u.unmarshal(file);
+    }
+
+    /**
+     * Persists the partial results.
+     * @param file File the file.
+     * @throws JAXBException in case of a Marshalling error.
+     */
+    public void save(File file) throws JAXBException {
+        if (file.getParentFile() != null && !file.getParentFile().exists()) {
+            file.getParentFile().mkdirs();
+        }
+        JAXBContext jcontext = JAXBContext.newInstance(PartialResults.class);
+        Marshaller m = jcontext.createMarshaller();
+        m.marshal(this, file);
+    }
+
+    /**
+     * Getter for the shard index.
+     * @return int the shard, from 1 to the number of shards.
+     */
+    public int getShardIndex() {
+        return shardIndex;
+    }
+
+    /**
+     * Setter for the shard index.
+     * @param shardIndex int the shard, from 1 to the number of shards.
+     */
+    public void setShardIndex(int shardIndex) {
+        this.shardIndex = shardIndex;
+    }
+
+    /**
+     * Getter for the number of shards.
+     * @return int the number of shards.
+     */
+    public int getShardCount() {
+        return shardCount;
+    }
+
+    /**
+     * Setter for the number of shards.
+     * @param shardCount int the number of shards.
+     */
+    public void setShardCount(int shardCount) {
+        this.shardCount = shardCount;
+    }
+
+    /**
+     * Getter for the detail level of the analysis.
+     * @return MEASUREMENT_TYPE the most detailed measurement kept, or null
+     * (partial results saved before it was recorded), meaning
+     * METHOD_MEASUREMENT.
+     */
+    public MEASUREMENT_TYPE getDetailLevel() {
+        return detailLevel;
+    }
+
+    /**
+     * Setter for the detail level of the analysis.
+     * @param detailLevel MEASUREMENT_TYPE the most detailed measurement kept.
+     */
+    public void setDetailLevel(MEASUREMENT_TYPE detailLevel) {
+        this.detailLevel = detailLevel;
+    }
+
+    /**
+     * Getter for the packages.
+     * @return List<PartialPackage> the packages analyzed by this shard.
+     */
+    @XmlElement(
+            name = "package")
+    public List<PartialPackage> getPackages() {
+        return packages;
+    }
+
+    /**
+     * Setter for the packages.
+     * @param packages List<PartialPackage> the packages.
+     */
+    public void setPackages(List<PartialPackage> packages) {
+        this.packages = packages;
+    }
+
+    /**
+     * Getter for the skipped files.
+     * @return List<String> files skipped because of the time budget.
+     */
+    @XmlElement(
+            name = "skippedFile")
+    public List<String> getSkippedFiles() {
+        return skippedFiles;
+    }
+
+    /**
+     * Setter for the skipped files.
+     * @param skippedFiles List<String> the skipped files.
+     */
+    public void setSkippedFiles(List<String> skippedFiles) {
+        this.skippedFiles = skippedFiles;
+    }
+
+    /**
+     * One package of the partial results.
+     */
+    public static class PartialPackage {
+        private int ordinal;
+        private Measurement measurement;
+
+        /**
+         * Default constructor.
+         */
+        public PartialPackage() {
+            super();
+        }
+
+        /**
+         * Constructor with fields.
+         * @param ordinal int the package's scanning order.
+         * @param measurement Measurement the package, with accumulators.
+         */
+        public PartialPackage(int ordinal, Measurement measurement) {
+            super();
+            this.ordinal = ordinal;
+            this.measurement = measurement;
+        }
+
+        /**
+         * Getter for the ordinal.
+         * @return int the package's scanning order, in the whole project.
+         */
+        public int getOrdinal() {
+            return ordinal;
+        }
+
+        /**
+         * Setter for the ordinal.
+         * @param ordinal int the package's scanning order.
+         */
+        public void setOrdinal(int ordinal) {
+            this.ordinal = ordinal;
+        }
+
+        /**
+         * Getter for the package's measurement.
+         * @return Measurement the package, before its aggregates are updated.
+         */
+        public Measurement getMeasurement() {
+            return measurement;
+        }
+
+        /**
+         * Setter for the package's measurement.
+         * @param measurement Measurement the package, with accumulators.
+         */
+        public void setMeasurement(Measurement measurement) {
+            this.measurement = measurement;
+        }
+    }
+
+}
@@ -0,0 +1,224 @@
+/**
+ * jQana - Open Source Java(TM) code quality analyzer.
+ * 
+ * Copyright 2013 Cleuton Sampaio de Melo Jr
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * Project website: http://www.jqana.com
+ */
+package com.obomprogramador.tools.jqana.model.defaultimpl;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+import org.antlr.v4.runtime.ANTLRInputStream;
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.UnbufferedCharStream;
+
+/**
+ * Loads a source file straight into an ANTLR4 char stream. The file is read
+ * through a FileChannel (memory-mapped, if it is larger than the mapping
+ * threshold) and decoded only once, into the char array used by the stream.
+ * 
+ * The decoder and the read buffer are reused between files, so, a loader is
+ * not thread safe: use one instance per thread.
+ * 
+ * Very large files may be read through an unbuffered char stream instead
+ * (see "loadUnbuffered()"), which keeps only a small window of chars.
+ * 
+ * @author Cleuton Sampaio
+ * 
+ */
+public class SourceLoader {
+
+    /**
+     * Files with this size (in bytes), or larger, are memory-mapped.
+     */
+    public static final int DEFAULT_MAPPING_THRESHOLD = 256 * 1024;
+
+    private static final int INITIAL_BUFFER_SIZE = 16 * 1024;
+
+    private Charset charset;
+    private CharsetDecoder decoder;
+    private int mappingThreshold = DEFAULT_MAPPING_THRESHOLD;
+    private ByteBuffer buffer;
+
+    /**
+     * Default constructor. Source files are decoded as UTF-8.
+     */
+    public SourceLoader() {
+        this(Charset.forName("UTF-8"));
+    }
+
+    /**
+     * Constructor with fields. Malformed input is replaced, as an
+     * InputStreamReader would do.
+     * @param charset Charset the charset of the source files.
+     */
+    public SourceLoader(Charset charset) {
+        super();
+        this.charset = charset;
+        this.decoder = newDecoder();
+    }
+
+    /**
+     * Getter for mapping threshold.
+     * @return int size, in bytes, from which files are memory-mapped.
+     */
+    public int getMappingThreshold() {
+        return mappingThreshold;
+    }
+
+    /**
+     * Setter for mapping threshold.
+     * @param mappingThreshold int size, in bytes, from which files are
+     * memory-mapped.
+     */
+    public void setMappingThreshold(int mappingThreshold) {
+        this.mappingThreshold = mappingThreshold;
+    }
+
+    /**
+     * Loads a source file.
+     * @param sourceFile File the source file.
+     * @return CharStream the ANTLR4 char stream, backed by the decoded chars.
+     * @throws IOException if the file cannot be read.
+     */
+    public CharStream load(File sourceFile) throws IOException {
+        FileInputStream in = new FileInputStream(sourceFile);
+        try {
+            FileChannel channel = in.getChannel();
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Source file too large: "
+                        + sourceFile.getPath());
+            }
+            ByteBuffer bytes = null;
+            if (size >= this.mappingThreshold) {
+                bytes = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            } else {
+                bytes = getBuffer((int) size);
+                while (bytes.hasRemaining() && channel.read(bytes) >= 0) {
+                    // Reading until the buffer is full or the end of file
+                }
+                bytes.flip();
+            }
+            ANTLRInputStream stream = decode(bytes);
+            stream.name = sourceFile.getPath();
+            return stream;
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Loads a source file from a stream, for example: an archive entry. The
+     * stream is not closed.
+     * @param in InputStream the stream with the source file's bytes.
+     * @param size long the number of bytes.
+     * @param name String the source name, for error messages.
+     * @return CharStream the ANTLR4 char stream, backed by the decoded chars.
+     * @throws IOException if the stream cannot be read.
+     */
+    public CharStream load(InputStream in, long size, String name)
+            throws IOException {
+        if (size < 0 || size > Integer.MAX_VALUE) {
+            throw new IOException("Invalid source size: " + name);
+        }
+        ByteBuffer bytes = getBuffer((int) size);
+        while (bytes.hasRemaining()) {
+            int count = in.read(bytes.array(), bytes.position(),
+                    bytes.remaining());
+            if (count < 0) {
+                break;
+            }
+            bytes.position(bytes.position() + count);
+        }
+        bytes.flip();
+        ANTLRInputStream stream = decode(bytes);
+        stream.name = name;
+        return stream;
+    }
+
+    /**
+     * Loads a source file from a stream, through an unbuffered char stream:
+     * the chars are decoded while they are read by the lexer, and they are
+     * released after each token. The stream must not be closed until the
+     * char stream is read, and the caller must close it.
+     * @param in InputStream the stream with the source file's bytes.
+     * @param name String the source name, for error messages.
+     * @return CharStream the ANTLR4 unbuffered char stream.
+     */
+    public CharStream loadUnbuffered(InputStream in, String name) {
+        UnbufferedCharStream stream = new UnbufferedCharStream(
+                new InputStreamReader(in, newDecoder()));
+        stream.name = name;
+        return stream;
+    }
+
+    /*
+     * (non javadoc) Malformed input is replaced, as an InputStreamReader
+     * would do.
+     */
+    private CharsetDecoder newDecoder() {
+        return this.charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
+
+    /*
+     * (non javadoc) Decodes the bytes into a new char array, which is handed
+     * to the ANTLR4 stream without further copies.
+     */
+    protected ANTLRInputStream decode(ByteBuffer bytes) throws IOException {
+        this.decoder.reset();
+        char[] chars = new char[(int) (bytes.remaining() * this.decoder
+                .maxCharsPerByte()) + 1];
+        CharBuffer out = CharBuffer.wrap(chars);
+        CoderResult result = this.decoder.decode(bytes, out, true);
+        if (!result.isUnderflow()) {
+            result.throwException();
+        }
+        result = this.decoder.flush(out);
+        if (!result.isUnderflow()) {
+            result.throwException();
+        }
+        return new ANTLRInputStream(chars, out.position());
+    }
+
+    /*
+     * (non javadoc) Returns the reusable read buffer, cleared and limited to
+     * the file size. It only grows.
+     */
+    private ByteBuffer getBuffer(int size) {
+        if (this.buffer == null || this.buffer.capacity() < size) {
+            this.buffer = ByteBuffer.allocate(Math.max(size,
+                    INITIAL_BUFFER_SIZE));
+        }
+        this.buffer.clear();
+        this.buffer.limit(size);
+        return this.buffer;
+    }
+
+}
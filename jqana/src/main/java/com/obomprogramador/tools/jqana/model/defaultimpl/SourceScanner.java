@@ -0,0 +1,222 @@
+/**
+ * jQana - Open Source Java(TM) code quality analyzer.
+ * 
+ * Copyright 2013 Cleuton Sampaio de Melo Jr
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * Project website: http://www.jqana.com
+ */
+package com.obomprogramador.tools.jqana.model.defaultimpl;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Discovers the java source files of a source tree, in a single pass, and
+ * streams them to a handler as they are found. So, the analysis can start
+ * before the whole tree is visited, and nothing is kept for folders without
+ * java files.
+ * 
+ * Package names are computed from the folder path relative to the source
+ * root. Source files may be filtered by include and exclude glob patterns,
+ * relative to the source root ("**" matches any number of folders, "*" and "?"
+ * match inside a name). A folder matching an exclude pattern is not visited.
+ * 
+ * Folders are visited depth first, in the order they are listed, and the end
+ * of a package is notified after the end of its sub packages.
+ * 
+ * @author Cleuton Sampaio
+ * 
+ */
+public class SourceScanner {
+
+    /**
+     * Name of the package of the files found at the source root.
+     */
+    public static final String DEFAULT_PACKAGE = "<default>";
+
+    private File sourceRoot;
+    private List<Pattern> includes = new ArrayList<Pattern>();
+    private List<Pattern> excludes = new ArrayList<Pattern>();
+
+    /**
+     * Receives the source files found by the scanner.
+     */
+    public interface SourceHandler {
+
+        /**
+         * A java source file was found.
+         * @param packageName String the file's package name.
+         * @param sourceFile File the source file.
+         */
+        void sourceFile(String packageName, File sourceFile);
+
+        /**
+         * All source files of a package (and of its sub packages) were found.
+         * It is notified only for packages with at least one source file.
+         * @param packageName String the package name.
+         */
+        void endOfPackage(String packageName);
+    }
+
+    /**
+     * Constructor with fields.
+     * @param sourceRoot File the source root folder.
+     */
+    public SourceScanner(File sourceRoot) {
+        super();
+        this.sourceRoot = sourceRoot;
+    }
+
+    /**
+     * Setter for include patterns. If there is no include pattern, all java
+     * files are included.
+     * @param globs String[] glob patterns, relative to the source root.
+     */
+    public void setIncludes(String[] globs) {
+        this.includes = compile(globs);
+    }
+
+    /**
+     * Setter for exclude patterns.
+     * @param globs String[] glob patterns, relative to the source root.
+     */
+    public void setExcludes(String[] globs) {
+        this.excludes = compile(globs);
+    }
+
+    /**
+     * Visits the source tree, notifying the handler.
+     * @param handler SourceHandler the handler of source files.
+     */
+    public void scan(SourceHandler handler) {
+        scanFolder(this.sourceRoot, "", handler);
+    }
+
+    private void scanFolder(File folder, String relativePath,
+            SourceHandler handler) {
+        boolean hasSourceFiles = false;
+        String packageName = DEFAULT_PACKAGE;
+        if (relativePath.length() > 0) {
+            packageName = relativePath.replace('/', '.');
+        }
+        File[] entries = folder.listFiles();
+        if (entries == null) {
+            return;
+        }
+        for (File entry : entries) {
+            String entryPath = entry.getName();
+            if (relativePath.length() > 0) {
+                entryPath = relativePath + "/" + entry.getName();
+            }
+            // Only names with the java extension need to be checked as files:
+            if (isJavaFileName(entry.getName()) && entry.isFile()) {
+                if (isIncluded(entryPath)) {
+                    handler.sourceFile(packageName, entry);
+                    hasSourceFiles = true;
+                }
+            } else if (entry.isDirectory() && !isExcludedFolder(entryPath)) {
+                scanFolder(entry, entryPath, handler);
+            }
+        }
+        if (hasSourceFiles) {
+            handler.endOfPackage(packageName);
+        }
+    }
+
+    /**
+     * Verifies if a folder matches any exclude pattern.
+     * @param relativePath String folder path relative to the source root,
+     * with "/".
+     * @return boolean true if the folder must not be visited.
+     */
+    public boolean isExcludedFolder(String relativePath) {
+        return matches(excludes, relativePath + "/");
+    }
+
+    /**
+     * Verifies if a file name has the java extension.
+     * @param name String the file name.
+     * @return boolean true if it is a java source file name.
+     */
+    protected boolean isJavaFileName(String name) {
+        int pos = name.lastIndexOf('.');
+        return pos >= 0 && name.substring(pos + 1).equalsIgnoreCase("java");
+    }
+
+    /**
+     * Verifies if a relative path passes the include and exclude patterns.
+     * @param relativePath String path relative to the source root, with "/".
+     * @return boolean true if the file must be analyzed.
+     */
+    public boolean isIncluded(String relativePath) {
+        return (includes.isEmpty() || matches(includes, relativePath))
+                && !matches(excludes, relativePath);
+    }
+
+    private boolean matches(List<Pattern> patterns, String relativePath) {
+        boolean returnCode = false;
+        for (Pattern p : patterns) {
+            if (p.matcher(relativePath).matches()) {
+                returnCode = true;
+                break;
+            }
+        }
+        return returnCode;
+    }
+
+    private List<Pattern> compile(String[] globs) {
+        List<Pattern> patterns = new ArrayList<Pattern>();
+        if (globs != null) {
+            for (String glob : globs) {
+                patterns.add(Pattern.compile(globToRegex(glob.trim())));
+            }
+        }
+        return patterns;
+    }
+
+    /*
+     * (non javadoc) Converts a glob into a regular expression. "**\/" matches
+     * zero or more folders, "**" matches anything, "*" and "?" do not cross
+     * folder boundaries.
+     */
+    protected String globToRegex(String glob) {
+        StringBuilder regex = new StringBuilder();
+        String normalized = glob.replace('\\', '/');
+        int x = 0;
+        while (x < normalized.length()) {
+            char c = normalized.charAt(x);
+            if (normalized.startsWith("**/", x)) {
+                regex.append("(.*/)?");
+                x += "**/".length();
+                continue;
+            } else if (normalized.startsWith("**", x)) {
+                regex.append(".*");
+                x += "**".length();
+                continue;
+            } else if (c == '*') {
+                regex.append("[^/]*");
+            } else if (c == '?') {
+                regex.append("[^/]");
+            } else {
+                regex.append(Pattern.quote(String.valueOf(c)));
+            }
+            x++;
+        }
+        return regex.toString();
+    }
+
+}
@@ -0,0 +1,120 @@
+/**
+ * jQana - Open Source Java(TM) code quality analyzer.
+ * 
+ * Copyright 2013 Cleuton Sampaio de Melo Jr
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * Project website: http://www.jqana.com
+ */
+package com.obomprogramador.tools.jqana.parsers;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.tree.ErrorNode;
+import org.antlr.v4.runtime.tree.ParseTreeListener;
+import org.antlr.v4.runtime.tree.TerminalNode;
+
+/**
+ * A ParseTreeListener (ANTLR4) that forwards every event to several
+ * listeners, so a single ParseTreeWalker pass drives all of them.
+ * 
+ * If a listener throws an exception, it is disabled and its exception is kept,
+ * but the other listeners continue to receive the events. This is the same
+ * behavior we had when each listener walked its own tree.
+ * 
+ * @author Cleuton Sampaio
+ * 
+ */
+public class CompositeListener implements ParseTreeListener {
+
+    protected List<ParseTreeListener> listeners = new ArrayList<ParseTreeListener>();
+    protected List<RuntimeException> failures = new ArrayList<RuntimeException>();
+
+    /**
+     * Adds a listener to the end of the list.
+     * @param listener ParseTreeListener the listener to add.
+     */
+    public void addListener(ParseTreeListener listener) {
+        this.listeners.add(listener);
+        this.failures.add(null);
+    }
+
+    /**
+     * Returns the exception that disabled a listener.
+     * @param index int the listener's position.
+     * @return RuntimeException the exception, or null if it has not failed.
+     */
+    public RuntimeException getFailure(int index) {
+        return this.failures.get(index);
+    }
+
+    @Override
+    public void visitTerminal(TerminalNode node) {
+        for (int x = 0; x < listeners.size(); x++) {
+            if (failures.get(x) == null) {
+                try {
+                    listeners.get(x).visitTerminal(node);
+                } catch (RuntimeException e) {
+                    failures.set(x, e);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void visitErrorNode(ErrorNode node) {
+        for (int x = 0; x < listeners.size(); x++) {
+            if (failures.get(x) == null) {
+                try {
+                    listeners.get(x).visitErrorNode(node);
+                } catch (RuntimeException e) {
+                    failures.set(x, e);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void enterEveryRule(ParserRuleContext ctx) {
+        for (int x = 0; x < listeners.size(); x++) {
+            if (failures.get(x) == null) {
+                try {
+                    ParseTreeListener listener = listeners.get(x);
+                    listener.enterEveryRule(ctx);
+                    ctx.enterRule(listener);
+                } catch (RuntimeException e) {
+                    failures.set(x, e);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void exitEveryRule(ParserRuleContext ctx) {
+        for (int x = 0; x < listeners.size(); x++) {
+            if (failures.get(x) == null) {
+                try {
+                    ParseTreeListener listener = listeners.get(x);
+                    ctx.exitRule(listener);
+                    listener.exitEveryRule(ctx);
+                } catch (RuntimeException e) {
+                    failures.set(x, e);
+                }
+            }
+        }
+    }
+
+}
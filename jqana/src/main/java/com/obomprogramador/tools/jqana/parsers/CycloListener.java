@@ -22,16 +22,18 @@ package com.obomprogramador.tools.jqana.parsers;
 import java.util.ArrayDeque;
 import java.util.Arrays;
 import java.util.Deque;
-import java.util.List;
 
+import org.antlr.v4.runtime.Token;
 import org.antlr.v4.runtime.misc.NotNull;
 import org.antlr.v4.runtime.tree.ParseTree;
+import org.antlr.v4.runtime.tree.TerminalNode;
 import org.antlr.v4.runtime.tree.TerminalNodeImpl;
 import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.obomprogramador.tools.jqana.antlrparser.JavaBaseListener;
+import com.obomprogramador.tools.jqana.antlrparser.JavaLexer;
 import com.obomprogramador.tools.jqana.antlrparser.JavaParser;
 import com.obomprogramador.tools.jqana.antlrparser.JavaParser.BlockContext;
 import com.obomprogramador.tools.jqana.antlrparser.JavaParser.CatchClauseContext;
@@ -63,11 +65,13 @@ import com.obomprogramador.tools.jqana.model.defaultimpl.MetricValue;
  */
 public class CycloListener extends JavaBaseListener {
 
-    protected String[] predicateNodes = {"do", "for", "throw", "while"};
-    protected List<String> listaNodes = Arrays.asList(predicateNodes);
+    protected static final int[] PREDICATE_NODES = {JavaLexer.DO,
+            JavaLexer.FOR, JavaLexer.THROW, JavaLexer.WHILE};
+    private static final boolean[] IS_PREDICATE_NODE =
+            new boolean[JavaLexer.tokenNames.length];
+    private static final int INITIAL_DEPTH = 8;
     private Measurement measurement;
     private org.antlr.v4.runtime.Parser parser;
-    protected String previousExpression;
     protected Logger logger;
     protected int returnCount;
     protected Deque<Measurement> measurementsStack;
@@ -75,8 +79,24 @@ public class CycloListener extends JavaBaseListener {
     protected String mainPackageName;
     protected MetricValue currentMetricValue;
     protected boolean alreadyGotFirstClass;
-    protected String lastStatement;
+    protected int lastStatement = Token.INVALID_TYPE;
     protected int constructorNumber = 1;
+    private int coveredExpressions;
+    private int ternaries;
+    private int ors;
+    private int ands;
+    protected boolean methodDetail = true;
+    private double[] methodValues = new double[INITIAL_DEPTH];
+    private int methodDepth;
+    private int methodBase;
+    private int[] classBases = new int[INITIAL_DEPTH];
+    private int classDepth;
+
+    static {
+        for (int type : PREDICATE_NODES) {
+            IS_PREDICATE_NODE[type] = true;
+        }
+    }
 
     /**
      * Default constructor.
@@ -103,50 +123,45 @@ public class CycloListener extends JavaBaseListener {
 
     }
 
+    /**
+     * Getter for method detail.
+     * @return boolean true if each method gets its own measurement.
+     */
+    public boolean isMethodDetail() {
+        return methodDetail;
+    }
+
+    /**
+     * Setter for method detail. Without it, no method measurements are
+     * created: the values of the methods are kept in primitive counters, and
+     * only added to (and verified against) their classes' values.
+     * @param methodDetail boolean true (default) if each method gets its own
+     * measurement.
+     */
+    public void setMethodDetail(boolean methodDetail) {
+        this.methodDetail = methodDetail;
+    }
+
     @Override
     public void enterConstructorDeclaration(
             @NotNull ConstructorDeclarationContext ctx) {
-        this.previousExpression = null;
-        String methodName = "<Constructor " + this.constructorNumber++ + ">";
-        this.newMeasurement(methodName, MEASUREMENT_TYPE.METHOD_MEASUREMENT);
-        this.currentMetricValue.setValue(1);
-        this.previousExpression = null;
-        logger.debug("***** (CC) ENTERING CONSTUCTOR: " + methodName);
+        enterConstructor();
     }
 
     @Override
     public void exitConstructorDeclaration(
             @NotNull ConstructorDeclarationContext ctx) {
-        logger.debug("***** (CC) EXITING CONSTRUCTOR. CC = "
-                + this.currentMetricValue.getValue());
-        this.verifyMethodViolation(this.measurement);
-        this.consolidateWithOwner();
-        this.lastStatement = null;
+        exitMethod();
     }
 
     @Override
     public void exitClassDeclaration(@NotNull ClassDeclarationContext ctx) {
-        this.verifyClassViolation(this.measurement);
-        logger.debug("*** (CC) EXITING CLASS. CC = "
-                + this.currentMetricValue.getValue());
-        this.consolidateWithOwner();
-        this.previousExpression = null;
-
+        exitClass();
     }
 
     @Override
     public void enterClassDeclaration(@NotNull ClassDeclarationContext ctx) {
-        String className = GetClassNameFromContext.getClassName(ctx);
-
-        if (!alreadyGotFirstClass) {
-            // It is the main class name
-            this.measurement.setName(className);
-            alreadyGotFirstClass = true;
-        } else {
-            this.newMeasurement(className, MEASUREMENT_TYPE.CLASS_MEASUREMENT);
-        }
-        this.previousExpression = null;
-        logger.debug("*** (CC) ENTERING CLASS: " + className);
+        enterClass(GetClassNameFromContext.getClassName(ctx));
     }
 
     @Override
@@ -159,57 +174,293 @@ public class CycloListener extends JavaBaseListener {
                 break;
             }
         }
-        this.newMeasurement(methodName, MEASUREMENT_TYPE.METHOD_MEASUREMENT);
-        this.currentMetricValue.setValue(1);
-        this.previousExpression = null;
-        logger.debug("***** (CC) ENTERING METHOD: " + methodName);
+        enterMethod(methodName);
     }
 
     @Override
     public void exitMethodDeclaration(@NotNull MethodDeclarationContext ctx) {
-
-        logger.debug("***** (CC) EXITING METHOD. CC = "
-                + this.currentMetricValue.getValue());
-        this.verifyMethodViolation(this.measurement);
-        this.consolidateWithOwner();
-        this.lastStatement = null;
+        exitMethod();
     }
 
+    /**
+     * Only the outermost expressions are checked: their sub expressions are
+     * covered by them, and skipped without being read. A method of an
+     * anonymous class uncovers the expressions, so, the sub expressions that
+     * follow it are checked again, as they always were.
+     * @param ctx Context the context in use.
+     */
     @Override
     public void enterExpression(@NotNull ExpressionContext ctx) {
-        if (previousExpression != null) {
-            if (!previousExpression.contains(ctx.getText())) {
-                checkExpression(ctx);
-                previousExpression = ctx.getText();
-            }
+        if (coverExpression()) {
+            expressionEntered(ctx);
+        }
+    }
+
+    @Override
+    public void exitExpression(@NotNull ExpressionContext ctx) {
+        uncoverExpression();
+    }
+
+    /*
+     * (non javadoc) The events below keep the measurements, and they are
+     * independent of the parse tree, so, other engines can drive them (see
+     * CycloTokenScanner).
+     */
+
+    /**
+     * An expression starts, and it covers the expressions inside it.
+     * @return boolean true if it is an outermost expression, which must be
+     * checked, or false if another expression covers it.
+     */
+    protected boolean coverExpression() {
+        if (this.coveredExpressions > 0) {
+            this.coveredExpressions++;
+            return false;
+        }
+        this.coveredExpressions = 1;
+        return true;
+    }
+
+    /**
+     * An expression ends.
+     */
+    protected void uncoverExpression() {
+        if (this.coveredExpressions > 0) {
+            this.coveredExpressions--;
+        }
+    }
+
+    /**
+     * Whether an expression covers the current position.
+     * @return boolean true if the expressions found here are not checked.
+     */
+    protected boolean isExpressionCovered() {
+        return this.coveredExpressions > 0;
+    }
+
+    /**
+     * A constructor starts: it gets a new measurement.
+     */
+    protected void enterConstructor() {
+        if (this.methodDetail) {
+            String methodName = "<Constructor " + this.constructorNumber++
+                    + ">";
+            this.newMeasurement(methodName,
+                    MEASUREMENT_TYPE.METHOD_MEASUREMENT);
+            this.currentMetricValue.setValue(1);
+            logger.debug("***** (CC) ENTERING CONSTUCTOR: " + methodName);
         } else {
-            checkExpression(ctx);
-            previousExpression = ctx.getText();
+            this.pushMethod();
+            logger.debug("***** (CC) ENTERING CONSTUCTOR.");
         }
+        newExpressionScope();
     }
 
-    private void checkExpression(ExpressionContext ctx) {
-        if (ctx.getText().charAt(0) != '\"' && ctx.getText().charAt(0) != '\'') {
+    /**
+     * A method (or constructor) ends: its value is added to its owner's.
+     */
+    protected void exitMethod() {
+        if (this.methodDetail) {
+            logger.debug("***** (CC) EXITING METHOD. CC = "
+                    + this.currentMetricValue.getValue());
+            this.verifyMethodViolation(this.measurement);
+            this.consolidateWithOwner();
+        } else {
+            this.popMethod();
+        }
+        this.lastStatement = Token.INVALID_TYPE;
+    }
 
-            int count = countSymbols(ctx.getText(), ":");
-            if (count > 0) {
-                incMetricValue(count);
-                logger.debug("     - Ternaries found: " + count);
+    /**
+     * A class ends: it is violated if any of its methods is.
+     */
+    protected void exitClass() {
+        this.verifyClassViolation(this.measurement);
+        logger.debug("*** (CC) EXITING CLASS. CC = "
+                + this.currentMetricValue.getValue());
+        this.methodBase = this.classBases[--this.classDepth];
+        if (this.methodDepth > this.methodBase) {
+            // A local class, without method detail: it goes to its method.
+            this.methodValues[this.methodDepth - 1] += this.currentMetricValue
+                    .getValue();
+            this.measurement = this.measurementsStack.pop();
+            this.currentMetricValue = getMetricValue(this.measurement);
+        } else {
+            this.consolidateWithOwner();
+        }
+        newExpressionScope();
+
+    }
+
+    /**
+     * A class starts. The first one names the main measurement, and the
+     * others get new measurements.
+     * @param className String the class name.
+     */
+    protected void enterClass(String className) {
+        if (!alreadyGotFirstClass) {
+            // It is the main class name
+            this.measurement.setName(className);
+            alreadyGotFirstClass = true;
+        } else if (this.methodDepth > this.methodBase) {
+            // A local class, without method detail: there is no method
+            // measurement to own it.
+            this.measurementsStack.push(this.measurement);
+            this.measurement = newClassMeasurement(className);
+        } else {
+            this.newMeasurement(className, MEASUREMENT_TYPE.CLASS_MEASUREMENT);
+        }
+        if (this.classDepth == this.classBases.length) {
+            this.classBases = Arrays.copyOf(this.classBases,
+                    this.classDepth * 2);
+        }
+        this.classBases[this.classDepth++] = this.methodBase;
+        this.methodBase = this.methodDepth;
+        newExpressionScope();
+        logger.debug("*** (CC) ENTERING CLASS: " + className);
+    }
+
+    /**
+     * A method starts: it gets a new measurement.
+     * @param methodName String the method name.
+     */
+    protected void enterMethod(String methodName) {
+        if (this.methodDetail) {
+            this.newMeasurement(methodName,
+                    MEASUREMENT_TYPE.METHOD_MEASUREMENT);
+            this.currentMetricValue.setValue(1);
+        } else {
+            this.pushMethod();
+        }
+        newExpressionScope();
+        logger.debug("***** (CC) ENTERING METHOD: " + methodName);
+    }
+
+    /*
+     * (non javadoc) Without method detail, a method is only a counter, on
+     * top of the counters of the methods that enclose it (anonymous
+     * classes).
+     */
+    private void pushMethod() {
+        if (this.methodDepth == this.methodValues.length) {
+            this.methodValues = Arrays.copyOf(this.methodValues,
+                    this.methodDepth * 2);
+        }
+        this.methodValues[this.methodDepth++] = 1;
+    }
+
+    /*
+     * (non javadoc) The value of a method goes to its enclosing method, or to
+     * its class, which counts it and is violated if the method is, as it
+     * would be with method measurements.
+     */
+    private void popMethod() {
+        double value = this.methodValues[--this.methodDepth];
+        if (logger.isDebugEnabled()) {
+            logger.debug("***** (CC) EXITING METHOD. CC = " + value);
+        }
+        if (this.methodDepth > this.methodBase) {
+            this.methodValues[this.methodDepth - 1] += value;
+        } else {
+            this.currentMetricValue.setValue(this.currentMetricValue
+                    .getValue() + value);
+            this.currentMetricValue.setQtdElements(this.currentMetricValue
+                    .getQtdElements() + 1);
+            if (this.metric.getVerificationAlgorithm().verify(value)) {
+                this.currentMetricValue.setViolated(true);
             }
+        }
+    }
+
+    /**
+     * An outermost expression starts. Its sub expressions are accounted by
+     * it, so, they are not reported.
+     * @param text String the expression's text, without spaces.
+     */
+    protected void expressionEntered(String text) {
+        if (text.charAt(0) != '\"' && text.charAt(0) != '\'') {
+            addDecisions(countSymbols(text, ":"), countSymbols(text, "||"),
+                    countSymbols(text, "&&"));
+        }
+    }
 
-            count = countSymbols(ctx.getText(), "||");
-            if (count > 0) {
-                incMetricValue(count);
-                logger.debug("     - OR found: " + count);
+    /**
+     * An outermost expression of the parse tree starts. Its decisions are
+     * counted from the types of its tokens, in a single pass, without
+     * reading its text.
+     * @param ctx ExpressionContext the expression, not covered by another
+     * one.
+     */
+    protected void expressionEntered(ExpressionContext ctx) {
+        int type = ctx.start.getType();
+        if (type != JavaLexer.StringLiteral
+                && type != JavaLexer.CharacterLiteral) {
+            this.ternaries = 0;
+            this.ors = 0;
+            this.ands = 0;
+            countDecisions(ctx);
+            addDecisions(this.ternaries, this.ors, this.ands);
+        }
+    }
+
+    /*
+     * (non javadoc) Counts the ":", "||" and "&&" of an expression, as its
+     * text was checked before: inside its literals too.
+     */
+    private void countDecisions(ParseTree tree) {
+        if (tree instanceof TerminalNode) {
+            Token symbol = ((TerminalNode) tree).getSymbol();
+            switch (symbol.getType()) {
+            case JavaLexer.COLON:
+                this.ternaries++;
+                break;
+            case JavaLexer.OR:
+                this.ors++;
+                break;
+            case JavaLexer.AND:
+                this.ands++;
+                break;
+            case JavaLexer.StringLiteral:
+            case JavaLexer.CharacterLiteral:
+                String text = symbol.getText();
+                this.ternaries += countSymbols(text, ":");
+                this.ors += countSymbols(text, "||");
+                this.ands += countSymbols(text, "&&");
+                break;
+            default:
+                break;
             }
-            count = countSymbols(ctx.getText(), "&&");
-            if (count > 0) {
-                incMetricValue(count);
-                logger.debug("     - AND found: " + count);
+        } else {
+            for (int x = 0; x < tree.getChildCount(); x++) {
+                countDecisions(tree.getChild(x));
             }
         }
     }
 
+    private void addDecisions(int ternaryCount, int orCount,
+            int andCount) {
+        if (ternaryCount > 0) {
+            incMetricValue(ternaryCount);
+            logger.debug("     - Ternaries found: {}", ternaryCount);
+        }
+        if (orCount > 0) {
+            incMetricValue(orCount);
+            logger.debug("     - OR found: {}", orCount);
+        }
+        if (andCount > 0) {
+            incMetricValue(andCount);
+            logger.debug("     - AND found: {}", andCount);
+        }
+    }
+
+    /**
+     * A new scope (a class or a method): its expressions are not covered by
+     * the expressions that enclose it.
+     */
+    protected void newExpressionScope() {
+        this.coveredExpressions = 0;
+    }
+
     protected MetricValue newMetricValue() {
         MetricValue mv = new MetricValue();
         mv.setName(this.metric.getMetricName());
@@ -252,26 +503,44 @@ public class CycloListener extends JavaBaseListener {
         this.measurement.getMetricValues().add(newMetricValue());
     }
 
+    private Measurement newClassMeasurement(String name) {
+        Measurement classMeasurement = new Measurement();
+        classMeasurement.setName(name);
+        classMeasurement.setType(MEASUREMENT_TYPE.CLASS_MEASUREMENT);
+        classMeasurement.getMetricValues().add(newMetricValue());
+        return classMeasurement;
+    }
+
     protected void incMetricValue(int inc) {
-        this.currentMetricValue.setValue(this.currentMetricValue.getValue()
-                + inc);
+        if (this.methodDepth > this.methodBase) {
+            this.methodValues[this.methodDepth - 1] += inc;
+        } else {
+            this.currentMetricValue.setValue(this.currentMetricValue
+                    .getValue() + inc);
+        }
     }
 
     @Override
     public void enterStatement(@NotNull StatementContext ctx) {
-        String tipo = ctx.getParent().start.getText();
-        if (this.lastStatement != null) {
-            if (this.lastStatement.equals("return")) {
-                this.incMetricValue(1);
-                logger.debug("     - Return not last statement.");
-            }
+        statementEntered(ctx.getParent().start.getType());
+    }
+
+    /**
+     * A statement starts. A "return" that is not the last statement of a
+     * method counts.
+     * @param tipo int the type of the first token of the statement's parent.
+     */
+    protected void statementEntered(int tipo) {
+        if (this.lastStatement == JavaLexer.RETURN) {
+            this.incMetricValue(1);
+            logger.debug("     - Return not last statement.");
         }
         this.lastStatement = tipo;
     }
 
     @Override
     public void enterSwitchLabel(@NotNull SwitchLabelContext ctx) {
-        if (!ctx.children.get(0).toString().equals("default")) {
+        if (ctx.start.getType() != JavaLexer.DEFAULT) {
             incMetricValue(1);
             logger.debug("     - swith label.");
         } else {
@@ -286,24 +555,36 @@ public class CycloListener extends JavaBaseListener {
 
     @Override
     public void enterBlock(@NotNull BlockContext ctx) {
-        String tipo = ctx.getParent().start.getText();
+        int tipo = ctx.getParent().start.getType();
 
-        if (tipo.equals("{")) {
-            tipo = ctx.getParent().getParent().start.getText();
+        if (tipo == JavaLexer.LBRACE) {
+            tipo = ctx.getParent().getParent().start.getType();
         }
 
-        if (listaNodes.contains(tipo)) {
+        blockEntered(tipo);
+    }
+
+    /**
+     * A block starts. The body of a loop counts.
+     * @param tipo int the type of the first token of the statement that owns
+     * the block, or Token.INVALID_TYPE.
+     */
+    protected void blockEntered(int tipo) {
+        if (tipo > 0 && tipo < IS_PREDICATE_NODE.length
+                && IS_PREDICATE_NODE[tipo]) {
             incMetricValue(1);
-            logger.debug("     - Predicate node: " + tipo + " line: "
-                    + ctx.getText());
+            logger.debug("     - Predicate node: {}",
+                    JavaLexer.tokenNames[tipo]);
         }
     }
 
     @Override
     public void enterParExpression(@NotNull ParExpressionContext ctx) {
-        if (ctx.getParent().start.getText().equals("if")) {
+        if (ctx.getParent().start.getType() == JavaLexer.IF) {
             incMetricValue(1);
-            logger.debug("     - Predicate node IF: " + ctx.getText());
+            if (logger.isDebugEnabled()) {
+                logger.debug("     - Predicate node IF: " + ctx.getText());
+            }
         }
     }
 
@@ -0,0 +1,949 @@
+/**
+ * jQana - Open Source Java(TM) code quality analyzer.
+ * 
+ * Copyright 2013 Cleuton Sampaio de Melo Jr
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * Project website: http://www.jqana.com
+ */
+package com.obomprogramador.tools.jqana.parsers;
+
+import java.util.List;
+
+import org.antlr.v4.runtime.Token;
+
+import com.obomprogramador.tools.jqana.antlrparser.JavaLexer;
+import com.obomprogramador.tools.jqana.model.Measurement;
+import com.obomprogramador.tools.jqana.model.Metric;
+
+/**
+ * Calculates Cyclomatic Complexity straight from the token stream, without a
+ * parse tree. It drives the same events of CycloListener, so, the
+ * measurements (one per class and method) have the same structure and
+ * values of the listener's.
+ * 
+ * It is a second, hand-written, recursive-descent parser of Java: one method
+ * per grammar rule that the listener depends on (type declarations, class
+ * bodies, members, blocks, statements, for controls, try and switch
+ * statements, types and type arguments), following the rules of JavaParser
+ * (generated from Java.g4). It must be kept in sync with that grammar: a
+ * change in the grammar, or in the events counted by CycloListener, must be
+ * made here too. DefaultProjectProcessor's CC validation
+ * ("setCcValidation()") compares both engines, file by file.
+ * 
+ * Expressions are not parsed: their end is found by balancing brackets and
+ * ternary operators, and their text is checked, as the listener does. So:
+ * <ul>
+ * <li>It only knows the syntax of Java.g4 (Java 7): lambdas, method
+ * references, and later constructs are not handled;</li>
+ * <li>The expressions that follow an anonymous class' body, inside the same
+ * enclosing expression, are only approximated;</li>
+ * <li>There is no error recovery: on invalid sources, tokens are skipped
+ * until a known construct is found, and the values are not reliable (the
+ * parser reports the syntax errors instead).</li>
+ * </ul>
+ * 
+ * A scanner is used for a single source file, and it is not thread safe.
+ * 
+ * @author Cleuton Sampaio
+ * 
+ */
+public class CycloTokenScanner extends CycloListener {
+
+    private List<? extends Token> tokens;
+    private int pos;
+
+    /**
+     * Constructor with fields.
+     * @param metric Metric the Cyclomatic Complexity metric.
+     * @param measurement Measurement the class' measurement to fill.
+     */
+    public CycloTokenScanner(Metric metric, Measurement measurement) {
+        super(metric, measurement, null);
+    }
+
+    /**
+     * Scans the tokens of a compilation unit.
+     * @param tokens List<? extends Token> the tokens, without the hidden
+     * ones (white space and comments).
+     */
+    public void scan(List<? extends Token> tokens) {
+        this.tokens = tokens;
+        this.pos = 0;
+        while (la(0) != Token.EOF) {
+            int start = this.pos;
+            if (la(0) == JavaLexer.PACKAGE || la(0) == JavaLexer.IMPORT) {
+                skipPast(JavaLexer.SEMI);
+            } else {
+                typeDeclaration();
+            }
+            ensureProgress(start);
+        }
+    }
+
+    /*
+     * (non javadoc) Type declarations: classes, enums, interfaces and
+     * annotation types, with their modifiers.
+     */
+    private void typeDeclaration() {
+        modifiers();
+        switch (la(0)) {
+        case JavaLexer.CLASS:
+            classDeclaration();
+            break;
+        case JavaLexer.ENUM:
+            enumDeclaration();
+            break;
+        case JavaLexer.INTERFACE:
+            interfaceDeclaration();
+            break;
+        case JavaLexer.AT:
+            annotationTypeDeclaration();
+            break;
+        case JavaLexer.PACKAGE:
+            skipPast(JavaLexer.SEMI);
+            break;
+        default:
+            this.pos++;
+        }
+    }
+
+    private boolean isTypeDeclaration() {
+        int t = la(0);
+        return t == JavaLexer.CLASS || t == JavaLexer.ENUM
+                || t == JavaLexer.INTERFACE
+                || (t == JavaLexer.AT && la(1) == JavaLexer.INTERFACE);
+    }
+
+    private void modifiers() {
+        while (true) {
+            int t = la(0);
+            if (t == JavaLexer.AT && la(1) != JavaLexer.INTERFACE) {
+                annotation();
+            } else if (isModifier(t)) {
+                this.pos++;
+            } else {
+                break;
+            }
+        }
+    }
+
+    private boolean isModifier(int t) {
+        switch (t) {
+        case JavaLexer.PUBLIC:
+        case JavaLexer.PROTECTED:
+        case JavaLexer.PRIVATE:
+        case JavaLexer.STATIC:
+        case JavaLexer.ABSTRACT:
+        case JavaLexer.FINAL:
+        case JavaLexer.NATIVE:
+        case JavaLexer.SYNCHRONIZED:
+        case JavaLexer.TRANSIENT:
+        case JavaLexer.VOLATILE:
+        case JavaLexer.STRICTFP:
+            return true;
+        default:
+            return false;
+        }
+    }
+
+    /*
+     * (non javadoc) Annotations may have expressions (their element values).
+     */
+    private void annotation() {
+        this.pos++;
+        skipQualifiedName();
+        if (la(0) != JavaLexer.LPAREN) {
+            return;
+        }
+        this.pos++;
+        if (la(0) == JavaLexer.Identifier && la(1) == JavaLexer.ASSIGN) {
+            while (la(0) == JavaLexer.Identifier && la(1) == JavaLexer.ASSIGN) {
+                this.pos += 2;
+                elementValue();
+                if (la(0) != JavaLexer.COMMA) {
+                    break;
+                }
+                this.pos++;
+            }
+        } else if (la(0) != JavaLexer.RPAREN) {
+            elementValue();
+        }
+        skipPast(JavaLexer.RPAREN);
+    }
+
+    private void elementValue() {
+        if (la(0) == JavaLexer.AT) {
+            annotation();
+        } else if (la(0) == JavaLexer.LBRACE) {
+            this.pos++;
+            while (la(0) != JavaLexer.RBRACE && la(0) != Token.EOF) {
+                int start = this.pos;
+                elementValue();
+                if (la(0) == JavaLexer.COMMA) {
+                    this.pos++;
+                }
+                ensureProgress(start);
+            }
+            this.pos++;
+        } else {
+            expression();
+        }
+    }
+
+    private void classDeclaration() {
+        this.pos++;
+        enterClass(text(this.pos));
+        skipTo(JavaLexer.LBRACE);
+        classBody();
+        exitClass();
+    }
+
+    private void enumDeclaration() {
+        skipTo(JavaLexer.LBRACE);
+        this.pos++;
+        while (la(0) != JavaLexer.SEMI && la(0) != JavaLexer.RBRACE
+                && la(0) != Token.EOF) {
+            int start = this.pos;
+            modifiers();
+            if (la(0) == JavaLexer.Identifier) {
+                this.pos++;
+            }
+            if (la(0) == JavaLexer.LPAREN) {
+                arguments();
+            }
+            if (la(0) == JavaLexer.LBRACE) {
+                classBody();
+            }
+            if (la(0) == JavaLexer.COMMA) {
+                this.pos++;
+            }
+            ensureProgress(start);
+        }
+        if (la(0) == JavaLexer.SEMI) {
+            this.pos++;
+        }
+        classBodyDeclarations();
+    }
+
+    private void interfaceDeclaration() {
+        skipTo(JavaLexer.LBRACE);
+        this.pos++;
+        while (la(0) != JavaLexer.RBRACE && la(0) != Token.EOF) {
+            int start = this.pos;
+            modifiers();
+            if (la(0) == JavaLexer.SEMI) {
+                this.pos++;
+            } else if (isTypeDeclaration()) {
+                typeDeclaration();
+            } else {
+                interfaceMember();
+            }
+            ensureProgress(start);
+        }
+        this.pos++;
+    }
+
+    /*
+     * (non javadoc) Interface methods are not counted: only the initializers
+     * of constants, and the annotations, have expressions.
+     */
+    private void interfaceMember() {
+        if (la(0) == JavaLexer.LT) {
+            this.pos = skipTypeArguments(this.pos);
+        }
+        this.pos = Math.max(this.pos + 1, typeEnd(this.pos));
+        if (la(1) == JavaLexer.LPAREN) {
+            this.pos++;
+            formalParameters();
+            skipPast(JavaLexer.SEMI);
+        } else {
+            variableDeclarators();
+            skipPast(JavaLexer.SEMI);
+        }
+    }
+
+    private void annotationTypeDeclaration() {
+        skipTo(JavaLexer.LBRACE);
+        this.pos++;
+        while (la(0) != JavaLexer.RBRACE && la(0) != Token.EOF) {
+            int start = this.pos;
+            modifiers();
+            if (la(0) == JavaLexer.SEMI) {
+                this.pos++;
+            } else if (isTypeDeclaration()) {
+                typeDeclaration();
+            } else {
+                this.pos = Math.max(this.pos + 1, typeEnd(this.pos));
+                if (la(1) == JavaLexer.LPAREN) {
+                    this.pos++;
+                    skipPast(JavaLexer.RPAREN);
+                    if (la(0) == JavaLexer.DEFAULT) {
+                        this.pos++;
+                        elementValue();
+                    }
+                } else {
+                    variableDeclarators();
+                }
+                skipPast(JavaLexer.SEMI);
+            }
+            ensureProgress(start);
+        }
+        this.pos++;
+    }
+
+    /*
+     * (non javadoc) Class bodies, including the bodies of enum constants and
+     * anonymous classes, which are not classes for the listener.
+     */
+    private void classBody() {
+        this.pos++;
+        classBodyDeclarations();
+    }
+
+    private void classBodyDeclarations() {
+        while (la(0) != JavaLexer.RBRACE && la(0) != Token.EOF) {
+            int start = this.pos;
+            classBodyDeclaration();
+            ensureProgress(start);
+        }
+        this.pos++;
+    }
+
+    private void classBodyDeclaration() {
+        if (la(0) == JavaLexer.SEMI) {
+            this.pos++;
+            return;
+        }
+        if (la(0) == JavaLexer.STATIC && la(1) == JavaLexer.LBRACE) {
+            this.pos++;
+        }
+        if (la(0) == JavaLexer.LBRACE) {
+            block(Token.INVALID_TYPE);
+            return;
+        }
+        modifiers();
+        if (isTypeDeclaration()) {
+            typeDeclaration();
+            return;
+        }
+        if (la(0) == JavaLexer.LT) {
+            this.pos = skipTypeArguments(this.pos);
+        }
+        if (la(0) == JavaLexer.Identifier && la(1) == JavaLexer.LPAREN) {
+            constructorDeclaration();
+        } else if (la(0) == JavaLexer.VOID) {
+            this.pos++;
+            methodDeclaration();
+        } else {
+            int end = typeEnd(this.pos);
+            if (end < 0) {
+                skipPast(JavaLexer.SEMI);
+                return;
+            }
+            this.pos = end;
+            if (la(1) == JavaLexer.LPAREN) {
+                methodDeclaration();
+            } else {
+                variableDeclarators();
+                skipPast(JavaLexer.SEMI);
+            }
+        }
+    }
+
+    private void methodDeclaration() {
+        enterMethod(text(this.pos));
+        this.pos++;
+        methodRest();
+        exitMethod();
+    }
+
+    private void constructorDeclaration() {
+        enterConstructor();
+        this.pos++;
+        methodRest();
+        exitMethod();
+    }
+
+    private void methodRest() {
+        formalParameters();
+        while (la(0) != JavaLexer.LBRACE && la(0) != JavaLexer.SEMI
+                && la(0) != Token.EOF) {
+            this.pos++;
+        }
+        if (la(0) == JavaLexer.LBRACE) {
+            block(Token.INVALID_TYPE);
+        } else {
+            this.pos++;
+        }
+    }
+
+    /*
+     * (non javadoc) Formal parameters (and catch parameters) only have
+     * expressions inside their annotations.
+     */
+    private void formalParameters() {
+        this.pos++;
+        int depth = 0;
+        while (la(0) != Token.EOF) {
+            int t = la(0);
+            if (t == JavaLexer.AT) {
+                annotation();
+                continue;
+            }
+            this.pos++;
+            if (t == JavaLexer.LPAREN) {
+                depth++;
+            } else if (t == JavaLexer.RPAREN) {
+                if (depth == 0) {
+                    break;
+                }
+                depth--;
+            }
+        }
+    }
+
+    private void variableDeclarators() {
+        while (la(0) == JavaLexer.Identifier) {
+            this.pos++;
+            skipDimensions();
+            if (la(0) == JavaLexer.ASSIGN) {
+                this.pos++;
+                variableInitializer();
+            }
+            if (la(0) != JavaLexer.COMMA) {
+                break;
+            }
+            this.pos++;
+        }
+    }
+
+    private void variableInitializer() {
+        if (la(0) == JavaLexer.LBRACE) {
+            this.pos++;
+            while (la(0) != JavaLexer.RBRACE && la(0) != Token.EOF) {
+                int start = this.pos;
+                variableInitializer();
+                if (la(0) == JavaLexer.COMMA) {
+                    this.pos++;
+                }
+                ensureProgress(start);
+            }
+            this.pos++;
+        } else {
+            expression();
+        }
+    }
+
+    private void arguments() {
+        this.pos++;
+        while (la(0) != JavaLexer.RPAREN && la(0) != Token.EOF) {
+            int start = this.pos;
+            expression();
+            if (la(0) == JavaLexer.COMMA) {
+                this.pos++;
+            }
+            ensureProgress(start);
+        }
+        this.pos++;
+    }
+
+    /*
+     * (non javadoc) A block. The owner is the type of the first token of the
+     * statement whose body is this block (the listener counts loop bodies),
+     * or Token.INVALID_TYPE.
+     */
+    private void block(int owner) {
+        blockEntered(owner);
+        this.pos++;
+        while (la(0) != JavaLexer.RBRACE && la(0) != Token.EOF) {
+            int start = this.pos;
+            blockStatement();
+            ensureProgress(start);
+        }
+        this.pos++;
+    }
+
+    private void blockStatement() {
+        int t = la(0);
+        if (t == JavaLexer.FINAL || t == JavaLexer.ABSTRACT
+                || (t == JavaLexer.AT && la(1) != JavaLexer.INTERFACE)) {
+            modifiers();
+            if (isTypeDeclaration()) {
+                typeDeclaration();
+            } else {
+                localVariableDeclaration();
+                skipPast(JavaLexer.SEMI);
+            }
+        } else if (isTypeDeclaration()) {
+            typeDeclaration();
+        } else if (isLocalVariableDeclaration()) {
+            localVariableDeclaration();
+            skipPast(JavaLexer.SEMI);
+        } else {
+            statement(la(0));
+        }
+    }
+
+    private boolean isLocalVariableDeclaration() {
+        int end = typeEnd(this.pos);
+        return end > 0 && type(end) == JavaLexer.Identifier;
+    }
+
+    private void localVariableDeclaration() {
+        int end = typeEnd(this.pos);
+        if (end > 0) {
+            this.pos = end;
+        }
+        variableDeclarators();
+    }
+
+    /*
+     * (non javadoc) A statement. The parent is the type of the first token of
+     * the statement's parent, as the listener sees it.
+     */
+    private void statement(int parent) {
+        statementEntered(parent);
+        int first = la(0);
+        switch (la(0)) {
+        case JavaLexer.LBRACE:
+            block(parent);
+            break;
+        case JavaLexer.IF:
+            this.pos++;
+            incMetricValue(1);
+            parExpression();
+            statement(first);
+            if (la(0) == JavaLexer.ELSE) {
+                this.pos++;
+                statement(first);
+            }
+            break;
+        case JavaLexer.FOR:
+            this.pos++;
+            forControl();
+            statement(first);
+            break;
+        case JavaLexer.WHILE:
+            this.pos++;
+            parExpression();
+            statement(first);
+            break;
+        case JavaLexer.DO:
+            this.pos++;
+            statement(first);
+            this.pos++;
+            parExpression();
+            skipPast(JavaLexer.SEMI);
+            break;
+        case JavaLexer.TRY:
+            tryStatement();
+            break;
+        case JavaLexer.SWITCH:
+            switchStatement();
+            break;
+        case JavaLexer.SYNCHRONIZED:
+            this.pos++;
+            parExpression();
+            block(first);
+            break;
+        case JavaLexer.ASSERT:
+            this.pos++;
+            expression();
+            if (la(0) == JavaLexer.COLON) {
+                this.pos++;
+                expression();
+            }
+            skipPast(JavaLexer.SEMI);
+            break;
+        case JavaLexer.RETURN:
+        case JavaLexer.THROW:
+            this.pos++;
+            if (la(0) != JavaLexer.SEMI) {
+                expression();
+            }
+            skipPast(JavaLexer.SEMI);
+            break;
+        case JavaLexer.BREAK:
+        case JavaLexer.CONTINUE:
+        case JavaLexer.SEMI:
+            skipPast(JavaLexer.SEMI);
+            break;
+        default:
+            if (la(0) == JavaLexer.Identifier && la(1) == JavaLexer.COLON) {
+                this.pos += 2;
+                statement(first);
+            } else {
+                expression();
+                skipPast(JavaLexer.SEMI);
+            }
+        }
+    }
+
+    private void parExpression() {
+        this.pos++;
+        expression();
+        skipPast(JavaLexer.RPAREN);
+    }
+
+    private void forControl() {
+        this.pos++;
+        if (isEnhancedFor()) {
+            modifiers();
+            this.pos = Math.max(this.pos, typeEnd(this.pos));
+            skipTo(JavaLexer.COLON);
+            this.pos++;
+            expression();
+        } else {
+            if (la(0) != JavaLexer.SEMI) {
+                int t = la(0);
+                if (t == JavaLexer.FINAL || t == JavaLexer.AT
+                        || isLocalVariableDeclaration()) {
+                    modifiers();
+                    localVariableDeclaration();
+                } else {
+                    expressionList();
+                }
+            }
+            this.pos++;
+            if (la(0) != JavaLexer.SEMI) {
+                expression();
+            }
+            this.pos++;
+            if (la(0) != JavaLexer.RPAREN) {
+                expressionList();
+            }
+        }
+        skipPast(JavaLexer.RPAREN);
+    }
+
+    private boolean isEnhancedFor() {
+        int depth = 0;
+        int ternaries = 0;
+        for (int i = this.pos; type(i) != Token.EOF; i++) {
+            int t = type(i);
+            if (t == JavaLexer.LPAREN) {
+                depth++;
+            } else if (t == JavaLexer.RPAREN) {
+                if (depth == 0) {
+                    return false;
+                }
+                depth--;
+            } else if (depth == 0) {
+                if (t == JavaLexer.SEMI) {
+                    return false;
+                } else if (t == JavaLexer.QUESTION) {
+                    ternaries++;
+                } else if (t == JavaLexer.COLON) {
+                    if (ternaries == 0) {
+                        return true;
+                    }
+                    ternaries--;
+                }
+            }
+        }
+        return false;
+    }
+
+    private void expressionList() {
+        expression();
+        while (la(0) == JavaLexer.COMMA) {
+            this.pos++;
+            expression();
+        }
+    }
+
+    private void tryStatement() {
+        this.pos++;
+        if (la(0) == JavaLexer.LPAREN) {
+            this.pos++;
+            while (la(0) != JavaLexer.RPAREN && la(0) != Token.EOF) {
+                int start = this.pos;
+                modifiers();
+                skipTo(JavaLexer.ASSIGN);
+                this.pos++;
+                expression();
+                if (la(0) == JavaLexer.SEMI) {
+                    this.pos++;
+                }
+                ensureProgress(start);
+            }
+            this.pos++;
+        }
+        block(JavaLexer.TRY);
+        while (la(0) == JavaLexer.CATCH) {
+            incMetricValue(1);
+            this.pos++;
+            formalParameters();
+            block(JavaLexer.CATCH);
+        }
+        if (la(0) == JavaLexer.FINALLY) {
+            this.pos++;
+            block(JavaLexer.FINALLY);
+        }
+    }
+
+    private void switchStatement() {
+        this.pos++;
+        parExpression();
+        this.pos++;
+        while (la(0) != JavaLexer.RBRACE && la(0) != Token.EOF) {
+            int start = this.pos;
+            if (la(0) == JavaLexer.CASE) {
+                incMetricValue(1);
+                this.pos++;
+                expression();
+                skipPast(JavaLexer.COLON);
+            } else if (la(0) == JavaLexer.DEFAULT) {
+                skipPast(JavaLexer.COLON);
+            } else {
+                blockStatement();
+            }
+            ensureProgress(start);
+        }
+        this.pos++;
+    }
+
+    /*
+     * (non javadoc) An expression, up to the first token that cannot belong
+     * to it. Its text is checked by the listener, and the bodies of its
+     * anonymous classes are scanned as any class body.
+     */
+    private void expression() {
+        int end = expressionEnd(this.pos);
+        if (end > this.pos) {
+            expression(this.pos, end);
+        }
+        this.pos = end;
+    }
+
+    private void expression(int start, int end) {
+        if (coverExpression()) {
+            StringBuilder text = new StringBuilder();
+            for (int i = start; i < end; i++) {
+                text.append(text(i));
+            }
+            expressionEntered(text.toString());
+        }
+
+        int i = start;
+        while (i < end) {
+            int t = type(i);
+            if (t == JavaLexer.LBRACE && type(i - 1) == JavaLexer.RPAREN) {
+                // Anonymous class body:
+                this.pos = i;
+                classBody();
+                i = this.pos;
+            } else if (!isExpressionCovered() && isArgumentStart(i)) {
+                // The listener reenters the arguments after the body, if it
+                // has methods:
+                int argumentEnd = expressionEnd(i);
+                if (argumentEnd > i) {
+                    expression(i, argumentEnd);
+                    i = argumentEnd;
+                } else {
+                    i++;
+                }
+            } else {
+                i++;
+            }
+        }
+        uncoverExpression();
+    }
+
+    private boolean isArgumentStart(int i) {
+        int previous = type(i - 1);
+        int t = type(i);
+        return (previous == JavaLexer.COMMA || previous == JavaLexer.LPAREN || previous == JavaLexer.LBRACK)
+                && t != JavaLexer.RPAREN && t != JavaLexer.RBRACK;
+    }
+
+    private int expressionEnd(int start) {
+        int depth = 0;
+        int ternaries = 0;
+        int i = start;
+        while (type(i) != Token.EOF) {
+            int t = type(i);
+            if (t == JavaLexer.NEW || t == JavaLexer.INSTANCEOF) {
+                i++;
+                if (type(i) == JavaLexer.LT) {
+                    i = skipTypeArguments(i);
+                }
+                int end = typeEnd(i);
+                if (end > 0) {
+                    i = end;
+                }
+                continue;
+            } else if (t == JavaLexer.DOT && type(i + 1) == JavaLexer.LT) {
+                i = skipTypeArguments(i + 1);
+                continue;
+            } else if (t == JavaLexer.LPAREN || t == JavaLexer.LBRACK
+                    || t == JavaLexer.LBRACE) {
+                depth++;
+            } else if (t == JavaLexer.RPAREN || t == JavaLexer.RBRACK
+                    || t == JavaLexer.RBRACE) {
+                if (depth == 0) {
+                    break;
+                }
+                depth--;
+            } else if (depth == 0) {
+                if (t == JavaLexer.SEMI || t == JavaLexer.COMMA) {
+                    break;
+                } else if (t == JavaLexer.QUESTION) {
+                    ternaries++;
+                } else if (t == JavaLexer.COLON) {
+                    if (ternaries == 0) {
+                        break;
+                    }
+                    ternaries--;
+                }
+            }
+            i++;
+        }
+        return i;
+    }
+
+    /*
+     * (non javadoc) Returns the index after a type (a primitive or a class
+     * type, with type arguments and dimensions), or -1 if there is no type
+     * at the index.
+     */
+    private int typeEnd(int start) {
+        int i = start;
+        if (isPrimitive(type(i))) {
+            i++;
+        } else if (type(i) == JavaLexer.Identifier) {
+            i++;
+            while (true) {
+                if (type(i) == JavaLexer.LT) {
+                    i = skipTypeArguments(i);
+                    if (i < 0) {
+                        return -1;
+                    }
+                }
+                if (type(i) == JavaLexer.DOT
+                        && type(i + 1) == JavaLexer.Identifier) {
+                    i += 2;
+                } else {
+                    break;
+                }
+            }
+        } else {
+            return -1;
+        }
+        while (type(i) == JavaLexer.LBRACK && type(i + 1) == JavaLexer.RBRACK) {
+            i += 2;
+        }
+        return i;
+    }
+
+    private boolean isPrimitive(int t) {
+        switch (t) {
+        case JavaLexer.BOOLEAN:
+        case JavaLexer.CHAR:
+        case JavaLexer.BYTE:
+        case JavaLexer.SHORT:
+        case JavaLexer.INT:
+        case JavaLexer.LONG:
+        case JavaLexer.FLOAT:
+        case JavaLexer.DOUBLE:
+            return true;
+        default:
+            return false;
+        }
+    }
+
+    /*
+     * (non javadoc) Returns the index after the type arguments (or type
+     * parameters) that start at the index, or -1 if they are not type
+     * arguments, for example: a "less than" operator.
+     */
+    private int skipTypeArguments(int start) {
+        int depth = 0;
+        for (int i = start; type(i) != Token.EOF; i++) {
+            int t = type(i);
+            if (t == JavaLexer.LT) {
+                depth++;
+            } else if (t == JavaLexer.GT) {
+                depth--;
+                if (depth == 0) {
+                    return i + 1;
+                }
+            } else if (t != JavaLexer.Identifier && t != JavaLexer.DOT
+                    && t != JavaLexer.COMMA && t != JavaLexer.QUESTION
+                    && t != JavaLexer.EXTENDS && t != JavaLexer.SUPER
+                    && t != JavaLexer.LBRACK && t != JavaLexer.RBRACK
+                    && t != JavaLexer.BITAND && !isPrimitive(t)) {
+                return -1;
+            }
+        }
+        return -1;
+    }
+
+    private void skipQualifiedName() {
+        if (la(0) == JavaLexer.Identifier) {
+            this.pos++;
+        }
+        while (la(0) == JavaLexer.DOT && la(1) == JavaLexer.Identifier) {
+            this.pos += 2;
+        }
+    }
+
+    private void skipDimensions() {
+        while (la(0) == JavaLexer.LBRACK && la(1) == JavaLexer.RBRACK) {
+            this.pos += 2;
+        }
+    }
+
+    private void skipTo(int tokenType) {
+        while (la(0) != tokenType && la(0) != Token.EOF) {
+            this.pos++;
+        }
+    }
+
+    private void skipPast(int tokenType) {
+        skipTo(tokenType);
+        if (la(0) != Token.EOF) {
+            this.pos++;
+        }
+    }
+
+    /*
+     * (non javadoc) Invalid code must not stop the scanner.
+     */
+    private void ensureProgress(int start) {
+        if (this.pos <= start) {
+            this.pos = start + 1;
+        }
+    }
+
+    private int la(int offset) {
+        return type(this.pos + offset);
+    }
+
+    private int type(int index) {
+        if (index < 0 || index >= this.tokens.size()) {
+            return Token.EOF;
+        }
+        return this.tokens.get(index).getType();
+    }
+
+    private String text(int index) {
+        if (index < 0 || index >= this.tokens.size()) {
+            return "";
+        }
+        return this.tokens.get(index).getText();
+    }
+
+}
@@ -24,6 +24,7 @@ import com.obomprogramador.tools.jqana.antlrparser.JavaParser;
 import com.obomprogramador.tools.jqana.context.Context;
 import com.obomprogramador.tools.jqana.model.AbstractMetricParser;
 import com.obomprogramador.tools.jqana.model.Measurement;
+import com.obomprogramador.tools.jqana.model.Measurement.MEASUREMENT_TYPE;
 import com.obomprogramador.tools.jqana.model.defaultimpl.MetricValue;
 
 /**
@@ -53,8 +54,14 @@ public class CyclomaticComplexityParser extends AbstractMetricParser {
      */
     @Override
     public JavaBaseListener getListener(JavaParser p) {
-        JavaBaseListener jbl = new CycloListener(this.metric, this.measurement,
-                p);
+        CycloListener jbl = null;
+        if (this.streaming) {
+            jbl = new StreamingCycloListener(this.metric, this.measurement, p);
+        } else {
+            jbl = new CycloListener(this.metric, this.measurement, p);
+        }
+        jbl.setMethodDetail(
+                this.detailLevel == MEASUREMENT_TYPE.METHOD_MEASUREMENT);
         return jbl;
     }
 
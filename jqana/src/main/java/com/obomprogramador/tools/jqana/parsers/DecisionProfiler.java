@@ -0,0 +1,216 @@
+/**
+ * jQana - Open Source Java(TM) code quality analyzer.
+ * 
+ * Copyright 2013 Cleuton Sampaio de Melo Jr
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * Project website: http://www.jqana.com
+ */
+package com.obomprogramador.tools.jqana.parsers;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import org.antlr.v4.runtime.atn.DecisionState;
+
+import com.obomprogramador.tools.jqana.antlrparser.JavaParser;
+
+/**
+ * Per-run profile of the parser decisions. The statistics of each parsed
+ * file (see ProfilingParserATNSimulator) are added to the project's, and
+ * the slowest files are kept. The report ranks the decisions by prediction
+ * time, with the grammar rule of each one, so we can find the grammar
+ * hotspots. It is safe to add files from several threads.
+ * 
+ * @author Cleuton Sampaio
+ * 
+ */
+public class DecisionProfiler {
+
+    /**
+     * Number of slowest files kept for the report.
+     */
+    public static final int SLOWEST_FILES = 20;
+
+    private DecisionStatistics[] decisions = new DecisionStatistics[JavaParser._ATN
+            .getNumberOfDecisions()];
+    private List<ParsedFile> slowestFiles = new ArrayList<ParsedFile>();
+    private int parsedFiles;
+    private long parsingTime;
+
+    /**
+     * A profiled file and its parsing time.
+     */
+    public static class ParsedFile {
+
+        private String name;
+        private long time;
+
+        /**
+         * Constructor with fields.
+         * @param name String the source file name.
+         * @param time long the parsing time, in nanoseconds.
+         */
+        public ParsedFile(String name, long time) {
+            super();
+            this.name = name;
+            this.time = time;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getTime() {
+            return time;
+        }
+
+    }
+
+    /**
+     * Adds the statistics of a parsed file.
+     * @param fileName String the source file name.
+     * @param time long the parsing time (both stages), in nanoseconds.
+     * @param fileDecisions DecisionStatistics[] the file's statistics,
+     * indexed by decision number.
+     */
+    public synchronized void addFile(String fileName, long time,
+            DecisionStatistics[] fileDecisions) {
+        this.parsedFiles++;
+        this.parsingTime += time;
+        for (DecisionStatistics fileDecision : fileDecisions) {
+            if (fileDecision != null) {
+                int decision = fileDecision.getDecision();
+                if (this.decisions[decision] == null) {
+                    this.decisions[decision] = new DecisionStatistics(decision);
+                }
+                this.decisions[decision].add(fileDecision);
+            }
+        }
+        if (this.slowestFiles.size() < SLOWEST_FILES
+                || time > this.slowestFiles.get(SLOWEST_FILES - 1).getTime()) {
+            ParsedFile parsedFile = new ParsedFile(fileName, time);
+            int position = 0;
+            while (position < this.slowestFiles.size()
+                    && this.slowestFiles.get(position).getTime() >= time) {
+                position++;
+            }
+            this.slowestFiles.add(position, parsedFile);
+            if (this.slowestFiles.size() > SLOWEST_FILES) {
+                this.slowestFiles.remove(SLOWEST_FILES);
+            }
+        }
+    }
+
+    /**
+     * Number of profiled files.
+     * @return int the number of files.
+     */
+    public synchronized int getParsedFiles() {
+        return parsedFiles;
+    }
+
+    /**
+     * The used decisions, ranked by prediction time (the slowest first).
+     * @return List<DecisionStatistics> the decisions' statistics.
+     */
+    public synchronized List<DecisionStatistics> getDecisions() {
+        List<DecisionStatistics> ranked = new ArrayList<DecisionStatistics>();
+        for (DecisionStatistics decision : this.decisions) {
+            if (decision != null) {
+                ranked.add(decision);
+            }
+        }
+        Collections.sort(ranked, new Comparator<DecisionStatistics>() {
+            @Override
+            public int compare(DecisionStatistics o1, DecisionStatistics o2) {
+                if (o1.getTime() != o2.getTime()) {
+                    return o1.getTime() > o2.getTime() ? -1 : 1;
+                }
+                return o1.getDecision() - o2.getDecision();
+            }
+        });
+        return ranked;
+    }
+
+    /**
+     * The slowest files, the slowest first.
+     * @return List<ParsedFile> the files, at most SLOWEST_FILES.
+     */
+    public synchronized List<ParsedFile> getSlowestFiles() {
+        return new ArrayList<ParsedFile>(this.slowestFiles);
+    }
+
+    /**
+     * Name of the grammar rule where a decision is.
+     * @param decision int the decision number.
+     * @return String the rule name.
+     */
+    public static String getRuleName(int decision) {
+        DecisionState state = JavaParser._ATN.getDecisionState(decision);
+        return JavaParser.ruleNames[state.ruleIndex];
+    }
+
+    /**
+     * Writes the report: the decisions ranked by prediction time, and the
+     * slowest files. Times are in milliseconds, and lookaheads in tokens.
+     * @param out Writer where to write. It is not closed.
+     * @throws IOException in case of writing errors.
+     */
+    public void writeReport(Writer out) throws IOException {
+        PrintWriter writer = new PrintWriter(out);
+        List<DecisionStatistics> ranked = getDecisions();
+        List<ParsedFile> slowest = getSlowestFiles();
+        synchronized (this) {
+            writer.printf("jQana - parser decisions profile%n");
+            writer.printf("Parsed files: %d, parsing time: %.3f ms%n%n",
+                    this.parsedFiles, millis(this.parsingTime));
+        }
+        writer.printf("%8s %-28s %12s %12s %9s %7s %12s %9s %7s %10s %10s%n",
+                "Decision", "Rule", "Invocations", "Time (ms)", "SLL avg",
+                "SLL max", "LL fallbacks", "LL avg", "LL max", "Ambiguous",
+                "Ctx sens.");
+        for (DecisionStatistics d : ranked) {
+            writer.printf(
+                    "%8d %-28s %12d %12.3f %9.2f %7d %12d %9.2f %7d %10d %10d%n",
+                    d.getDecision(), getRuleName(d.getDecision()),
+                    d.getInvocations(), millis(d.getTime()),
+                    average(d.getSllLookahead(), d.getInvocations()),
+                    d.getSllMaxLookahead(), d.getLlFallbacks(),
+                    average(d.getLlLookahead(), d.getLlFallbacks()),
+                    d.getLlMaxLookahead(), d.getAmbiguities(),
+                    d.getContextSensitivities());
+        }
+        writer.printf("%nSlowest files:%n");
+        for (ParsedFile file : slowest) {
+            writer.printf("%12.3f ms  %s%n", millis(file.getTime()),
+                    file.getName());
+        }
+        writer.flush();
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1000000.0;
+    }
+
+    private static double average(long total, long count) {
+        return count == 0 ? 0 : (double) total / count;
+    }
+
+}
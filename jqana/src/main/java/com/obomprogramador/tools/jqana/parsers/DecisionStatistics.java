@@ -0,0 +1,156 @@
+/**
+ * jQana - Open Source Java(TM) code quality analyzer.
+ * 
+ * Copyright 2013 Cleuton Sampaio de Melo Jr
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * Project website: http://www.jqana.com
+ */
+package com.obomprogramador.tools.jqana.parsers;
+
+/**
+ * Counters of a single parser decision (an ATN decision state of the
+ * grammar), collected by ProfilingParserATNSimulator: how many times the
+ * parser predicted an alternative there, how long it took, how many tokens
+ * it looked ahead, and how often it needed full LL prediction.
+ * 
+ * The lookahead of each prediction is the number of tokens examined, from
+ * the current token. SLL lookahead includes the predictions solved by the
+ * DFA cache.
+ * 
+ * @author Cleuton Sampaio
+ * 
+ */
+public class DecisionStatistics {
+
+    private int decision;
+    private long invocations;
+    private long time;
+    private long sllLookahead;
+    private long sllMaxLookahead;
+    private long llFallbacks;
+    private long llLookahead;
+    private long llMaxLookahead;
+    private long ambiguities;
+    private long contextSensitivities;
+
+    /**
+     * Constructor with fields.
+     * @param decision int the decision number.
+     */
+    public DecisionStatistics(int decision) {
+        super();
+        this.decision = decision;
+    }
+
+    /**
+     * Counts a prediction.
+     * @param nanos long the prediction time, in nanoseconds.
+     * @param sllLook int the SLL lookahead, or zero.
+     * @param llLook int the full LL lookahead, or zero.
+     */
+    public void countPrediction(long nanos, int sllLook, int llLook) {
+        this.invocations++;
+        this.time += nanos;
+        this.sllLookahead += sllLook;
+        this.sllMaxLookahead = Math.max(this.sllMaxLookahead, sllLook);
+        this.llLookahead += llLook;
+        this.llMaxLookahead = Math.max(this.llMaxLookahead, llLook);
+    }
+
+    /**
+     * Counts a SLL conflict, which was solved with full LL prediction.
+     */
+    public void countLlFallback() {
+        this.llFallbacks++;
+    }
+
+    /**
+     * Counts an ambiguity found by the full LL prediction.
+     */
+    public void countAmbiguity() {
+        this.ambiguities++;
+    }
+
+    /**
+     * Counts a SLL conflict that the full LL prediction solved with a
+     * different alternative.
+     */
+    public void countContextSensitivity() {
+        this.contextSensitivities++;
+    }
+
+    /**
+     * Adds the counters of the same decision.
+     * @param other DecisionStatistics the counters to add.
+     */
+    public void add(DecisionStatistics other) {
+        this.invocations += other.invocations;
+        this.time += other.time;
+        this.sllLookahead += other.sllLookahead;
+        this.sllMaxLookahead = Math.max(this.sllMaxLookahead,
+                other.sllMaxLookahead);
+        this.llFallbacks += other.llFallbacks;
+        this.llLookahead += other.llLookahead;
+        this.llMaxLookahead = Math.max(this.llMaxLookahead,
+                other.llMaxLookahead);
+        this.ambiguities += other.ambiguities;
+        this.contextSensitivities += other.contextSensitivities;
+    }
+
+    public int getDecision() {
+        return decision;
+    }
+
+    public long getInvocations() {
+        return invocations;
+    }
+
+    /**
+     * Total prediction time.
+     * @return long the time, in nanoseconds.
+     */
+    public long getTime() {
+        return time;
+    }
+
+    public long getSllLookahead() {
+        return sllLookahead;
+    }
+
+    public long getSllMaxLookahead() {
+        return sllMaxLookahead;
+    }
+
+    public long getLlFallbacks() {
+        return llFallbacks;
+    }
+
+    public long getLlLookahead() {
+        return llLookahead;
+    }
+
+    public long getLlMaxLookahead() {
+        return llMaxLookahead;
+    }
+
+    public long getAmbiguities() {
+        return ambiguities;
+    }
+
+    public long getContextSensitivities() {
+        return contextSensitivities;
+    }
+
+}
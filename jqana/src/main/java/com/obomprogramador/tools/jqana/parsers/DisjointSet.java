@@ -0,0 +1,91 @@
+/**
+ * jQana - Open Source Java(TM) code quality analyzer.
+ * 
+ * Copyright 2013 Cleuton Sampaio de Melo Jr
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * Project website: http://www.jqana.com
+ */
+package com.obomprogramador.tools.jqana.parsers;
+
+/**
+ * A disjoint-set (union-find) of the integers from zero to size - 1, with
+ * path compression and union by rank, so, finding an element's set takes
+ * almost constant time. Lcom4Parser uses it to find the connected components
+ * of a class' members.
+ * 
+ * @author Cleuton Sampaio
+ * 
+ */
+public class DisjointSet {
+
+    private int[] parent;
+    private int[] rank;
+
+    /**
+     * Constructor with fields. Each element starts in its own set.
+     * @param size int the number of elements.
+     */
+    public DisjointSet(int size) {
+        this.parent = new int[size];
+        this.rank = new int[size];
+        for (int x = 0; x < size; x++) {
+            this.parent[x] = x;
+        }
+    }
+
+    /**
+     * Finds an element's set. The elements in the path to the set's root are
+     * linked straight to it.
+     * @param element int the element.
+     * @return int the set's root element.
+     */
+    public int find(int element) {
+        int root = element;
+        while (this.parent[root] != root) {
+            root = this.parent[root];
+        }
+        while (this.parent[element] != root) {
+            int next = this.parent[element];
+            this.parent[element] = root;
+            element = next;
+        }
+        return root;
+    }
+
+    /**
+     * Joins the sets of two elements. The shallower tree goes under the
+     * deeper one.
+     * @param element1 int an element.
+     * @param element2 int the other element.
+     * @return boolean true if they were in different sets.
+     */
+    public boolean union(int element1, int element2) {
+        int root1 = find(element1);
+        int root2 = find(element2);
+        if (root1 == root2) {
+            return false;
+        }
+        if (this.rank[root1] < this.rank[root2]) {
+            this.parent[root1] = root2;
+        } else if (this.rank[root1] > this.rank[root2]) {
+            this.parent[root2] = root1;
+        } else {
+            this.parent[root2] = root1;
+            this.rank[root1]++;
+        }
+        return true;
+    }
+
+}
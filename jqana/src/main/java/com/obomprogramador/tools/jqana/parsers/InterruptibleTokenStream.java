@@ -0,0 +1,54 @@
+/**
+ * jQana - Open Source Java(TM) code quality analyzer.
+ * 
+ * Copyright 2013 Cleuton Sampaio de Melo Jr
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * Project website: http://www.jqana.com
+ */
+package com.obomprogramador.tools.jqana.parsers;
+
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.TokenSource;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
+
+/**
+ * Token stream that stops the parsing if the current thread is interrupted.
+ * Every token look ahead, including ANTLR4's adaptive prediction, passes
+ * through "LT()", so, even a pathological prediction can be stopped by a
+ * watchdog.
+ * 
+ * @author Cleuton Sampaio
+ * 
+ */
+public class InterruptibleTokenStream extends CommonTokenStream {
+
+    /**
+     * Constructor with fields.
+     * @param tokenSource TokenSource the lexer.
+     */
+    public InterruptibleTokenStream(TokenSource tokenSource) {
+        super(tokenSource);
+    }
+
+    @Override
+    public Token LT(int k) {
+        if (Thread.currentThread().isInterrupted()) {
+            throw new ParseCancellationException("Parsing interrupted.");
+        }
+        return super.LT(k);
+    }
+
+}
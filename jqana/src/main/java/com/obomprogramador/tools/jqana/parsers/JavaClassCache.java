@@ -0,0 +1,206 @@
+/**
+ * jQana - Open Source Java(TM) code quality analyzer.
+ * 
+ * Copyright 2013 Cleuton Sampaio de Melo Jr
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * Project website: http://www.jqana.com
+ */
+package com.obomprogramador.tools.jqana.parsers;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.apache.bcel.classfile.ClassParser;
+import org.apache.bcel.classfile.JavaClass;
+
+/**
+ * Per-run cache of BCEL class models. Each compiled class file is read and
+ * decoded only once, and the same JavaClass instance is shared by every
+ * bytecode consumer (interface verification, RFC parser etc).
+ * 
+ * Entries should be released when the last consumer is done with a class, so
+ * the memory does not grow with the project's size. It is safe to use this
+ * cache from several threads.
+ * 
+ * The compiled classes may also come from a jar (or zip) archive, instead of
+ * loose class files. The archive is opened only once, and its entries are
+ * read into a reusable buffer (one per thread), without extracting them.
+ * Then, class file paths are the archive's entry names (for example:
+ * "abc/ClassA.class"), and the cache must be closed after the run.
+ * 
+ * @author Cleuton Sampaio
+ * 
+ */
+public class JavaClassCache {
+
+    private static final int INITIAL_BUFFER_SIZE = 16 * 1024;
+
+    private ConcurrentMap<String, JavaClass> classes = new ConcurrentHashMap<String, JavaClass>();
+    private AtomicInteger parsedClasses = new AtomicInteger();
+    private AtomicInteger cacheHits = new AtomicInteger();
+    private ZipFile archive;
+    private ThreadLocal<byte[]> buffers = new ThreadLocal<byte[]>() {
+        @Override
+        protected byte[] initialValue() {
+            return new byte[INITIAL_BUFFER_SIZE];
+        }
+    };
+
+    /**
+     * Default constructor. Classes are read from loose class files.
+     */
+    public JavaClassCache() {
+        super();
+    }
+
+    /**
+     * Constructor with a classes' archive.
+     * @param classArchive File the jar (or zip) file with the compiled
+     * classes.
+     * @throws IOException if the archive cannot be opened.
+     */
+    public JavaClassCache(File classArchive) throws IOException {
+        super();
+        this.archive = new ZipFile(classArchive);
+    }
+
+    /**
+     * Whether the classes come from an archive.
+     * @return boolean true if class file paths are archive entry names.
+     */
+    public boolean isArchive() {
+        return this.archive != null;
+    }
+
+    /**
+     * Checksum of a class file inside the archive, without reading it.
+     * @param entryName String the class file's entry name.
+     * @return long the entry's CRC-32, or -1 if there is no such entry.
+     */
+    public long getArchiveChecksum(String entryName) {
+        ZipEntry entry = this.archive.getEntry(entryName);
+        return entry == null ? -1 : entry.getCrc();
+    }
+
+    /**
+     * Closes the classes' archive, if any.
+     * @throws IOException in case of any IO error.
+     */
+    public void close() throws IOException {
+        if (this.archive != null) {
+            this.archive.close();
+        }
+    }
+
+    /**
+     * Returns the class model of a compiled class file, parsing it only if it
+     * is not in the cache.
+     * @param classFilePath String the path of the compiled class file.
+     * @return JavaClass the class model.
+     * @throws IOException if the class file cannot be read.
+     */
+    public JavaClass getJavaClass(String classFilePath) throws IOException {
+        JavaClass javaClass = this.classes.get(classFilePath);
+        if (javaClass == null) {
+            ClassParser cParser = null;
+            if (this.archive != null) {
+                cParser = new ClassParser(readEntry(classFilePath),
+                        classFilePath);
+            } else {
+                cParser = new ClassParser(classFilePath);
+            }
+            javaClass = cParser.parse();
+            this.parsedClasses.incrementAndGet();
+            JavaClass previous = this.classes.putIfAbsent(classFilePath,
+                    javaClass);
+            if (previous != null) {
+                javaClass = previous;
+            }
+        } else {
+            this.cacheHits.incrementAndGet();
+        }
+        return javaClass;
+    }
+
+    /*
+     * (non javadoc) Reads an archive entry into this thread's buffer, which
+     * only grows. BCEL copies what it needs, so, the buffer can be reused by
+     * the next entry.
+     */
+    private InputStream readEntry(String entryName) throws IOException {
+        ZipEntry entry = this.archive.getEntry(entryName);
+        if (entry == null) {
+            throw new FileNotFoundException(entryName + " (not found in "
+                    + this.archive.getName() + ")");
+        }
+        byte[] buffer = this.buffers.get();
+        if (entry.getSize() > buffer.length) {
+            buffer = new byte[(int) entry.getSize()];
+            this.buffers.set(buffer);
+        }
+        InputStream in = this.archive.getInputStream(entry);
+        int length = 0;
+        try {
+            int count = in.read(buffer, length, buffer.length - length);
+            while (count >= 0) {
+                length += count;
+                if (length == buffer.length) {
+                    // Unknown size: the buffer grows
+                    byte[] larger = new byte[buffer.length * 2];
+                    System.arraycopy(buffer, 0, larger, 0, length);
+                    buffer = larger;
+                    this.buffers.set(buffer);
+                }
+                count = in.read(buffer, length, buffer.length - length);
+            }
+        } finally {
+            in.close();
+        }
+        return new ByteArrayInputStream(buffer, 0, length);
+    }
+
+    /**
+     * Removes a class model from the cache.
+     * @param classFilePath String the path of the compiled class file.
+     */
+    public void release(String classFilePath) {
+        this.classes.remove(classFilePath);
+    }
+
+    /**
+     * Number of class files actually read and parsed.
+     * @return int the number of parsed classes.
+     */
+    public int getParsedClasses() {
+        return this.parsedClasses.get();
+    }
+
+    /**
+     * Number of requests served from the cache.
+     * @return int the number of cache hits.
+     */
+    public int getCacheHits() {
+        return this.cacheHits.get();
+    }
+
+}
@@ -0,0 +1,241 @@
+/**
+ * jQana - Open Source Java(TM) code quality analyzer.
+ * 
+ * Copyright 2013 Cleuton Sampaio de Melo Jr
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * Project website: http://www.jqana.com
+ */
+package com.obomprogramador.tools.jqana.parsers;
+
+import org.antlr.v4.runtime.ANTLRInputStream;
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.CommonToken;
+import org.antlr.v4.runtime.CommonTokenFactory;
+import org.antlr.v4.runtime.ConsoleErrorListener;
+import org.antlr.v4.runtime.DefaultErrorStrategy;
+import org.antlr.v4.runtime.TokenFactory;
+import org.antlr.v4.runtime.TokenStream;
+import org.antlr.v4.runtime.atn.ParserATNSimulator;
+import org.antlr.v4.runtime.atn.PredictionMode;
+import org.antlr.v4.runtime.tree.ParseTreeWalker;
+
+import com.obomprogramador.tools.jqana.antlrparser.JavaBaseListener;
+import com.obomprogramador.tools.jqana.antlrparser.JavaLexer;
+import com.obomprogramador.tools.jqana.antlrparser.JavaParser;
+
+/**
+ * Per-thread pool of ANTLR4 lexer and parser instances. Each thread creates
+ * its lexer and parser only once, and they are reset with the next file's
+ * input, instead of being created (with their interpreters) for every file.
+ * Only the token buffer is created for each file.
+ * 
+ * The ATN, the DFA and the prediction context cache are static members of
+ * the generated lexer and parser, so, they are shared by all instances and
+ * threads: the DFA states built by the first files speed up the prediction
+ * of the following files. "warmUp()" parses a small, representative source
+ * code once per JVM, so the DFA is already populated when the analysis
+ * starts.
+ * 
+ * A pooled parser must not be used after the thread gets it again.
+ * "release()" replaces its input with an empty one, after each file is
+ * parsed, so the pool does not keep the last file's chars and tokens.
+ * 
+ * For very large files, "getUnbufferedParser()" reads the chars and tokens
+ * through unbuffered streams. The tokens copy their texts, as the chars are
+ * released too.
+ * 
+ * @author Cleuton Sampaio
+ * 
+ */
+public final class JavaParserPool {
+
+    private static final String WARM_UP_SOURCE = "package warm.up;\n"
+            + "import java.util.*;\n"
+            + "@SuppressWarnings(\"unchecked\")\n"
+            + "public class WarmUp<T extends Comparable<T>> extends Object"
+            + " implements Runnable {\n"
+            + "    private static final int LIMIT = 10;\n"
+            + "    protected List<Map<String, T>> items = new ArrayList<Map<String, T>>();\n"
+            + "    private int[] values = {1, 2, 3};\n"
+            + "    public WarmUp() { super(); this.items.clear(); }\n"
+            + "    @Override\n"
+            + "    public void run() {\n"
+            + "        int total = 0;\n"
+            + "        for (int x = 0; x < LIMIT && values.length > 0; x++) {\n"
+            + "            total += x > 5 ? values[0] : (int) Math.max(x, 2L);\n"
+            + "        }\n"
+            + "        for (Map<String, T> item : items) { item.size(); }\n"
+            + "        while (total > 0 || total == -1) { total--; }\n"
+            + "        do { total++; } while (total < 3);\n"
+            + "        switch (total) { case 1: break; default: total = 0; }\n"
+            + "        try { new Thread(this).start(); }"
+            + " catch (RuntimeException e) { throw new IllegalStateException(e); }"
+            + " finally { total = 0; }\n"
+            + "        synchronized (this) { if (!items.isEmpty()) { return; }"
+            + " else if (items == null) { total = 1; } }\n"
+            + "        String s = \"a\" + total + 'b';\n"
+            + "        Object o = s instanceof String ? s : null;\n"
+            + "    }\n"
+            + "    interface Inner { void call(String... args); }\n"
+            + "    enum Kind { A, B; }\n"
+            + "    public T get(T value) { return value.compareTo(value) >= 0 ? value : null; }\n"
+            + "}\n";
+
+    private static final ThreadLocal<JavaParserPool> POOLS = new ThreadLocal<JavaParserPool>() {
+        @Override
+        protected JavaParserPool initialValue() {
+            return new JavaParserPool();
+        }
+    };
+
+    private static final TokenFactory<CommonToken> COPYING_TOKEN_FACTORY = new CommonTokenFactory(
+            true);
+
+    private static volatile boolean warmedUp;
+
+    private JavaLexer lexer;
+    private TokenStream tokens;
+    private JavaParser parser;
+    private ReleasableParserATNSimulator simulator;
+    private final CharStream emptySource = new ANTLRInputStream("");
+
+    private JavaParserPool() {
+        super();
+    }
+
+    /**
+     * Returns this thread's parser, reset to parse a new source code, with
+     * the default settings (full LL prediction, default error strategy and
+     * console error listener, building the parse tree, no profiling).
+     * @param source CharStream the source code to parse.
+     * @return JavaParser the pooled parser.
+     */
+    public static JavaParser getParser(CharStream source) {
+        return POOLS.get().reset(source, false);
+    }
+
+    /**
+     * Same as "getParser()", but the tokens are read through an unbuffered
+     * stream (see InterruptibleUnbufferedTokenStream), and they copy their
+     * texts. The parser can only be used with parse listeners, without
+     * building the parse tree.
+     * @param source CharStream the source code to parse, usually an
+     * UnbufferedCharStream.
+     * @return JavaParser the pooled parser.
+     */
+    public static JavaParser getUnbufferedParser(CharStream source) {
+        return POOLS.get().reset(source, true);
+    }
+
+    /**
+     * Releases the source code of this thread's last parsed file: the pooled
+     * lexer and parser get an empty input, and the parser's simulator forgets
+     * its last token stream. The parse tree (if built) remains valid, as its
+     * tokens refer to their own char stream.
+     */
+    public static void release() {
+        POOLS.get().releaseSource();
+    }
+
+    /**
+     * Populates the shared DFA, parsing a representative source code. It is
+     * done only once per JVM.
+     */
+    public static void warmUp() {
+        if (!warmedUp) {
+            warmedUp = true;
+            JavaParser p = getParser(new ANTLRInputStream(WARM_UP_SOURCE));
+            new ParseTreeWalker().walk(new JavaBaseListener(),
+                    p.compilationUnit());
+        }
+    }
+
+    private JavaParser reset(CharStream source, boolean unbuffered) {
+        if (this.parser == null) {
+            // The parser reads the first token when it is created:
+            this.lexer = new JavaLexer(source);
+            this.lexer.setTokenFactory(getTokenFactory(unbuffered));
+            this.tokens = newTokenStream(unbuffered);
+            this.parser = new JavaParser(this.tokens);
+            this.simulator = new ReleasableParserATNSimulator(this.parser,
+                    this.parser.getInterpreter());
+            this.parser.setInterpreter(this.simulator);
+            return this.parser;
+        }
+        this.lexer.setInputStream(source);
+        this.lexer.setTokenFactory(getTokenFactory(unbuffered));
+        // A new token buffer: "setTokenSource()" does not clear the end of
+        // file flag of ANTLR 4.1's stream.
+        this.tokens = newTokenStream(unbuffered);
+        this.parser.setErrorHandler(new DefaultErrorStrategy());
+        this.parser.removeErrorListeners();
+        this.parser.addErrorListener(ConsoleErrorListener.INSTANCE);
+        this.parser.removeParseListeners();
+        this.parser.setBuildParseTree(true);
+        // A profiling simulator is replaced by the original one:
+        this.parser.setInterpreter(this.simulator);
+        this.parser.getInterpreter().setPredictionMode(PredictionMode.LL);
+        this.parser.setTokenStream(this.tokens);
+        return this.parser;
+    }
+
+    private void releaseSource() {
+        if (this.parser == null) {
+            return;
+        }
+        this.lexer.setInputStream(this.emptySource);
+        this.tokens = new InterruptibleTokenStream(this.lexer);
+        this.parser.removeParseListeners();
+        this.parser.setInterpreter(this.simulator);
+        this.parser.setTokenStream(this.tokens);
+        this.simulator.release();
+    }
+
+    private TokenStream newTokenStream(boolean unbuffered) {
+        if (unbuffered) {
+            return new InterruptibleUnbufferedTokenStream(this.lexer);
+        }
+        return new InterruptibleTokenStream(this.lexer);
+    }
+
+    private static TokenFactory<CommonToken> getTokenFactory(
+            boolean unbuffered) {
+        if (unbuffered) {
+            return COPYING_TOKEN_FACTORY;
+        }
+        return CommonTokenFactory.DEFAULT;
+    }
+
+    /*
+     * (non javadoc) ANTLR 4.1's simulator keeps the token stream and the
+     * context of its last prediction, until the next one.
+     */
+    private static class ReleasableParserATNSimulator extends
+            ParserATNSimulator {
+
+        ReleasableParserATNSimulator(JavaParser parser,
+                ParserATNSimulator simulator) {
+            super(parser, simulator.atn, simulator.decisionToDFA, simulator
+                    .getSharedContextCache());
+            setPredictionMode(simulator.getPredictionMode());
+        }
+
+        void release() {
+            this._input = null;
+            this._outerContext = null;
+        }
+    }
+
+}
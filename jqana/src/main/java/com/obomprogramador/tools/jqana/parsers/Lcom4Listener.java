@@ -79,7 +79,7 @@ public class Lcom4Listener extends JavaBaseListener {
     protected String mainClassName;
     protected boolean alreadyGotMainClass;
     protected boolean overrideAnnotation;
-    private static final int PACKAGE_DISPLACEMENT = 7;
+    protected static final int PACKAGE_DISPLACEMENT = 7;
     
     /**
      * Getter for MainClass name.
@@ -154,12 +154,22 @@ public class Lcom4Listener extends JavaBaseListener {
                 }
             }
         }
+        addVariable(name);
+    }
+
+    /**
+     * Adds a variable (a field) to the members array.
+     * @param name String the variable's name.
+     * @return Member the new member.
+     */
+    protected Member addVariable(String name) {
         Member member = new Member();
         member.className = mainClassName;
         member.name = name;
         member.packageName = this.mainPackageName;
         member.type = MEMBER_TYPE.VARIABLE;
         this.membersTable.add(member);
+        return member;
     }
 
     
@@ -194,9 +204,18 @@ public class Lcom4Listener extends JavaBaseListener {
                 break;
             }
         }
-        
-        
+        addMethod(methodName, body);
+    }
 
+    /**
+     * Adds a method to the members array, unless it is inherited (it has the
+     * "@Override" annotation) or it was already added.
+     * @param methodName String the method's name.
+     * @param body ParseTree the method's body, or null.
+     * @return Member the new member, or null if it was not added.
+     */
+    protected Member addMethod(String methodName, ParseTree body) {
+        Member added = null;
         if (this.overrideAnnotation) {
             logger.debug("*** Inherited method ignored: " + methodName);
         } else {
@@ -209,10 +228,12 @@ public class Lcom4Listener extends JavaBaseListener {
             member.body = body;
             if (!this.membersTable.contains(member)) {
                 this.membersTable.add(member);    
+                added = member;
             }
         }
 
         this.overrideAnnotation = false;
+        return added;
     }
 
 
@@ -237,35 +258,46 @@ public class Lcom4Listener extends JavaBaseListener {
         @Override
         public void enterExpression(@NotNull ExpressionContext ctx) {
             if (ctx.children.size() == 1) {
-                String exprMember = ctx.getText();
-                logger.debug("Expression Member: " + exprMember);
-                Member nMember = new Member();
-                member.className = mainClassName;
-                member.packageName = mainPackageName;
-                nMember.name = exprMember;
-                if (membersTable.contains(nMember)) {
-                    if (!member.referencedMembers.contains(exprMember)) {
-                        int indx = membersTable.indexOf(nMember);
-                        nMember = membersTable.get(indx);
-                        if (nMember.type == MEMBER_TYPE.GETTER_SETTER) {
-                            member.referencedMembers
-                                    .add(nMember.targetVariable);
-                        } else {
-                            member.referencedMembers.add(nMember);
-                        }
-                        logger.debug("Class Member reference added: "
-                                + exprMember);
-                    }
-                }
+                addReference(member, ctx.getText());
             }
         }
 
     }
 
+    /**
+     * Adds a method's reference to another member, if the expression is the
+     * name of a class' member.
+     * @param member Member the method.
+     * @param exprMember String the expression, found in the method's body.
+     */
+    protected void addReference(Member member, String exprMember) {
+        logger.debug("Expression Member: " + exprMember);
+        Member nMember = new Member();
+        member.className = mainClassName;
+        member.packageName = mainPackageName;
+        nMember.name = exprMember;
+        if (membersTable.contains(nMember)) {
+            if (!member.referencedMembers.contains(exprMember)) {
+                int indx = membersTable.indexOf(nMember);
+                nMember = membersTable.get(indx);
+                if (nMember.type == MEMBER_TYPE.GETTER_SETTER) {
+                    member.referencedMembers
+                            .add(nMember.targetVariable);
+                } else {
+                    member.referencedMembers.add(nMember);
+                }
+                logger.debug("Class Member reference added: "
+                        + exprMember);
+            }
+        }
+    }
+
     /**
      * Now, that we finished analysing the class, we need to verify each found
      * method's referencies. So, we instantiate our special listener and walk
-     * each method's tree.
+     * each method's tree. If the tree was not built, the method's references
+     * were already collected while it was parsed. Methods without a body
+     * (abstract or native) reference nothing.
      * 
      * @param ctx Context the context to use.
      */
@@ -277,9 +309,13 @@ public class Lcom4Listener extends JavaBaseListener {
             if (m.type == MEMBER_TYPE.METHOD) {
                 if (checkForGetterSetter(m)) {
                     m.type = MEMBER_TYPE.GETTER_SETTER;
-                } else {
+                } else if (m.body != null) {
                     Lcom4MethodListener ml = new Lcom4MethodListener(m);
                     walker.walk(ml, m.body);
+                } else if (m.bodyReferences != null) {
+                    for (String reference : m.bodyReferences) {
+                        addReference(m, reference);
+                    }
                 }
             }
         }
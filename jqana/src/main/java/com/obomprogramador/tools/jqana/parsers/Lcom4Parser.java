@@ -20,7 +20,10 @@
 package com.obomprogramador.tools.jqana.parsers;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import com.obomprogramador.tools.jqana.antlrparser.JavaBaseListener;
 import com.obomprogramador.tools.jqana.antlrparser.JavaParser;
@@ -57,7 +60,12 @@ public class Lcom4Parser extends AbstractMetricParser {
     public JavaBaseListener getListener(JavaParser p) {
         this.metricValue.setValue(1);
         this.members = new ArrayList<Member>();
-        Lcom4Listener cl = new Lcom4Listener(members, p);
+        Lcom4Listener cl = null;
+        if (this.streaming) {
+            cl = new StreamingLcom4Listener(members, p);
+        } else {
+            cl = new Lcom4Listener(members, p);
+        }
         return cl;
     }
 
@@ -66,23 +74,57 @@ public class Lcom4Parser extends AbstractMetricParser {
         processComponents();
     }
 
+    /*
+     * (non javadoc) Methods are related if they reference each other, or
+     * share a reference to another class member. Each related method pair,
+     * with all their references, belongs to a connected component. The
+     * components are the sets of a disjoint-set of the members' ids (members
+     * with the same name have the same id), where each method is joined to
+     * the members it references. Only the sets with related methods count:
+     * the isolated methods do not belong to any component.
+     */
     private void processComponents() {
         this.measurement.setName(((Lcom4Listener) this.listener).getMainClassName());
-        List<Component> connectedComponents = new ArrayList<Component>();
-        for (Member m : members) {
+        Map<String, Integer> ids = new HashMap<String, Integer>();
+        int size = this.members.size();
+        int[] memberIds = new int[size];
+        boolean[] repeatedNames = new boolean[size];
+        for (int x = 0; x < size; x++) {
+            repeatedNames[x] = ids.containsKey(this.members.get(x).name);
+            memberIds[x] = getId(ids, this.members.get(x));
+        }
+        // References of the methods only (null for the other members):
+        int[][] references = new int[size][];
+        for (int x = 0; x < size; x++) {
+            Member m = this.members.get(x);
             if (m.type == MEMBER_TYPE.METHOD) {
-                int inx = members.indexOf(m);
-                if (inx == (members.size() - 1)) {
-                    break;
+                references[x] = getReferenceIds(ids, m);
+            }
+        }
+
+        int[] methods = new int[ids.size()];
+        int[] referrers = new int[ids.size()];
+        DisjointSet components = new DisjointSet(ids.size());
+        for (int x = 0; x < size; x++) {
+            if (references[x] != null) {
+                methods[memberIds[x]]++;
+                for (int reference : references[x]) {
+                    referrers[reference]++;
+                    components.union(memberIds[x], reference);
                 }
-                logger.debug("Analyzing method: " + m.name + " " + m.toString());
-                for (int x = inx + 1; x < members.size(); x++) {
-                    if (members.get(x).type == MEMBER_TYPE.METHOD) {
-                        logger.debug("Checking with method: "
-                                + members.get(x).name + " "
-                                + members.get(x).toString());
-                        checkMethodPair(connectedComponents, m, members.get(x));
-                    }
+            }
+        }
+
+        boolean[] counted = new boolean[ids.size()];
+        int connectedComponents = 0;
+        for (int x = 0; x < size; x++) {
+            if (references[x] != null
+                    && isRelated(memberIds[x], references[x], repeatedNames[x],
+                            methods, referrers)) {
+                int component = components.find(memberIds[x]);
+                if (!counted[component]) {
+                    counted[component] = true;
+                    connectedComponents++;
                 }
             }
         }
@@ -90,8 +132,8 @@ public class Lcom4Parser extends AbstractMetricParser {
         if (this.members.size() > 0) {
             this.measurement.setName(this.members.get(0).className);
         }
-        if (connectedComponents.size() > 0) {
-            this.metricValue.setValue(connectedComponents.size());
+        if (connectedComponents > 0) {
+            this.metricValue.setValue(connectedComponents);
         } else {
             this.metricValue.setValue(1);
         }
@@ -102,221 +144,60 @@ public class Lcom4Parser extends AbstractMetricParser {
             this.metricValue.setQtdElements(1);
         }
         updatePackageMeasurement();
-        logger.debug("Connected components: " + connectedComponents.toString());
+        logger.debug("Connected components: {}", connectedComponents);
     }
 
     /*
-     * (non javadoc) Check whether or not the pair of methods are related. If
-     * they are related, then we must add them to a logical component.
+     * (non javadoc) Whether or not a method is related to any other method:
+     * a) It references another method; b) It is referenced by another
+     * method; c) It shares a reference with another method. A method whose
+     * name was already used by a previous member is also related to itself,
+     * if it references anything.
      */
-    private void checkMethodPair(List<Component> listC, Member m, Member n) {
-
-        boolean connectedMethods = false;
-
-        // Do they call each other?
-        if (m.referencedMembers.contains(n) || n.referencedMembers.contains(m)) {
-            // YUP
-            logger.debug("Methods " + m.name + " and " + n.name
-                    + " reference each other");
-            connectedMethods = true;
-        } else {
-            // Do they share another class member?
-            List<Member> mReferences = new ArrayList<Member>(
-                    m.referencedMembers.size());
-            mReferences.addAll(m.referencedMembers);
-            mReferences.retainAll(n.referencedMembers);
-            if (mReferences.size() > 0) {
-                // YES! They share at least one class member
-                logger.debug("Methods " + m.name + " and " + n.name
-                        + " share a common reference");
-                connectedMethods = true;
+    private boolean isRelated(int id, int[] references, boolean repeatedName,
+            int[] methods, int[] referrers) {
+        boolean selfReference = Arrays.binarySearch(references, id) >= 0;
+        if (referrers[id] > (selfReference ? 1 : 0)) {
+            return true;
+        }
+        if (references.length > 0 && repeatedName) {
+            return true;
+        }
+        for (int reference : references) {
+            if (methods[reference] > (reference == id ? 1 : 0)
+                    || referrers[reference] > 1) {
+                return true;
             }
         }
-
-        if (connectedMethods) {
-            logger.debug("Related method pair: " + m.name + " and: " + n.name);
-            verifyComponent(listC, m, n);
-        }
+        return false;
     }
 
-    /*
-     * (non javadoc) This method must add the related method pair to a logical
-     * component. First, the method tries to find a Component related to any of
-     * methods. If such a Component is found, then the method pair and all their
-     * references are added as members of the component.
-     * 
-     * Three situations can happen:
-     * 
-     * a) A suitable component is found, so the method pair and their references
-     * are added to it. b) No suitable component is found, then we need to
-     * create a new one. c) More than one suitable component is found, then we
-     * need to consolidate them in one new component and add the method pair and
-     * all their references to it.
-     */
-    private void verifyComponent(List<Component> listC, Member m, Member n) {
-        List<Component> listComponentsFound = new ArrayList<Component>();
-
-        // Let's see if there is already a component to add them
-        for (Component c : listC) {
-            checkExists(listC, listComponentsFound, m, n);
-        }
-
-        if (listComponentsFound.size() == 0) {
-            // No component found... Let's create a new one
-            Component component = new Component();
-            component.members = new ArrayList<Member>();
-            listC.add(component);
-            addToComponent(component, m, n);
-            logger.debug("Creating new Component: " + component);
-        } else if (listComponentsFound.size() == 1) {
-            // One component found... Let's add them to it
-            Component component = listComponentsFound.get(0);
-            addToComponent(component, m, n);
-            logger.debug("Adding to Component: " + component);
-        } else {
-            // Hmmm... Many components found... Let's consolidate them
-            consolidateComponents(listC, listComponentsFound, m, n);
-            logger.debug("Consolidating Component...");
+    private int getId(Map<String, Integer> ids, Member m) {
+        Integer id = ids.get(m.name);
+        if (id == null) {
+            id = ids.size();
+            ids.put(m.name, id);
         }
+        return id;
     }
 
     /*
-     * (non javadoc) We need to create a new component, containing all the other
-     * components' members and the method pair members (including references).
+     * (non javadoc) The ids of the members referenced by a method, sorted and
+     * without repetitions.
      */
-    private void consolidateComponents(List<Component> listC,
-            List<Component> listComponentsFound, Member m, Member n) {
-        Component consolidated = new Component();
-        consolidated.members = new ArrayList<Member>();
-        for (Component duplicate : listComponentsFound) {
-            addMembers(consolidated, duplicate.members);
-            listC.remove(duplicate);
-            logger.debug("     Adding to Consolidate component: " + duplicate);
-        }
-        addToComponent(consolidated, m, n);
-        listC.add(consolidated);
-    }
-
-    private void addToComponent(Component component, Member m, Member n) {
-        List<Member> members2add = new ArrayList<Member>(2
-                + m.referencedMembers.size() + n.referencedMembers.size());
-        members2add.add(m);
-        members2add.add(n);
-        members2add.addAll(m.referencedMembers);
-        members2add.addAll(n.referencedMembers);
-        addMembers(component, members2add);
-    }
-
-    private void addMembers(Component component, List<Member> members2add) {
-        if (members2add != null) {
-            for (Member cMember : members2add) {
-                if (!component.members.contains(cMember)) {
-                    component.members.add(cMember);
-                }
+    private int[] getReferenceIds(Map<String, Integer> ids, Member m) {
+        int[] references = new int[m.referencedMembers.size()];
+        for (int x = 0; x < references.length; x++) {
+            references[x] = getId(ids, m.referencedMembers.get(x));
+        }
+        Arrays.sort(references);
+        int count = 0;
+        for (int x = 0; x < references.length; x++) {
+            if (count == 0 || references[x] != references[count - 1]) {
+                references[count++] = references[x];
             }
         }
-    }
-
-
-
-    /*
-     * (non javadoc) Verify if the method pair is already referenced in any
-     * Component, adding the Component to the list of components where the
-     * method pair was found. The method pair is considered as referenced by a
-     * component if any of three situations happen: a) Any of the pair's methods
-     * exists as members of the component; b) Any referenced class member of any
-     * of the pair's methods exists as members of the component; c) Any
-     * referenced class member of any of the pair's methods exists as references
-     * of any members of the component;
-     */
-    private void checkExists(List<Component> listC,
-            List<Component> listComponentsFound, Member m, Member n) {
-        Component found = null;
-        for (Component c : listC) {
-            if (c.members.contains(m) || c.members.contains(n)) {
-                found = c;
-                listComponentsFound.add(c);
-            } else {
-
-                /*
-                 * If we do not find the method pair in a component, two
-                 * situations can happen: 1) Their references may be members of
-                 * the component, so, we consider this component as found; 2)
-                 * Their references may be present in the references of the
-                 * component's member, so, we consider this component as found.
-                 */
-                List<Member> combinedRefs = new ArrayList<Member>(
-                        m.referencedMembers.size() + n.referencedMembers.size());
-                combinedRefs.addAll(m.referencedMembers);
-                combinedRefs.addAll(n.referencedMembers);
-                if (refsAreMembers(c.members, combinedRefs)) {
-                    found = c;
-                    listComponentsFound.add(c);
-                } else {
-                    // Well, now, we have to check if any of the method pair's
-                    // references exists as references of any member of this
-                    // component
-                    if (refsAreRefs(c.members, combinedRefs)) {
-                        found = c;
-                        listComponentsFound.add(c);
-                    }
-
-                }
-
-            }
-        }
-
-    }
-
-    private boolean refsAreRefs(List<Member> componentMembers,
-            List<Member> combinedRefs) {
-        boolean returnCode = false;
-        for (Member m : componentMembers) {
-            if (refsAreMembers(m.referencedMembers, combinedRefs)) {
-                returnCode = true;
-                break;
-            }
-        }
-        return returnCode;
-    }
-
-    private boolean refsAreMembers(List<Member> originalMembers,
-            List<Member> referencedMembers) {
-        boolean returnCode = false;
-        List<Member> testList = new ArrayList<Member>(originalMembers.size());
-        testList.addAll(originalMembers);
-        testList.retainAll(referencedMembers);
-        if (testList.size() > 0) {
-            returnCode = true;
-        }
-        return returnCode;
-    }
-
-    /**
-     * This class aggregates a component. 
-     * @author Cleuton Sampaio
-     *
-     */
-    class Component {
-        
-        List<Member> members;
-
-        /**
-         * Object to string.
-         * @return String the textual representation.
-         */
-        @Override
-        public String toString() {
-            String conector = "";
-            String saida = "[Component: ";
-            for (Member m : members) {
-                saida += conector + m.name;
-                conector = "; ";
-            }
-            saida += " ***]";
-            return saida;
-        }
-
+        return Arrays.copyOf(references, count);
     }
 
     @Override
@@ -0,0 +1,169 @@
+/**
+ * jQana - Open Source Java(TM) code quality analyzer.
+ * 
+ * Copyright 2013 Cleuton Sampaio de Melo Jr
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * Project website: http://www.jqana.com
+ */
+package com.obomprogramador.tools.jqana.parsers;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.antlr.v4.runtime.ANTLRInputStream;
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.Token;
+
+import com.obomprogramador.tools.jqana.antlrparser.JavaLexer;
+import com.obomprogramador.tools.jqana.context.Context;
+import com.obomprogramador.tools.jqana.model.Measurement;
+import com.obomprogramador.tools.jqana.model.Measurement.MEASUREMENT_TYPE;
+import com.obomprogramador.tools.jqana.model.defaultimpl.MetricValue;
+
+/**
+ * Parser used to calculate cyclomatic complexity only with the lexer: the
+ * tokens are parsed by CycloTokenScanner, a hand-written parser, instead of
+ * the ANTLR4 parser, and no parse tree is built. It is much cheaper than
+ * CyclomaticComplexityParser, and its measurements have the same structure
+ * (one per class and method). The results can be compared with
+ * "compare()".
+ * 
+ * @see CycloTokenScanner
+ * @author Cleuton Sampaio
+ * 
+ */
+public class LexerCyclomaticComplexityParser extends
+        CyclomaticComplexityParser {
+
+    /**
+     * Constructor with fields.
+     * @param packageMeasurement Measurement the package's measurement.
+     * @param context Context the context to use.
+     */
+    public LexerCyclomaticComplexityParser(Measurement packageMeasurement,
+            Context context) {
+        super(packageMeasurement, context);
+    }
+
+    @Override
+    public Measurement parse(String compiledClassPath, String sourceCode) {
+        return parse(new ANTLRInputStream(sourceCode));
+    }
+
+    /**
+     * Calculates the cyclomatic complexity of an already loaded source code.
+     * @param source CharStream the source code to analyze. It is read from
+     * the beginning.
+     * @return Measurement the class measurement.
+     */
+    public Measurement parse(CharStream source) {
+        startMeasurement();
+        try {
+            CycloTokenScanner scanner = new CycloTokenScanner(this.metric,
+                    this.measurement);
+            scanner.setMethodDetail(
+                    this.detailLevel == MEASUREMENT_TYPE.METHOD_MEASUREMENT);
+            scanner.scan(getTokens(source));
+            finishMeasurement();
+        } catch (Exception e) {
+            registerError(e);
+        }
+        return this.measurement;
+    }
+
+    /**
+     * Runs the lexer over a source code.
+     * @param source CharStream the source code. It is read from the
+     * beginning.
+     * @return List<Token> the tokens of the default channel.
+     */
+    public static List<Token> getTokens(CharStream source) {
+        source.seek(0);
+        JavaLexer lexer = new JavaLexer(source);
+        List<Token> tokens = new ArrayList<Token>();
+        for (Token token = lexer.nextToken(); token.getType() != Token.EOF; token = lexer
+                .nextToken()) {
+            if (token.getChannel() == Token.DEFAULT_CHANNEL) {
+                tokens.add(token);
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * Compares two cyclomatic complexity measurements of the same source
+     * file, and their inner measurements (names, values and violations).
+     * @param expected Measurement the measurement of the parse tree's
+     * listener.
+     * @param actual Measurement the measurement of this parser.
+     * @param metricName String the cyclomatic complexity's metric name.
+     * @return List<String> the differences. It is empty if they are equal.
+     */
+    public static List<String> compare(Measurement expected,
+            Measurement actual, String metricName) {
+        List<String> differences = new ArrayList<String>();
+        compare(expected, actual, metricName, String.valueOf(expected
+                .getName()), differences);
+        return differences;
+    }
+
+    private static void compare(Measurement expected, Measurement actual,
+            String metricName, String path, List<String> differences) {
+        if (!String.valueOf(expected.getName()).equals(
+                String.valueOf(actual.getName()))) {
+            differences.add(path + ": name " + actual.getName()
+                    + ", expected " + expected.getName());
+            return;
+        }
+        MetricValue expectedMv = getMetricValue(expected, metricName);
+        MetricValue actualMv = getMetricValue(actual, metricName);
+        if (expectedMv == null || actualMv == null) {
+            if (expectedMv != actualMv) {
+                differences.add(path + ": metric value missing");
+            }
+        } else if (expectedMv.getValue() != actualMv.getValue()
+                || expectedMv.getQtdElements() != actualMv.getQtdElements()
+                || expectedMv.isViolated() != actualMv.isViolated()) {
+            differences.add(path + ": " + actualMv.getValue() + "/"
+                    + actualMv.getQtdElements() + " violated "
+                    + actualMv.isViolated() + ", expected "
+                    + expectedMv.getValue() + "/"
+                    + expectedMv.getQtdElements() + " violated "
+                    + expectedMv.isViolated());
+        }
+        List<Measurement> expectedInner = expected.getInnerMeasurements();
+        List<Measurement> actualInner = actual.getInnerMeasurements();
+        if (expectedInner.size() != actualInner.size()) {
+            differences.add(path + ": " + actualInner.size()
+                    + " inner measurements, expected "
+                    + expectedInner.size());
+            return;
+        }
+        for (int x = 0; x < expectedInner.size(); x++) {
+            compare(expectedInner.get(x), actualInner.get(x), metricName, path
+                    + "/" + expectedInner.get(x).getName(), differences);
+        }
+    }
+
+    private static MetricValue getMetricValue(Measurement m, String metricName) {
+        for (MetricValue mv : m.getMetricValues()) {
+            if (metricName.equals(mv.getName())) {
+                return mv;
+            }
+        }
+        return null;
+    }
+
+}
@@ -21,6 +21,7 @@ package com.obomprogramador.tools.jqana.parsers;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
 
 import org.antlr.v4.runtime.tree.ParseTree;
 
@@ -50,6 +51,7 @@ public class Member implements Comparable<Member> {
     public Member targetVariable;
     public List<Member> referencedMembers = new ArrayList<Member>();
     public ParseTree body;
+    public Set<String> bodyReferences;
 
     @Override
     public int hashCode() {
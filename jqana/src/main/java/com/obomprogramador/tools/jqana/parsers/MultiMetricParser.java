@@ -0,0 +1,203 @@
+/**
+ * jQana - Open Source Java(TM) code quality analyzer.
+ * 
+ * Copyright 2013 Cleuton Sampaio de Melo Jr
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * Project website: http://www.jqana.com
+ */
+package com.obomprogramador.tools.jqana.parsers;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.antlr.v4.runtime.ANTLRInputStream;
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.UnbufferedCharStream;
+import org.antlr.v4.runtime.tree.ParseTree;
+import org.antlr.v4.runtime.tree.ParseTreeListener;
+import org.antlr.v4.runtime.tree.ParseTreeWalker;
+
+import com.obomprogramador.tools.jqana.antlrparser.JavaParser;
+import com.obomprogramador.tools.jqana.model.AbstractMetricParser;
+import com.obomprogramador.tools.jqana.model.Measurement;
+import com.obomprogramador.tools.jqana.model.Parser;
+
+/**
+ * This is a composite Parser, that calculates several source code metrics at
+ * once. The source file is lexed and parsed only once, and the listeners of
+ * all parsers are driven over the same parse tree, in a single
+ * ParseTreeWalker pass.
+ * 
+ * After the walk, each parser finishes its measurement, in the same order
+ * they were informed. So, the package's measurement is updated exactly as if
+ * each parser had been invoked separately.
+ * 
+ * In streaming mode, the listeners are attached to the parser, instead of
+ * walking a parse tree, which is not built. An unbuffered source (see
+ * UnbufferedCharStream) is only parsed in streaming mode, and its tokens are
+ * unbuffered too, so, very large files are parsed with bounded memory.
+ * 
+ * @author Cleuton Sampaio
+ * 
+ */
+public class MultiMetricParser implements Parser {
+
+    protected List<AbstractMetricParser> parsers;
+    protected ParsingStatistics parsingStatistics;
+    protected boolean streaming;
+
+    /**
+     * Constructor with fields.
+     * @param parsers List<AbstractMetricParser> the metric parsers to drive.
+     */
+    public MultiMetricParser(List<AbstractMetricParser> parsers) {
+        if (parsers == null || parsers.isEmpty()) {
+            throw new IllegalArgumentException(
+                    "At least one metric parser is needed.");
+        }
+        this.parsers = parsers;
+    }
+
+    /**
+     * Setter for the parsing counters of the current run.
+     * @param parsingStatistics ParsingStatistics the counters, or null.
+     */
+    public void setParsingStatistics(ParsingStatistics parsingStatistics) {
+        this.parsingStatistics = parsingStatistics;
+    }
+
+    /**
+     * Setter for the streaming mode, of this parser and of all metric
+     * parsers.
+     * @param streaming boolean do not build the parse tree.
+     */
+    public void setStreaming(boolean streaming) {
+        this.streaming = streaming;
+        for (AbstractMetricParser parser : this.parsers) {
+            parser.setStreaming(streaming);
+        }
+    }
+
+    @Override
+    public String getParserName() {
+        StringBuilder name = new StringBuilder();
+        for (AbstractMetricParser parser : this.parsers) {
+            if (name.length() > 0) {
+                name.append(", ");
+            }
+            name.append(parser.getParserName());
+        }
+        return name.toString();
+    }
+
+    /**
+     * Parses the source code, calculating all metrics.
+     * @param compiledName String not used.
+     * @param sourceCode String the source code to analyze.
+     * @return Measurement the class measurement of the first parser.
+     */
+    @Override
+    public Measurement parse(String compiledName, String sourceCode) {
+        return parse(new ANTLRInputStream(sourceCode));
+    }
+
+    /**
+     * Parses an already loaded source code, calculating all metrics.
+     * @param source CharStream the source code to analyze.
+     * @return Measurement the class measurement of the first parser.
+     */
+    public Measurement parse(CharStream source) {
+        boolean unbuffered = source instanceof UnbufferedCharStream;
+        if (unbuffered && !this.streaming) {
+            throw new IllegalStateException(
+                    "An unbuffered source can only be parsed in streaming mode.");
+        }
+        Listeners listeners = new Listeners();
+        for (AbstractMetricParser parser : this.parsers) {
+            parser.startMeasurement();
+        }
+        try {
+            JavaParser p = null;
+            if (unbuffered) {
+                p = JavaParserPool.getUnbufferedParser(source);
+            } else {
+                p = JavaParserPool.getParser(source);
+            }
+            if (this.streaming) {
+                AbstractMetricParser.parseCompilationUnit(p,
+                        this.parsingStatistics, listeners);
+            } else {
+                ParseTree tree = AbstractMetricParser.parseCompilationUnit(p,
+                        this.parsingStatistics);
+                ParseTreeWalker walker = new ParseTreeWalker();
+                walker.walk(listeners.newListener(p), tree);
+            }
+        } catch (Exception e) {
+            for (AbstractMetricParser parser : this.parsers) {
+                parser.registerError(e);
+            }
+            listeners.walking.clear();
+        }
+
+        List<AbstractMetricParser> walking = listeners.walking;
+        for (int x = 0; x < walking.size(); x++) {
+            AbstractMetricParser parser = walking.get(x);
+            if (listeners.composite.getFailure(x) != null) {
+                parser.registerError(listeners.composite.getFailure(x));
+            } else {
+                try {
+                    parser.finishMeasurement();
+                } catch (Exception e) {
+                    parser.registerError(e);
+                }
+            }
+        }
+        return this.parsers.get(0).getMeasurement();
+    }
+
+    /*
+     * (non javadoc) Creates the composite listener, with the listeners of all
+     * metric parsers. If the parser retries a file (full LL stage), the
+     * measurements are restarted and a new composite is created.
+     */
+    private class Listeners implements ParseListenerFactory {
+
+        private CompositeListener composite = new CompositeListener();
+        private List<AbstractMetricParser> walking = new ArrayList<AbstractMetricParser>();
+        private boolean restart;
+
+        @Override
+        public ParseTreeListener newListener(JavaParser p) {
+            if (this.restart) {
+                for (AbstractMetricParser parser : parsers) {
+                    parser.startMeasurement();
+                }
+            }
+            this.restart = true;
+            this.composite = new CompositeListener();
+            this.walking = new ArrayList<AbstractMetricParser>();
+            for (AbstractMetricParser parser : parsers) {
+                try {
+                    this.composite.addListener(parser.createListener(p));
+                    this.walking.add(parser);
+                } catch (Exception e) {
+                    parser.registerError(e);
+                }
+            }
+            return this.composite;
+        }
+    }
+
+}
@@ -0,0 +1,44 @@
+/**
+ * jQana - Open Source Java(TM) code quality analyzer.
+ * 
+ * Copyright 2013 Cleuton Sampaio de Melo Jr
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * Project website: http://www.jqana.com
+ */
+package com.obomprogramador.tools.jqana.parsers;
+
+import org.antlr.v4.runtime.tree.ParseTreeListener;
+
+import com.obomprogramador.tools.jqana.antlrparser.JavaParser;
+
+/**
+ * Creates the listeners that get the parser's events while a source file is
+ * parsed, without a parse tree. A new listener is needed whenever the file
+ * is parsed again (for example: by the full LL stage), because the previous
+ * one has already seen part of the file.
+ * 
+ * @author Cleuton Sampaio
+ * 
+ */
+public interface ParseListenerFactory {
+
+    /**
+     * Creates a listener, with a new measurement.
+     * @param p JavaParser the parser that will send the events.
+     * @return ParseTreeListener the listener.
+     */
+    ParseTreeListener newListener(JavaParser p);
+
+}
@@ -0,0 +1,87 @@
+/**
+ * jQana - Open Source Java(TM) code quality analyzer.
+ * 
+ * Copyright 2013 Cleuton Sampaio de Melo Jr
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * Project website: http://www.jqana.com
+ */
+package com.obomprogramador.tools.jqana.parsers;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Per-run counters of the two-stage parsing. Each source file is first
+ * parsed with the fast SLL prediction mode, which bails out at the first
+ * syntax error; only the files that fail are parsed again, with full LL
+ * prediction. It is safe to use these counters from several threads.
+ * 
+ * If a decision profiler is informed, the parsers' decisions are profiled
+ * too (see DecisionProfiler), which makes parsing slower.
+ * 
+ * @author Cleuton Sampaio
+ * 
+ */
+public class ParsingStatistics {
+
+    private AtomicInteger parsedFiles = new AtomicInteger();
+    private AtomicInteger llFallbacks = new AtomicInteger();
+    private DecisionProfiler decisionProfiler;
+
+    /**
+     * Counts a parsed file.
+     * @param llFallback boolean true if the file needed the full LL parsing.
+     */
+    public void count(boolean llFallback) {
+        this.parsedFiles.incrementAndGet();
+        if (llFallback) {
+            this.llFallbacks.incrementAndGet();
+        }
+    }
+
+    /**
+     * Number of parsed files.
+     * @return int the number of files.
+     */
+    public int getParsedFiles() {
+        return this.parsedFiles.get();
+    }
+
+    /**
+     * Number of files that failed the SLL parsing and were parsed again with
+     * full LL prediction.
+     * @return int the number of files.
+     */
+    public int getLlFallbacks() {
+        return this.llFallbacks.get();
+    }
+
+    /**
+     * Getter for the decision profiler.
+     * @return DecisionProfiler the profiler, or null, if the decisions are
+     * not profiled.
+     */
+    public DecisionProfiler getDecisionProfiler() {
+        return decisionProfiler;
+    }
+
+    /**
+     * Setter for the decision profiler.
+     * @param decisionProfiler DecisionProfiler the profiler, or null.
+     */
+    public void setDecisionProfiler(DecisionProfiler decisionProfiler) {
+        this.decisionProfiler = decisionProfiler;
+    }
+
+}
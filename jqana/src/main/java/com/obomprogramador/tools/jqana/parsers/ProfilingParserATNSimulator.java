@@ -0,0 +1,172 @@
+/**
+ * jQana - Open Source Java(TM) code quality analyzer.
+ * 
+ * Copyright 2013 Cleuton Sampaio de Melo Jr
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * Project website: http://www.jqana.com
+ */
+package com.obomprogramador.tools.jqana.parsers;
+
+import java.util.BitSet;
+
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.TokenStream;
+import org.antlr.v4.runtime.atn.ATNConfigSet;
+import org.antlr.v4.runtime.atn.ParserATNSimulator;
+import org.antlr.v4.runtime.dfa.DFA;
+import org.antlr.v4.runtime.dfa.DFAState;
+
+import com.obomprogramador.tools.jqana.antlrparser.JavaParser;
+
+/**
+ * A ParserATNSimulator (ANTLR4) that collects the statistics of each parser
+ * decision, while the source file is parsed. ANTLR 4.1 has no profiling
+ * simulator, so, the prediction is timed here, and the lookahead is the
+ * farthest token reached by the SLL (DFA) and the full LL steps of each
+ * prediction.
+ * 
+ * It uses the same ATN, DFA and context cache of the parser's simulator. It
+ * is not thread safe: each parser gets its own instance.
+ * 
+ * @author Cleuton Sampaio
+ * 
+ */
+public class ProfilingParserATNSimulator extends ParserATNSimulator {
+
+    private DecisionStatistics[] decisions;
+    private int sllStopIndex;
+    private int llStopIndex;
+
+    /**
+     * Constructor with fields.
+     * @param parser JavaParser the parser.
+     * @param simulator ParserATNSimulator the parser's current simulator,
+     * whose ATN, DFA and context cache are shared.
+     */
+    public ProfilingParserATNSimulator(JavaParser parser,
+            ParserATNSimulator simulator) {
+        super(parser, simulator.atn, simulator.decisionToDFA, simulator
+                .getSharedContextCache());
+        this.decisions = new DecisionStatistics[this.atn
+                .getNumberOfDecisions()];
+    }
+
+    /**
+     * Replaces the parser's simulator by a profiling one, unless it is
+     * already profiling.
+     * @param parser JavaParser the parser.
+     * @return ProfilingParserATNSimulator the parser's simulator.
+     */
+    public static ProfilingParserATNSimulator install(JavaParser parser) {
+        ParserATNSimulator simulator = parser.getInterpreter();
+        if (simulator instanceof ProfilingParserATNSimulator) {
+            return (ProfilingParserATNSimulator) simulator;
+        }
+        ProfilingParserATNSimulator profiling = new ProfilingParserATNSimulator(
+                parser, simulator);
+        profiling.setPredictionMode(simulator.getPredictionMode());
+        parser.setInterpreter(profiling);
+        return profiling;
+    }
+
+    /**
+     * Returns the statistics collected since the last call, and starts new
+     * ones.
+     * @return DecisionStatistics[] the statistics, indexed by decision
+     * number. Decisions that were not used are null.
+     */
+    public DecisionStatistics[] takeDecisions() {
+        DecisionStatistics[] taken = this.decisions;
+        this.decisions = new DecisionStatistics[taken.length];
+        return taken;
+    }
+
+    @Override
+    public int adaptivePredict(TokenStream input, int decision,
+            ParserRuleContext outerContext) {
+        int startIndex = input.index();
+        this.sllStopIndex = -1;
+        this.llStopIndex = -1;
+        long start = System.nanoTime();
+        try {
+            return super.adaptivePredict(input, decision, outerContext);
+        } finally {
+            long nanos = System.nanoTime() - start;
+            int sllLook = 0;
+            if (this.sllStopIndex >= 0) {
+                sllLook = this.sllStopIndex - startIndex + 1;
+            }
+            int llLook = 0;
+            if (this.llStopIndex >= 0) {
+                llLook = this.llStopIndex - startIndex + 1;
+            }
+            getDecision(decision).countPrediction(nanos, sllLook, llLook);
+        }
+    }
+
+    @Override
+    protected DFAState getExistingTargetState(DFAState previousD, int t) {
+        this.sllStopIndex = Math.max(this.sllStopIndex, this._input.index());
+        return super.getExistingTargetState(previousD, t);
+    }
+
+    @Override
+    protected ATNConfigSet computeReachSet(ATNConfigSet closure, int t,
+            boolean fullCtx) {
+        if (fullCtx) {
+            this.llStopIndex = Math.max(this.llStopIndex, this._input.index());
+        } else {
+            this.sllStopIndex = Math
+                    .max(this.sllStopIndex, this._input.index());
+        }
+        return super.computeReachSet(closure, t, fullCtx);
+    }
+
+    @Override
+    protected void reportAttemptingFullContext(DFA dfa,
+            BitSet conflictingAlts, ATNConfigSet configs, int startIndex,
+            int stopIndex) {
+        getDecision(dfa.decision).countLlFallback();
+        super.reportAttemptingFullContext(dfa, conflictingAlts, configs,
+                startIndex, stopIndex);
+    }
+
+    @Override
+    protected void reportContextSensitivity(DFA dfa, int prediction,
+            ATNConfigSet configs, int startIndex, int stopIndex) {
+        getDecision(dfa.decision).countContextSensitivity();
+        super.reportContextSensitivity(dfa, prediction, configs, startIndex,
+                stopIndex);
+    }
+
+    @Override
+    protected void reportAmbiguity(DFA dfa, DFAState D, int startIndex,
+            int stopIndex, boolean exact, BitSet ambigAlts,
+            ATNConfigSet configs) {
+        getDecision(dfa.decision).countAmbiguity();
+        super.reportAmbiguity(dfa, D, startIndex, stopIndex, exact,
+                ambigAlts, configs);
+    }
+
+    private DecisionStatistics getDecision(int decision) {
+        DecisionStatistics statistics = this.decisions[decision];
+        if (statistics == null) {
+            statistics = new DecisionStatistics(decision);
+            this.decisions[decision] = statistics;
+        }
+        return statistics;
+    }
+
+}
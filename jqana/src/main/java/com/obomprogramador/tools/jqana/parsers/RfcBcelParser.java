@@ -1,5 +1,7 @@
 package com.obomprogramador.tools.jqana.parsers;
 
+import java.io.IOException;
+
 import org.apache.bcel.classfile.ClassParser;
 import org.apache.bcel.classfile.ConstantMethodref;
 import org.apache.bcel.classfile.ConstantNameAndType;
@@ -27,6 +29,8 @@ import com.obomprogramador.tools.jqana.model.defaultimpl.MetricValue;
  */
 public class RfcBcelParser extends AbstractMetricParser {
 
+    protected JavaClassCache javaClassCache;
+
     /**
      * Constructor with parameters.
      * @param packageMeasurement Measurement the package's measurement.
@@ -37,6 +41,15 @@ public class RfcBcelParser extends AbstractMetricParser {
         this.context = context;
     }
 
+    /**
+     * Setter for the class model cache. If there is no cache, the class file
+     * is always parsed.
+     * @param javaClassCache JavaClassCache the cache of the current run.
+     */
+    public void setJavaClassCache(JavaClassCache javaClassCache) {
+        this.javaClassCache = javaClassCache;
+    }
+
     @Override
     public Measurement parse(String compiledClassPath, String sourceCode) {
         this.measurement = new Measurement();
@@ -45,8 +58,7 @@ public class RfcBcelParser extends AbstractMetricParser {
         this.metricValue.setName(this.metric.getMetricName());
         this.measurement.getMetricValues().add(this.metricValue);
         try {
-            ClassParser cParser = new ClassParser(compiledClassPath);
-            JavaClass javaClass = cParser.parse();
+            JavaClass javaClass = getJavaClass(compiledClassPath);
             this.measurement.setName(getClassNameFromJavaClass(javaClass));
             RfcVisitor visitor = new RfcVisitor(javaClass);
             DescendingVisitor classWalker = new DescendingVisitor(javaClass,
@@ -68,6 +80,18 @@ public class RfcBcelParser extends AbstractMetricParser {
         return measurement;
     }
 
+    protected JavaClass getJavaClass(String compiledClassPath)
+            throws IOException {
+        JavaClass javaClass = null;
+        if (this.javaClassCache != null) {
+            javaClass = this.javaClassCache.getJavaClass(compiledClassPath);
+        } else {
+            ClassParser cParser = new ClassParser(compiledClassPath);
+            javaClass = cParser.parse();
+        }
+        return javaClass;
+    }
+
     protected String getClassNameFromJavaClass(JavaClass javaClass) {
         String className = javaClass.getClassName();
         int pos = className.lastIndexOf('.');
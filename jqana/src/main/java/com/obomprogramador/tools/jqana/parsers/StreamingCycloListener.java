@@ -0,0 +1,189 @@
+/**
+ * jQana - Open Source Java(TM) code quality analyzer.
+ * 
+ * Copyright 2013 Cleuton Sampaio de Melo Jr
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * Project website: http://www.jqana.com
+ */
+package com.obomprogramador.tools.jqana.parsers;
+
+import java.util.Arrays;
+
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.misc.NotNull;
+import org.antlr.v4.runtime.tree.ErrorNode;
+import org.antlr.v4.runtime.tree.TerminalNode;
+
+import com.obomprogramador.tools.jqana.antlrparser.JavaParser;
+import com.obomprogramador.tools.jqana.antlrparser.JavaParser.ClassDeclarationContext;
+import com.obomprogramador.tools.jqana.antlrparser.JavaParser.ExpressionContext;
+import com.obomprogramador.tools.jqana.antlrparser.JavaParser.MethodDeclarationContext;
+import com.obomprogramador.tools.jqana.model.Measurement;
+import com.obomprogramador.tools.jqana.model.Metric;
+import com.obomprogramador.tools.jqana.model.defaultimpl.GetClassNameFromContext;
+
+/**
+ * A CycloListener that is attached to the parser (as a parse listener), and
+ * calculates Cyclomatic Complexity while the source file is parsed, without
+ * a parse tree.
+ * 
+ * When a rule is entered, its children are not known yet, so, names are read
+ * from the token stream. Expressions are checked when they exit: only the
+ * outermost expressions are checked, as their text contains the text of their
+ * sub expressions. Their text is recorded from the consumed tokens, so, the
+ * token stream may be unbuffered.
+ * 
+ * Expressions are left recursive: when an operator is found, the expression
+ * parsed so far exits, and a new expression, starting at the same token,
+ * replaces it. So, the outermost expression is kept pending until the next
+ * rule event, and it is discarded if it was replaced.
+ * 
+ * The tree walk enters the replacing expression before the replaced one, so,
+ * an expression is covered as it would be in the tree walk: classes and
+ * methods (those of anonymous classes too) start new scopes, and the
+ * expressions entered in a previous scope do not cover the expressions that
+ * follow.
+ * 
+ * @author Cleuton Sampaio
+ * 
+ */
+public class StreamingCycloListener extends CycloListener {
+
+    private JavaParser parser;
+    private static final int INITIAL_DEPTH = 16;
+    private ExpressionContext pending;
+    private String pendingText;
+    private TokenTextRecorder texts = new TokenTextRecorder();
+    private int scope;
+    private int[] openScopes = new int[INITIAL_DEPTH];
+    private boolean[] openOutermost = new boolean[INITIAL_DEPTH];
+    private int openExpressions;
+    private ExpressionContext exited;
+    private int exitedScope;
+    private boolean exitedOutermost;
+
+    /**
+     * Constructor with fields.
+     * @param metric Metric the metric being used for analysis.
+     * @param measurement Measurement the class' measurement to fill.
+     * @param parser JavaParser the parser that sends the events.
+     */
+    public StreamingCycloListener(Metric metric, Measurement measurement,
+            JavaParser parser) {
+        super(metric, measurement, parser);
+        this.parser = parser;
+    }
+
+    @Override
+    public void enterClassDeclaration(@NotNull ClassDeclarationContext ctx) {
+        enterClass(GetClassNameFromContext.getClassName(this.parser
+                .getTokenStream()));
+    }
+
+    @Override
+    public void enterMethodDeclaration(@NotNull MethodDeclarationContext ctx) {
+        enterMethod(GetClassNameFromContext.getMethodName(this.parser
+                .getTokenStream()));
+    }
+
+    @Override
+    public void enterExpression(@NotNull ExpressionContext ctx) {
+        int expressionScope = this.scope;
+        boolean outermost;
+        if (this.exited != null && this.exited.parent == ctx) {
+            // It replaces the expression that exited, in its scope, and the
+            // replaced expression's text goes on
+            expressionScope = this.exitedScope;
+            outermost = this.exitedOutermost;
+            if (expressionScope == this.scope) {
+                coverExpression();
+            }
+        } else {
+            outermost = coverExpression();
+            if (outermost) {
+                this.texts.start();
+            }
+        }
+        if (this.openExpressions == this.openScopes.length) {
+            this.openScopes = Arrays.copyOf(this.openScopes,
+                    this.openExpressions * 2);
+            this.openOutermost = Arrays.copyOf(this.openOutermost,
+                    this.openExpressions * 2);
+        }
+        this.openScopes[this.openExpressions] = expressionScope;
+        this.openOutermost[this.openExpressions++] = outermost;
+    }
+
+    @Override
+    public void exitExpression(@NotNull ExpressionContext ctx) {
+        this.exited = ctx;
+        this.exitedScope = this.openScopes[--this.openExpressions];
+        this.exitedOutermost = this.openOutermost[this.openExpressions];
+        if (this.exitedScope == this.scope) {
+            uncoverExpression();
+        }
+        if (this.exitedOutermost) {
+            this.pending = ctx;
+            this.pendingText = this.texts.getText();
+        }
+    }
+
+    @Override
+    protected void newExpressionScope() {
+        super.newExpressionScope();
+        this.scope++;
+    }
+
+    @Override
+    public void visitTerminal(@NotNull TerminalNode node) {
+        this.texts.append(node.getSymbol());
+    }
+
+    @Override
+    public void visitErrorNode(@NotNull ErrorNode node) {
+        this.texts.append(node.getSymbol());
+    }
+
+    @Override
+    public void enterEveryRule(@NotNull ParserRuleContext ctx) {
+        if (this.pending != null) {
+            if (this.pending.parent == ctx) {
+                // The pending expression is the left operand of this one
+                this.pending = null;
+            } else {
+                checkPending();
+            }
+        }
+    }
+
+    @Override
+    public void exitEveryRule(@NotNull ParserRuleContext ctx) {
+        if (this.pending != null && ctx != this.pending) {
+            checkPending();
+        }
+    }
+
+    /*
+     * (non javadoc) Checks the pending expression, which is complete.
+     */
+    private void checkPending() {
+        this.pending = null;
+        this.texts.stop();
+        if (this.pendingText.length() > 0) {
+            expressionEntered(this.pendingText);
+        }
+    }
+
+}
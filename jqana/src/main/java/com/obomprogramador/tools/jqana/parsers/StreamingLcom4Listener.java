@@ -0,0 +1,179 @@
+/**
+ * jQana - Open Source Java(TM) code quality analyzer.
+ * 
+ * Copyright 2013 Cleuton Sampaio de Melo Jr
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * Project website: http://www.jqana.com
+ */
+package com.obomprogramador.tools.jqana.parsers;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+import org.antlr.v4.runtime.misc.NotNull;
+import org.antlr.v4.runtime.tree.ErrorNode;
+import org.antlr.v4.runtime.tree.TerminalNode;
+
+import com.obomprogramador.tools.jqana.antlrparser.JavaParser;
+import com.obomprogramador.tools.jqana.antlrparser.JavaParser.AnnotationContext;
+import com.obomprogramador.tools.jqana.antlrparser.JavaParser.ClassDeclarationContext;
+import com.obomprogramador.tools.jqana.antlrparser.JavaParser.FieldDeclarationContext;
+import com.obomprogramador.tools.jqana.antlrparser.JavaParser.MethodBodyContext;
+import com.obomprogramador.tools.jqana.antlrparser.JavaParser.MethodDeclarationContext;
+import com.obomprogramador.tools.jqana.antlrparser.JavaParser.PackageDeclarationContext;
+import com.obomprogramador.tools.jqana.antlrparser.JavaParser.PrimaryContext;
+import com.obomprogramador.tools.jqana.antlrparser.JavaParser.VariableDeclaratorIdContext;
+import com.obomprogramador.tools.jqana.model.defaultimpl.GetClassNameFromContext;
+
+/**
+ * A Lcom4Listener that is attached to the parser (as a parse listener), so,
+ * the class' members are found while the source file is parsed, without a
+ * parse tree.
+ * 
+ * Instead of each method's body, only a summary is kept: the names found in
+ * the body, which may reference other members. They are checked when the
+ * compilation unit exits, as the tree's method bodies are. The texts of
+ * rules are recorded from the consumed tokens, so, the token stream may be
+ * unbuffered.
+ * 
+ * @author Cleuton Sampaio
+ * 
+ */
+public class StreamingLcom4Listener extends Lcom4Listener {
+
+    private Member pendingField;
+    private List<Member> methods = new ArrayList<Member>();
+    private List<Member> bodies = new ArrayList<Member>();
+    private TokenTextRecorder texts = new TokenTextRecorder();
+
+    /**
+     * Constructor with fields.
+     * @param members List<member> list of class' members.
+     * @param p JavaParser the parser that sends the events.
+     */
+    public StreamingLcom4Listener(List<Member> members, JavaParser p) {
+        super(members, p);
+    }
+
+    @Override
+    public void enterClassDeclaration(@NotNull ClassDeclarationContext ctx) {
+        if (!alreadyGotMainClass) {
+            mainClassName = GetClassNameFromContext.getClassName(this.parser
+                    .getTokenStream());
+            alreadyGotMainClass = true;
+        }
+    }
+
+    @Override
+    public void enterPackageDeclaration(@NotNull PackageDeclarationContext ctx) {
+        this.texts.start();
+    }
+
+    @Override
+    public void exitPackageDeclaration(@NotNull PackageDeclarationContext ctx) {
+        mainPackageName = this.texts.stop().substring(PACKAGE_DISPLACEMENT);
+        logger.debug(mainPackageName);
+    }
+
+    /**
+     * The field's name is its first variable declarator id.
+     * @param ctx Context the context in use.
+     */
+    @Override
+    public void enterFieldDeclaration(@NotNull FieldDeclarationContext ctx) {
+        this.pendingField = addVariable("");
+    }
+
+    @Override
+    public void enterVariableDeclaratorId(
+            @NotNull VariableDeclaratorIdContext ctx) {
+        if (this.pendingField != null) {
+            this.texts.start();
+        }
+    }
+
+    @Override
+    public void exitVariableDeclaratorId(
+            @NotNull VariableDeclaratorIdContext ctx) {
+        if (this.pendingField != null) {
+            this.pendingField.name = this.texts.stop();
+            this.pendingField = null;
+        }
+    }
+
+    @Override
+    public void enterAnnotation(@NotNull AnnotationContext ctx) {
+        this.texts.start();
+    }
+
+    @Override
+    public void exitAnnotation(@NotNull AnnotationContext ctx) {
+        if (this.texts.stop().equals("@Override")) {
+            this.overrideAnnotation = true;
+        }
+    }
+
+    @Override
+    public void enterMethodDeclaration(@NotNull MethodDeclarationContext ctx) {
+        this.methods.add(addMethod(GetClassNameFromContext
+                .getMethodName(this.parser.getTokenStream()), null));
+    }
+
+    @Override
+    public void enterMethodBody(@NotNull MethodBodyContext ctx) {
+        Member member = this.methods.get(this.methods.size() - 1);
+        if (member != null) {
+            member.bodyReferences = new LinkedHashSet<String>();
+            this.bodies.add(member);
+        }
+    }
+
+    @Override
+    public void exitMethodDeclaration(@NotNull MethodDeclarationContext ctx) {
+        Member member = this.methods.remove(this.methods.size() - 1);
+        if (member != null && member.bodyReferences != null) {
+            this.bodies.remove(this.bodies.size() - 1);
+        }
+    }
+
+    /**
+     * Only names can reference members. A name inside an anonymous class'
+     * method is in the body of the enclosing method, too. Each name is kept
+     * once per method: a large method repeats the same few names.
+     * @param ctx Context the context in use.
+     */
+    @Override
+    public void exitPrimary(@NotNull PrimaryContext ctx) {
+        if (!this.bodies.isEmpty() && ctx.start == ctx.stop
+                && ctx.start.getType() == JavaParser.Identifier) {
+            String name = ctx.start.getText();
+            for (Member member : this.bodies) {
+                member.bodyReferences.add(name);
+            }
+        }
+    }
+
+    @Override
+    public void visitTerminal(@NotNull TerminalNode node) {
+        this.texts.append(node.getSymbol());
+    }
+
+    @Override
+    public void visitErrorNode(@NotNull ErrorNode node) {
+        this.texts.append(node.getSymbol());
+    }
+
+}
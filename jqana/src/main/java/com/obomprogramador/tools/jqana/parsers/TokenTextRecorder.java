@@ -0,0 +1,79 @@
+/**
+ * jQana - Open Source Java(TM) code quality analyzer.
+ * 
+ * Copyright 2013 Cleuton Sampaio de Melo Jr
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * Project website: http://www.jqana.com
+ */
+package com.obomprogramador.tools.jqana.parsers;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+import org.antlr.v4.runtime.Token;
+
+/**
+ * Records the text of the rules that a parse listener needs, from the
+ * terminals consumed by the parser, instead of reading it back from the
+ * token stream: an unbuffered token stream releases the tokens as soon as
+ * they are consumed. The text is the same of "ParseTree.getText()": the
+ * tokens' texts, without spaces.
+ * 
+ * Recordings may be nested: each terminal is appended to all of them.
+ * 
+ * @author Cleuton Sampaio
+ * 
+ */
+public class TokenTextRecorder {
+
+    private Deque<StringBuilder> texts = new ArrayDeque<StringBuilder>();
+
+    /**
+     * Starts a new recording.
+     */
+    public void start() {
+        this.texts.push(new StringBuilder());
+    }
+
+    /**
+     * Appends a consumed token to all recordings.
+     * @param token Token the token.
+     */
+    public void append(Token token) {
+        if (!this.texts.isEmpty()) {
+            String text = token.getText();
+            for (StringBuilder sb : this.texts) {
+                sb.append(text);
+            }
+        }
+    }
+
+    /**
+     * Returns the text of the last recording, which goes on.
+     * @return String the text recorded so far.
+     */
+    public String getText() {
+        return this.texts.peek().toString();
+    }
+
+    /**
+     * Ends the last recording.
+     * @return String the recorded text.
+     */
+    public String stop() {
+        return this.texts.pop().toString();
+    }
+
+}
@@ -0,0 +1,77 @@
+package com.obomprogramador.tools.jacana;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import java.io.File;
+
+import org.junit.Test;
+
+import com.obomprogramador.tools.jqana.context.Context;
+import com.obomprogramador.tools.jqana.model.Measurement;
+import com.obomprogramador.tools.jqana.model.defaultimpl.AggregateProjectProcessor;
+import com.obomprogramador.tools.jqana.model.defaultimpl.DefaultProjectProcessor;
+import com.obomprogramador.tools.jqana.model.defaultimpl.DefaultXmlGenerator;
+
+public class TestAggregateProcessing {
+
+    private String rootTestResources = "unit-test-sources/java";
+
+    /*
+     * (non javadoc) Each module's measurement must be the same as if it was
+     * analyzed alone, and the overall measurement has all packages.
+     */
+    @Test
+    public void testModulesInOnePass() throws Exception {
+        Context context = new Context();
+        File sourceDir = new File(this.getClass().getClassLoader()
+                .getResource(rootTestResources).toURI());
+        File objectDir = sourceDir.getParentFile().getParentFile();
+
+        DefaultProjectProcessor single = new DefaultProjectProcessor(context);
+        Measurement expected = single.process("moduleA", sourceDir, objectDir);
+
+        AggregateProjectProcessor app = new AggregateProjectProcessor(context);
+        app.setThreads(4);
+        app.addModule("moduleA", sourceDir, objectDir, null);
+        app.addModule("moduleB", sourceDir, objectDir, null);
+        Measurement overall = app.process("Teste");
+
+        assertEquals(2, app.getModuleMeasurements().size());
+        assertEquals(2 * expected.getInnerMeasurements().size(), overall
+                .getInnerMeasurements().size());
+        DefaultXmlGenerator generator = new DefaultXmlGenerator(context);
+        assertEquals(generator.xml2String(generator.serialize(expected), true),
+                generator.xml2String(generator.serialize(app
+                        .getModuleMeasurements().get("moduleA")), true));
+    }
+
+    /*
+     * (non javadoc) The analysis options reach each module's processor.
+     */
+    @Test
+    public void testModuleOptions() throws Exception {
+        Context context = new Context();
+        File sourceDir = new File(this.getClass().getClassLoader()
+                .getResource(rootTestResources).toURI());
+        File objectDir = sourceDir.getParentFile().getParentFile();
+
+        DefaultProjectProcessor single = new DefaultProjectProcessor(context);
+        single.setLexerOnlyCc(true);
+        Measurement expected = single.process("moduleA", sourceDir, objectDir);
+
+        AggregateProjectProcessor app = new AggregateProjectProcessor(context);
+        app.setLexerOnlyCc(true);
+        app.setDecisionProfile(true);
+        app.addModule("moduleA", sourceDir, objectDir, null);
+        app.process("Teste");
+
+        DefaultXmlGenerator generator = new DefaultXmlGenerator(context);
+        assertEquals(generator.xml2String(generator.serialize(expected), true),
+                generator.xml2String(generator.serialize(app
+                        .getModuleMeasurements().get("moduleA")), true));
+        assertNotNull(app.getModuleStatistics().get("moduleA")
+                .getDecisionProfiler());
+    }
+
+}
@@ -0,0 +1,70 @@
+package com.obomprogramador.tools.jacana;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.Test;
+
+import com.obomprogramador.tools.jqana.context.Context;
+import com.obomprogramador.tools.jqana.model.defaultimpl.DefaultProjectProcessor;
+import com.obomprogramador.tools.jqana.model.defaultimpl.DefaultXmlGenerator;
+
+public class TestClassArchive {
+
+    private String rootTestResources = "unit-test-sources/java";
+
+    /*
+     * (non javadoc) The compiled classes read from a jar file must give the
+     * same measurements of the loose class files.
+     */
+    @Test
+    public void testClassesFromJar() throws Exception {
+        Context context = new Context();
+        File sourceDir = new File(this.getClass().getClassLoader()
+                .getResource(rootTestResources).toURI());
+        File objectDir = sourceDir.getParentFile().getParentFile();
+        File jar = new File(objectDir.getParentFile(), "jqana-classes.jar");
+        ZipOutputStream out = new ZipOutputStream(new FileOutputStream(jar));
+        try {
+            addClasses(out, objectDir, "");
+        } finally {
+            out.close();
+        }
+        DefaultXmlGenerator generator = new DefaultXmlGenerator(context);
+
+        String expected = generator.xml2String(generator
+                .serialize(new DefaultProjectProcessor(context).process(
+                        "Teste", sourceDir, objectDir)), false);
+        String fromJar = generator.xml2String(generator
+                .serialize(new DefaultProjectProcessor(context).process(
+                        "Teste", sourceDir, jar)), false);
+        assertEquals(expected, fromJar);
+    }
+
+    private void addClasses(ZipOutputStream out, File dir, String prefix)
+            throws Exception {
+        byte[] buffer = new byte[4096];
+        for (File file : dir.listFiles()) {
+            if (file.isDirectory()) {
+                addClasses(out, file, prefix + file.getName() + "/");
+            } else if (file.getName().endsWith(".class")) {
+                out.putNextEntry(new ZipEntry(prefix + file.getName()));
+                InputStream in = new FileInputStream(file);
+                int count = in.read(buffer);
+                while (count >= 0) {
+                    out.write(buffer, 0, count);
+                    count = in.read(buffer);
+                }
+                in.close();
+                out.closeEntry();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,48 @@
+package com.obomprogramador.tools.jacana;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.Enumeration;
+import java.util.ResourceBundle;
+
+import org.junit.Test;
+
+import com.obomprogramador.tools.jqana.context.Context;
+
+public class TestContext {
+
+    /*
+     * (non javadoc) A new bundle renames the metrics, also for the contexts
+     * created from the registry.
+     */
+    @Test
+    public void testSetBundle() throws Exception {
+        Context context = new Context();
+        final ResourceBundle report = ResourceBundle.getBundle("report");
+        ResourceBundle renamed = new ResourceBundle() {
+            @Override
+            protected Object handleGetObject(String key) {
+                if ("metric.cc.name".equals(key)) {
+                    return "Renamed CC";
+                }
+                return report.getObject(key);
+            }
+
+            @Override
+            public Enumeration<String> getKeys() {
+                return report.getKeys();
+            }
+        };
+        context.setBundle(renamed);
+        assertEquals("Renamed CC", context.getMetricById("metric.cc.name")
+                .getMetricName());
+        assertEquals("Renamed CC", context.getCurrentMetric("Renamed CC")
+                .getMetricName());
+        Context fileContext = new Context(context.getMetricRegistry());
+        assertSame(renamed, fileContext.getBundle());
+        assertEquals("Renamed CC", fileContext.getMetricById(
+                "metric.cc.name").getMetricName());
+    }
+
+}
@@ -64,6 +64,23 @@ public class TestCyclomaticComplexity {
 
     }
 
+    /*
+     * (non javadoc) The same condition, in two statements, is counted twice.
+     * Only sub expressions are covered by the expression that contains them.
+     */
+    @Test
+    public void testRepeatedConditions() throws ClassNotFoundException,
+            InstantiationException, IllegalAccessException {
+        context = new Context();
+        String code = "class A { void m() { if (a || b) x(); "
+                + "if (a || b) y(); z((a || b) && c); } }";
+        Measurement mt = new CyclomaticComplexityParser(new Measurement(),
+                context).parse(null, code);
+        MetricValue mv = mt.getInnerMeasurements().get(0).getMetricValue(
+                context.getBundle().getString("metric.cc.name"));
+        assertEquals(7, mv.getValue(), 0.0);
+    }
+
     public void printPackage(int identation, Measurement mt) {
         String line = "";
         line += StringUtils.leftPad(line, identation);
@@ -125,4 +142,4 @@ public class TestCyclomaticComplexity {
         return sb.toString();
     }
 
-}
\ No newline at end of file
+}
\ No newline at end of file
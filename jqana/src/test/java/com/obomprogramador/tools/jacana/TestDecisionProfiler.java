@@ -0,0 +1,58 @@
+package com.obomprogramador.tools.jacana;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.StringWriter;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.obomprogramador.tools.jqana.antlrparser.JavaParser;
+import com.obomprogramador.tools.jqana.context.Context;
+import com.obomprogramador.tools.jqana.model.defaultimpl.DefaultProjectProcessor;
+import com.obomprogramador.tools.jqana.parsers.DecisionProfiler;
+import com.obomprogramador.tools.jqana.parsers.DecisionStatistics;
+import com.obomprogramador.tools.jqana.parsers.ParsingStatistics;
+
+public class TestDecisionProfiler {
+
+    private String rootTestResources = "unit-test-sources/java";
+
+    @Test
+    public void testProfile() throws Exception {
+        Context context = new Context();
+        File sourceDir = new File(this.getClass().getClassLoader()
+                .getResource(rootTestResources).toURI());
+        File objectDir = sourceDir.getParentFile().getParentFile();
+        DefaultProjectProcessor dpp = new DefaultProjectProcessor(context);
+        dpp.setDecisionProfile(true);
+        dpp.process("Teste", sourceDir, objectDir);
+        ParsingStatistics statistics = dpp.getParsingStatistics();
+        DecisionProfiler profiler = statistics.getDecisionProfiler();
+        assertEquals(statistics.getParsedFiles(), profiler.getParsedFiles());
+
+        List<DecisionStatistics> decisions = profiler.getDecisions();
+        assertFalse(decisions.isEmpty());
+        for (int x = 1; x < decisions.size(); x++) {
+            assertTrue(decisions.get(x - 1).getTime() >= decisions.get(x)
+                    .getTime());
+        }
+        for (DecisionStatistics decision : decisions) {
+            assertTrue(decision.getInvocations() > 0);
+            assertTrue(decision.getSllMaxLookahead() >= 1);
+        }
+        // Decision 0 is the first one of the first rule:
+        assertEquals(JavaParser.ruleNames[JavaParser.RULE_compilationUnit],
+                DecisionProfiler.getRuleName(0));
+        assertFalse(profiler.getSlowestFiles().isEmpty());
+
+        StringWriter report = new StringWriter();
+        profiler.writeReport(report);
+        assertTrue(report.toString().contains("Slowest files:"));
+        assertTrue(report.toString().contains("Teste.java"));
+    }
+
+}
@@ -0,0 +1,123 @@
+package com.obomprogramador.tools.jacana;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+
+import org.junit.Test;
+
+import com.obomprogramador.tools.jqana.context.Context;
+import com.obomprogramador.tools.jqana.model.Measurement;
+import com.obomprogramador.tools.jqana.model.Measurement.MEASUREMENT_TYPE;
+import com.obomprogramador.tools.jqana.model.defaultimpl.DefaultProjectProcessor;
+import com.obomprogramador.tools.jqana.model.defaultimpl.MetricValue;
+
+public class TestDetailLevel {
+
+    private String rootTestResources = "unit-test-sources/java";
+
+    @Test
+    public void testClassLevel() throws Exception {
+        Measurement expected = process(null);
+        Measurement actual = process("class");
+        assertEquals(expected.getInnerMeasurements().size(), actual
+                .getInnerMeasurements().size());
+        for (int x = 0; x < expected.getInnerMeasurements().size(); x++) {
+            assertSameClasses(expected.getInnerMeasurements().get(x), actual
+                    .getInnerMeasurements().get(x));
+        }
+    }
+
+    @Test
+    public void testPackageLevel() throws Exception {
+        Measurement expected = process(null);
+        Measurement actual = process("package");
+        assertEquals(expected.getInnerMeasurements().size(), actual
+                .getInnerMeasurements().size());
+        for (int x = 0; x < expected.getInnerMeasurements().size(); x++) {
+            Measurement packageMeasurement = actual.getInnerMeasurements()
+                    .get(x);
+            assertSameValues(expected.getInnerMeasurements().get(x),
+                    packageMeasurement);
+            assertTrue(packageMeasurement.getInnerMeasurements().isEmpty());
+        }
+    }
+
+    @Test
+    public void testProjectLevel() throws Exception {
+        Context context = new Context();
+        Measurement expected = process(null);
+        Measurement actual = process("project");
+        assertTrue(actual.getInnerMeasurements().isEmpty());
+        String cc = context.getBundle().getString("metric.cc.name");
+        String lcom4 = context.getBundle().getString("metric.lcom4.name");
+        double ccSum = 0;
+        double lcom4Max = 0;
+        for (Measurement packageMeasurement : expected.getInnerMeasurements()) {
+            ccSum += packageMeasurement.getMetricValue(cc).getValue();
+            lcom4Max = Math.max(lcom4Max, packageMeasurement.getMetricValue(
+                    lcom4).getValue());
+        }
+        assertEquals(ccSum / expected.getInnerMeasurements().size(), actual
+                .getMetricValue(cc).getValue(), 0.0001);
+        assertEquals(lcom4Max, actual.getMetricValue(lcom4).getValue(), 0.0);
+    }
+
+    @SuppressWarnings("deprecation")
+    @Test
+    public void testDiscardMethodDetail() throws Exception {
+        DefaultProjectProcessor dpp = new DefaultProjectProcessor(
+                new Context());
+        dpp.setDiscardMethodDetail(true);
+        assertEquals(MEASUREMENT_TYPE.CLASS_MEASUREMENT, dpp.getDetailLevel());
+        dpp.setDiscardMethodDetail(false);
+        assertEquals(MEASUREMENT_TYPE.METHOD_MEASUREMENT, dpp.getDetailLevel());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidLevel() throws Exception {
+        new DefaultProjectProcessor(new Context()).setDetailLevel("file");
+    }
+
+    private Measurement process(String detailLevel) throws Exception {
+        Context context = new Context();
+        File sourceDir = new File(this.getClass().getClassLoader()
+                .getResource(rootTestResources).toURI());
+        File objectDir = sourceDir.getParentFile().getParentFile();
+        DefaultProjectProcessor dpp = new DefaultProjectProcessor(context);
+        if (detailLevel != null) {
+            dpp.setDetailLevel(detailLevel);
+        }
+        return dpp.process("Teste", sourceDir, objectDir);
+    }
+
+    /*
+     * (non javadoc) The same values, for all measurements but the methods',
+     * which are not created.
+     */
+    private void assertSameClasses(Measurement expected, Measurement actual) {
+        assertSameValues(expected, actual);
+        int x = 0;
+        for (Measurement inner : expected.getInnerMeasurements()) {
+            if (inner.getType() != MEASUREMENT_TYPE.METHOD_MEASUREMENT) {
+                assertSameClasses(inner, actual.getInnerMeasurements().get(x++));
+            }
+        }
+        assertEquals(x, actual.getInnerMeasurements().size());
+    }
+
+    private void assertSameValues(Measurement expected, Measurement actual) {
+        assertEquals(expected.getName(), actual.getName());
+        assertEquals(expected.getMetricValues().size(), actual
+                .getMetricValues().size());
+        for (MetricValue expectedValue : expected.getMetricValues()) {
+            MetricValue actualValue = actual.getMetricValue(expectedValue
+                    .getName());
+            assertEquals(expected.getName() + ": " + expectedValue.getName(),
+                    expectedValue.getValue(), actualValue.getValue(), 0.0);
+            assertEquals(expectedValue.isViolated(), actualValue.isViolated());
+        }
+    }
+
+}
@@ -0,0 +1,41 @@
+package com.obomprogramador.tools.jacana;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import com.obomprogramador.tools.jqana.parsers.DisjointSet;
+
+public class TestDisjointSet {
+
+    @Test
+    public void testUnion() {
+        DisjointSet set = new DisjointSet(6);
+        assertTrue(set.union(0, 1));
+        assertTrue(set.union(2, 3));
+        assertTrue(set.union(1, 3));
+        assertFalse(set.union(0, 2));
+        assertEquals(set.find(0), set.find(3));
+        assertEquals(4, set.find(4));
+        assertTrue(set.find(5) != set.find(0));
+    }
+
+    /*
+     * (non javadoc) A long chain: the path to the root is compressed.
+     */
+    @Test
+    public void testChain() {
+        int size = 100000;
+        DisjointSet set = new DisjointSet(size);
+        for (int x = 1; x < size; x++) {
+            set.union(x - 1, x);
+        }
+        int root = set.find(0);
+        for (int x = 0; x < size; x++) {
+            assertEquals(root, set.find(x));
+        }
+    }
+
+}
@@ -0,0 +1,82 @@
+package com.obomprogramador.tools.jacana;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
+import org.junit.Test;
+
+import com.obomprogramador.tools.jqana.context.Context;
+import com.obomprogramador.tools.jqana.model.AbstractMetricParser;
+import com.obomprogramador.tools.jqana.model.Measurement;
+import com.obomprogramador.tools.jqana.model.defaultimpl.DefaultProjectProcessor;
+
+public class TestFileTimeBudget {
+
+    private String rootTestResources = "unit-test-sources/java";
+
+    /*
+     * (non javadoc) A file that never ends its analysis is interrupted,
+     * skipped and listed, and the other files are analyzed.
+     */
+    @Test
+    public void testStalledFileIsSkipped() throws Exception {
+        Context context = new Context();
+        File sourceDir = new File(this.getClass().getClassLoader()
+                .getResource(rootTestResources).toURI());
+        File objectDir = sourceDir.getParentFile().getParentFile();
+
+        StallingProcessor dpp = new StallingProcessor(context);
+        dpp.setFileTimeBudget(200);
+        Measurement project = dpp.process("Teste", sourceDir, objectDir);
+
+        assertEquals(1, dpp.getSkippedFiles().size());
+        assertEquals("abc/ClassA.java", dpp.getSkippedFiles().get(0));
+        Measurement abc = null;
+        for (Measurement pm : project.getInnerMeasurements()) {
+            if (pm.getName().equals("abc")) {
+                abc = pm;
+            }
+        }
+        assertTrue(abc.getInnerMeasurements().size() > 0);
+        for (Measurement cm : abc.getInnerMeasurements()) {
+            assertTrue(!cm.getName().equals("ClassA"));
+        }
+    }
+
+    /*
+     * (non javadoc) The parser stops when its thread is interrupted.
+     */
+    @Test(expected = ParseCancellationException.class)
+    public void testParserChecksInterruption() {
+        Thread.currentThread().interrupt();
+        try {
+            AbstractMetricParser.newJavaParser("class A { }").compilationUnit();
+        } finally {
+            Thread.interrupted();
+        }
+    }
+
+    class StallingProcessor extends DefaultProjectProcessor {
+
+        StallingProcessor(Context context) {
+            super(context);
+        }
+
+        @Override
+        protected boolean processMetrics(Measurement packageMeasurement,
+                File oneFile, CharStream source) {
+            if (oneFile.getName().equals("ClassA.java")) {
+                // A pathological source: only the watchdog stops it
+                while (!Thread.currentThread().isInterrupted()) {
+                    Thread.yield();
+                }
+            }
+            return super.processMetrics(packageMeasurement, oneFile, source);
+        }
+    }
+
+}
@@ -0,0 +1,206 @@
+package com.obomprogramador.tools.jacana;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Enumeration;
+import java.util.ResourceBundle;
+
+import org.antlr.v4.runtime.CharStream;
+import org.junit.Assume;
+import org.junit.Test;
+import org.w3c.dom.Document;
+
+import com.obomprogramador.tools.jqana.context.Context;
+import com.obomprogramador.tools.jqana.model.Measurement;
+import com.obomprogramador.tools.jqana.model.Measurement.MEASUREMENT_TYPE;
+import com.obomprogramador.tools.jqana.model.defaultimpl.DefaultProjectProcessor;
+import com.obomprogramador.tools.jqana.model.defaultimpl.DefaultXmlGenerator;
+import com.obomprogramador.tools.jqana.model.defaultimpl.MeasurementCache;
+
+public class TestIncrementalAnalysis {
+
+    private String rootTestResources = "unit-test-sources/java";
+
+    /*
+     * (non javadoc) The second run must take all measurements from the cache,
+     * and produce the same report as the first one.
+     */
+    @Test
+    public void testUnchangedFilesComeFromCache() throws Exception {
+        Context context = new Context();
+        File sourceDir = new File(this.getClass().getClassLoader()
+                .getResource(rootTestResources).toURI());
+        File objectDir = sourceDir.getParentFile().getParentFile();
+        File cacheDir = new File(objectDir, "jqana-cache-test");
+        new File(cacheDir, MeasurementCache.CACHE_FILE_NAME).delete();
+
+        CountingProcessor first = new CountingProcessor(context);
+        first.setCacheDirectory(cacheDir);
+        Measurement expected = first.process("Teste", sourceDir, objectDir);
+        assertTrue(first.analyzedFiles > 0);
+        assertTrue(new File(cacheDir, MeasurementCache.CACHE_FILE_NAME)
+                .exists());
+
+        CountingProcessor second = new CountingProcessor(context);
+        second.setCacheDirectory(cacheDir);
+        Measurement found = second.process("Teste", sourceDir, objectDir);
+        assertEquals(0, second.analyzedFiles);
+
+        DefaultXmlGenerator generator = new DefaultXmlGenerator(context);
+        Document expectedXml = generator.serialize(expected);
+        Document foundXml = generator.serialize(found);
+        assertEquals(generator.xml2String(expectedXml, true),
+                generator.xml2String(foundXml, true));
+    }
+
+    /*
+     * (non javadoc) With a git base reference, only the changed file is
+     * analyzed, and the others come from the cache.
+     */
+    @Test
+    public void testOnlyChangedFilesAreAnalyzed() throws Exception {
+        Context context = new Context();
+        File sourceDir = new File(this.getClass().getClassLoader()
+                .getResource(rootTestResources).toURI());
+        File objectDir = sourceDir.getParentFile().getParentFile();
+        File workDir = new File(objectDir, "jqana-git-test");
+        deleteFolder(workDir);
+        copyFolder(sourceDir, workDir);
+        Assume.assumeTrue(git(workDir, "init", "-q")
+                && git(workDir, "add", ".")
+                && git(workDir, "-c", "user.name=jqana", "-c",
+                        "user.email=jqana@localhost", "commit", "-q", "-m",
+                        "base"));
+        File cacheDir = new File(objectDir, "jqana-git-cache-test");
+        new File(cacheDir, MeasurementCache.CACHE_FILE_NAME).delete();
+
+        CountingProcessor first = new CountingProcessor(context);
+        first.setCacheDirectory(cacheDir);
+        Measurement expected = first.process("Teste", workDir, objectDir);
+
+        FileWriter fw = new FileWriter(new File(workDir, "abc/ClassA.java"),
+                true);
+        fw.write("// changed\n");
+        fw.close();
+        CountingProcessor second = new CountingProcessor(context);
+        second.setCacheDirectory(cacheDir);
+        second.setChangedSince("HEAD");
+        Measurement found = second.process("Teste", workDir, objectDir);
+        assertEquals(1, second.analyzedFiles);
+
+        DefaultXmlGenerator generator = new DefaultXmlGenerator(context);
+        assertEquals(generator.xml2String(generator.serialize(expected), true),
+                generator.xml2String(generator.serialize(found), true));
+        deleteFolder(workDir);
+    }
+
+    /*
+     * (non javadoc) An entry of a file that git reports as unchanged is not
+     * reused if the metric thresholds have changed.
+     */
+    @Test
+    public void testUnchangedFileWithOtherThresholds() throws Exception {
+        Context context = new Context();
+        File sourceDir = new File(this.getClass().getClassLoader()
+                .getResource(rootTestResources).toURI());
+        File cacheDir = new File(sourceDir.getParentFile().getParentFile(),
+                "jqana-cache-test");
+        Measurement partial = new Measurement();
+        partial.setName("abc");
+        partial.setType(MEASUREMENT_TYPE.PACKAGE_MEASUREMENT);
+        MeasurementCache cache = new MeasurementCache(cacheDir, context);
+        cache.put("abc/ClassA.java", "hash", partial, true);
+        cache.save();
+
+        cache = new MeasurementCache(cacheDir, context);
+        cache.load();
+        assertNotNull(cache.get("abc/ClassA.java"));
+
+        final ResourceBundle report = context.getBundle();
+        context.setBundle(new ResourceBundle() {
+            @Override
+            protected Object handleGetObject(String key) {
+                if ("metric.cc.limit".equals(key)) {
+                    return "1";
+                }
+                return report.getObject(key);
+            }
+
+            @Override
+            public Enumeration<String> getKeys() {
+                return report.getKeys();
+            }
+        });
+        cache = new MeasurementCache(cacheDir, context);
+        cache.load();
+        assertNull(cache.get("abc/ClassA.java"));
+        new File(cacheDir, MeasurementCache.CACHE_FILE_NAME).delete();
+    }
+
+    private boolean git(File workDir, String... args) throws Exception {
+        String[] command = new String[args.length + 1];
+        command[0] = "git";
+        System.arraycopy(args, 0, command, 1, args.length);
+        try {
+            return Runtime.getRuntime().exec(command, null, workDir).waitFor() == 0;
+        } catch (IOException e) {
+            // No git here
+            return false;
+        }
+    }
+
+    private void copyFolder(File from, File to) throws IOException {
+        to.mkdirs();
+        for (File f : from.listFiles()) {
+            File target = new File(to, f.getName());
+            if (f.isDirectory()) {
+                copyFolder(f, target);
+            } else {
+                FileInputStream in = new FileInputStream(f);
+                FileOutputStream out = new FileOutputStream(target);
+                byte[] buffer = new byte[8192];
+                int len = in.read(buffer);
+                while (len > 0) {
+                    out.write(buffer, 0, len);
+                    len = in.read(buffer);
+                }
+                in.close();
+                out.close();
+            }
+        }
+    }
+
+    private void deleteFolder(File folder) {
+        File[] files = folder.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                deleteFolder(f);
+            }
+        }
+        folder.delete();
+    }
+
+    class CountingProcessor extends DefaultProjectProcessor {
+        private int analyzedFiles;
+
+        CountingProcessor(Context context) {
+            super(context);
+        }
+
+        @Override
+        protected boolean processMetrics(Measurement packageMeasurement,
+                File oneFile, CharStream source) {
+            analyzedFiles++;
+            return super.processMetrics(packageMeasurement, oneFile, source);
+        }
+    }
+
+}
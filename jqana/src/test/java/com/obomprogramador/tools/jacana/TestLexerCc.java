@@ -0,0 +1,97 @@
+package com.obomprogramador.tools.jacana;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.obomprogramador.tools.jqana.context.Context;
+import com.obomprogramador.tools.jqana.model.Measurement;
+import com.obomprogramador.tools.jqana.model.defaultimpl.DefaultProjectProcessor;
+import com.obomprogramador.tools.jqana.parsers.CyclomaticComplexityParser;
+import com.obomprogramador.tools.jqana.parsers.LexerCyclomaticComplexityParser;
+
+public class TestLexerCc {
+
+    private String rootTestResources = "unit-test-sources/java";
+
+    private String code = "package x;\n"
+            + "public class A {\n"
+            + "    int f = b ? 1 : 2;\n"
+            + "    void m() {\n"
+            + "        foo(new X() { void r() { if (c) { } } }, a && b);\n"
+            + "        foo(new X() { int v = w ? 1 : 2; }, a && b);\n"
+            + "        if (a || b) x(); if (a || b) y();\n"
+            + "        for (int i = 0; i < n; i++) { return; }\n"
+            + "        do { x(); } while (a && b);\n"
+            + "        switch (x) { case 1: return; case 2: y(); default: z(); }\n"
+            + "        try (Foo f = new Foo()) { } catch (Exception e) { }\n"
+            + "        java.util.Map<String, Integer> map = new java.util.HashMap<String, Integer>();\n"
+            + "        String s = \"a||b\" + (c ? d : e);\n"
+            + "    }\n"
+            + "    A() { this(1); }\n"
+            + "    enum E { P(true && b) { void u() { if (a) { } } }, Q }\n"
+            + "    interface I { int C = a ? 1 : 2; void v(); }\n"
+            + "    class Inner { void w(@Named(\"q\") int p) { while (x) { } } }\n"
+            + "}\n";
+
+    @Test
+    public void testSameMeasurements() throws Exception {
+        Context context = new Context();
+        Measurement expected = new CyclomaticComplexityParser(
+                new Measurement(), context).parse(null, code);
+        Measurement actual = new LexerCyclomaticComplexityParser(
+                new Measurement(), context).parse(null, code);
+        List<String> differences = LexerCyclomaticComplexityParser.compare(
+                expected, actual,
+                context.getBundle().getString("metric.cc.name"));
+        assertTrue(differences.toString(), differences.isEmpty());
+        assertEquals(4, actual.getInnerMeasurements().size());
+    }
+
+    /*
+     * (non javadoc) The validation mode compares both engines on every
+     * source file.
+     */
+    @Test
+    public void testValidation() throws Exception {
+        Context context = new Context();
+        File sourceDir = new File(this.getClass().getClassLoader()
+                .getResource(rootTestResources).toURI());
+        File objectDir = sourceDir.getParentFile().getParentFile();
+        DefaultProjectProcessor dpp = new DefaultProjectProcessor(context);
+        dpp.setCcValidation(true);
+        dpp.process("Teste", sourceDir, objectDir);
+        assertTrue(dpp.getCcValidationErrors().toString(), dpp
+                .getCcValidationErrors().isEmpty());
+        assertTrue(dpp.getParsingStatistics().getParsedFiles() > 0);
+    }
+
+    @Test
+    public void testLexerOnly() throws Exception {
+        Context context = new Context();
+        String ccName = context.getBundle().getString("metric.cc.name");
+        File sourceDir = new File(this.getClass().getClassLoader()
+                .getResource(rootTestResources).toURI());
+        File objectDir = sourceDir.getParentFile().getParentFile();
+        Measurement expected = new DefaultProjectProcessor(context).process(
+                "Teste", sourceDir, objectDir);
+        DefaultProjectProcessor dpp = new DefaultProjectProcessor(context);
+        dpp.setLexerOnlyCc(true);
+        Measurement actual = dpp.process("Teste", sourceDir, objectDir);
+        assertEquals(0, dpp.getParsingStatistics().getParsedFiles());
+        assertEquals(expected.getInnerMeasurements().size(), actual
+                .getInnerMeasurements().size());
+        for (int x = 0; x < expected.getInnerMeasurements().size(); x++) {
+            Measurement expectedPackage = expected.getInnerMeasurements().get(x);
+            Measurement actualPackage = actual.getInnerMeasurements().get(x);
+            assertEquals(expectedPackage.getName(), actualPackage.getName());
+            assertEquals(expectedPackage.getMetricValue(ccName).getValue(),
+                    actualPackage.getMetricValue(ccName).getValue(), 0.0);
+        }
+    }
+
+}
@@ -0,0 +1,103 @@
+package com.obomprogramador.tools.jacana;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.antlr.v4.runtime.CharStream;
+import org.junit.Test;
+import org.w3c.dom.Document;
+
+import com.obomprogramador.tools.jqana.context.Context;
+import com.obomprogramador.tools.jqana.model.Measurement;
+import com.obomprogramador.tools.jqana.model.defaultimpl.DefaultProjectProcessor;
+import com.obomprogramador.tools.jqana.model.defaultimpl.DefaultXmlGenerator;
+
+public class TestParallelProcessing {
+
+    private String rootTestResources = "unit-test-sources/java";
+
+    /*
+     * (non javadoc) The parallel processing must produce exactly the same
+     * measurements (and the same XML report) as the sequential processing.
+     */
+    @Test
+    public void testSameResultsAsSequential() throws Exception {
+        Context context = new Context();
+        File sourceDir = new File(this.getClass().getClassLoader()
+                .getResource(rootTestResources).toURI());
+        File objectDir = sourceDir.getParentFile().getParentFile();
+
+        DefaultProjectProcessor sequential = new DefaultProjectProcessor(
+                context);
+        Measurement expected = sequential.process("Teste", sourceDir,
+                objectDir);
+
+        DefaultProjectProcessor parallel = new DefaultProjectProcessor(context);
+        parallel.setThreads(4);
+        Measurement found = parallel.process("Teste", sourceDir, objectDir);
+
+        assertTrue(expected.getInnerMeasurements().size() > 0);
+        DefaultXmlGenerator generator = new DefaultXmlGenerator(context);
+        Document expectedXml = generator.serialize(expected);
+        Document foundXml = generator.serialize(found);
+        assertEquals(generator.xml2String(expectedXml, true),
+                generator.xml2String(foundXml, true));
+    }
+
+    /*
+     * (non javadoc) With a one item queue, the scanner is always blocked by
+     * the aggregation, and the results must still be the same.
+     */
+    @Test
+    public void testSmallQueue() throws Exception {
+        Context context = new Context();
+        File sourceDir = new File(this.getClass().getClassLoader()
+                .getResource(rootTestResources).toURI());
+        File objectDir = sourceDir.getParentFile().getParentFile();
+
+        DefaultProjectProcessor sequential = new DefaultProjectProcessor(
+                context);
+        Measurement expected = sequential.process("Teste", sourceDir,
+                objectDir);
+
+        DefaultProjectProcessor parallel = new DefaultProjectProcessor(context);
+        parallel.setThreads(2);
+        parallel.setReaderThreads(1);
+        parallel.setQueueCapacity(1);
+        Measurement found = parallel.process("Teste", sourceDir, objectDir);
+
+        DefaultXmlGenerator generator = new DefaultXmlGenerator(context);
+        assertEquals(generator.xml2String(generator.serialize(expected), true),
+                generator.xml2String(generator.serialize(found), true));
+    }
+
+    /*
+     * (non javadoc) An Error thrown while a file is analyzed must end the
+     * processing, not leave the aggregation waiting for the file.
+     */
+    @Test(timeout = 30000, expected = IOException.class)
+    public void testErrorEndsTheProcessing() throws Exception {
+        Context context = new Context();
+        File sourceDir = new File(this.getClass().getClassLoader()
+                .getResource(rootTestResources).toURI());
+        File objectDir = sourceDir.getParentFile().getParentFile();
+
+        DefaultProjectProcessor parallel = new DefaultProjectProcessor(context) {
+            @Override
+            protected boolean processMetrics(Measurement packageMeasurement,
+                    File oneFile, CharStream source) {
+                if (oneFile.getName().equals("ClassA.java")) {
+                    throw new StackOverflowError();
+                }
+                return super.processMetrics(packageMeasurement, oneFile,
+                        source);
+            }
+        };
+        parallel.setThreads(2);
+        parallel.process("Teste", sourceDir, objectDir);
+    }
+
+}
@@ -0,0 +1,130 @@
+package com.obomprogramador.tools.jacana;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.obomprogramador.tools.jqana.context.Context;
+import com.obomprogramador.tools.jqana.model.Measurement;
+import com.obomprogramador.tools.jqana.model.defaultimpl.DefaultProjectProcessor;
+import com.obomprogramador.tools.jqana.model.defaultimpl.DefaultXmlGenerator;
+import com.obomprogramador.tools.jqana.model.defaultimpl.PartialResults;
+
+public class TestShardedAnalysis {
+
+    private String rootTestResources = "unit-test-sources/java";
+
+    /*
+     * (non javadoc) The merge of all shards' partial results must give the
+     * same report of the analysis of the whole project.
+     */
+    @Test
+    public void testMergeIsIdentical() throws Exception {
+        assertMergeIsIdentical(null);
+    }
+
+    /*
+     * (non javadoc) The shards keep their detail level, and the merge uses
+     * it.
+     */
+    @Test
+    public void testMergeAtProjectLevel() throws Exception {
+        assertMergeIsIdentical("project");
+    }
+
+    @Test(expected = java.io.IOException.class)
+    public void testDifferentDetailLevels() throws Exception {
+        Context context = new Context();
+        File sourceDir = new File(this.getClass().getClassLoader()
+                .getResource(rootTestResources).toURI());
+        File objectDir = sourceDir.getParentFile().getParentFile();
+        File shardDir = new File(objectDir, "jqana-shards");
+        List<File> partialFiles = new ArrayList<File>();
+        String[] detailLevels = {"method", "class"};
+        for (int shard = 1; shard <= 2; shard++) {
+            File partialFile = new File(shardDir, "levels-"
+                    + PartialResults.getFileName(shard, 2));
+            DefaultProjectProcessor dpp = new DefaultProjectProcessor(context);
+            dpp.setShard(shard, 2);
+            dpp.setDetailLevel(detailLevels[shard - 1]);
+            dpp.setPartialResultFile(partialFile);
+            dpp.process("Teste", sourceDir, objectDir);
+            partialFiles.add(partialFile);
+        }
+        new DefaultProjectProcessor(context).merge("Teste", partialFiles);
+    }
+
+    private void assertMergeIsIdentical(String detailLevel) throws Exception {
+        Context context = new Context();
+        File sourceDir = new File(this.getClass().getClassLoader()
+                .getResource(rootTestResources).toURI());
+        File objectDir = sourceDir.getParentFile().getParentFile();
+        File shardDir = new File(objectDir, "jqana-shards");
+        DefaultXmlGenerator generator = new DefaultXmlGenerator(context);
+
+        DefaultProjectProcessor dpp = new DefaultProjectProcessor(context);
+        if (detailLevel != null) {
+            dpp.setDetailLevel(detailLevel);
+        }
+        String expected = generator.xml2String(
+                generator.serialize(dpp.process("Teste", sourceDir, objectDir)),
+                false);
+
+        int shardCount = 3;
+        List<File> partialFiles = new ArrayList<File>();
+        int packages = 0;
+        for (int shard = 1; shard <= shardCount; shard++) {
+            File partialFile = new File(shardDir, PartialResults.getFileName(
+                    shard, shardCount));
+            dpp = new DefaultProjectProcessor(context);
+            dpp.setShard(shard + "/" + shardCount);
+            if (detailLevel != null) {
+                dpp.setDetailLevel(detailLevel);
+            }
+            dpp.setPartialResultFile(partialFile);
+            Measurement partial = dpp.process("Teste", sourceDir, objectDir);
+            for (Measurement pm : partial.getInnerMeasurements()) {
+                assertEquals(shard,
+                        DefaultProjectProcessor.getShardOf(pm.getName(),
+                                shardCount));
+            }
+            packages += PartialResults.load(partialFile).getPackages().size();
+            // Shards are merged in any order:
+            partialFiles.add(0, partialFile);
+        }
+        assertTrue(packages > 0);
+
+        dpp = new DefaultProjectProcessor(context);
+        Measurement merged = dpp.merge("Teste", partialFiles);
+        if (detailLevel == null) {
+            assertEquals(packages, merged.getInnerMeasurements().size());
+        } else {
+            assertTrue(merged.getInnerMeasurements().isEmpty());
+        }
+        assertEquals(expected,
+                generator.xml2String(generator.serialize(merged), false));
+    }
+
+    @Test(expected = java.io.IOException.class)
+    public void testMissingShard() throws Exception {
+        Context context = new Context();
+        File sourceDir = new File(this.getClass().getClassLoader()
+                .getResource(rootTestResources).toURI());
+        File objectDir = sourceDir.getParentFile().getParentFile();
+        File partialFile = new File(new File(objectDir, "jqana-shards"),
+                "missing-" + PartialResults.getFileName(1, 2));
+        DefaultProjectProcessor dpp = new DefaultProjectProcessor(context);
+        dpp.setShard(1, 2);
+        dpp.setPartialResultFile(partialFile);
+        dpp.process("Teste", sourceDir, objectDir);
+        List<File> partialFiles = new ArrayList<File>();
+        partialFiles.add(partialFile);
+        new DefaultProjectProcessor(context).merge("Teste", partialFiles);
+    }
+
+}
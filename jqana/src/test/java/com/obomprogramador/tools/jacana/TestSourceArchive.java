@@ -0,0 +1,80 @@
+package com.obomprogramador.tools.jacana;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.Test;
+
+import com.obomprogramador.tools.jqana.context.Context;
+import com.obomprogramador.tools.jqana.model.Measurement;
+import com.obomprogramador.tools.jqana.model.defaultimpl.DefaultProjectProcessor;
+import com.obomprogramador.tools.jqana.model.defaultimpl.DefaultXmlGenerator;
+
+public class TestSourceArchive {
+
+    private String rootTestResources = "unit-test-sources/java";
+
+    /*
+     * (non javadoc) The source files read from a sources jar must give the
+     * same measurements of the source folder. Packages may come in another
+     * order, so, they are sorted before the comparison.
+     */
+    @Test
+    public void testSourcesFromJar() throws Exception {
+        Context context = new Context();
+        File sourceDir = new File(this.getClass().getClassLoader()
+                .getResource(rootTestResources).toURI());
+        File objectDir = sourceDir.getParentFile().getParentFile();
+        File jar = new File(objectDir.getParentFile(), "jqana-sources.jar");
+        ZipOutputStream out = new ZipOutputStream(new FileOutputStream(jar));
+        try {
+            out.putNextEntry(new ZipEntry("META-INF/MANIFEST.MF"));
+            out.closeEntry();
+            addSources(out, sourceDir, "");
+        } finally {
+            out.close();
+        }
+        DefaultXmlGenerator generator = new DefaultXmlGenerator(context);
+
+        Measurement expected = new DefaultProjectProcessor(context).process(
+                "Teste", sourceDir, objectDir);
+        Collections.sort(expected.getInnerMeasurements());
+        DefaultProjectProcessor dpp = new DefaultProjectProcessor(context);
+        dpp.setThreads(2);
+        Measurement fromJar = dpp.process("Teste", jar, objectDir);
+        Collections.sort(fromJar.getInnerMeasurements());
+        assertTrue(fromJar.getInnerMeasurements().size() > 0);
+        assertEquals(generator.xml2String(generator.serialize(expected),
+                false), generator.xml2String(generator.serialize(fromJar),
+                false));
+    }
+
+    private void addSources(ZipOutputStream out, File dir, String prefix)
+            throws Exception {
+        byte[] buffer = new byte[4096];
+        for (File file : dir.listFiles()) {
+            if (file.isDirectory()) {
+                addSources(out, file, prefix + file.getName() + "/");
+            } else {
+                out.putNextEntry(new ZipEntry(prefix + file.getName()));
+                InputStream in = new FileInputStream(file);
+                int count = in.read(buffer);
+                while (count >= 0) {
+                    out.write(buffer, 0, count);
+                    count = in.read(buffer);
+                }
+                in.close();
+                out.closeEntry();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,46 @@
+package com.obomprogramador.tools.jacana;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.misc.Interval;
+import org.junit.Test;
+
+import com.obomprogramador.tools.jqana.model.defaultimpl.SourceLoader;
+
+public class TestSourceLoader {
+
+    private String sourceFile = "unit-test-sources/java/abc/TesteRfc.java";
+
+    /*
+     * (non javadoc) Buffered and memory-mapped reads must give the same
+     * chars, with the original content of the file.
+     */
+    @Test
+    public void testBufferedAndMapped() throws Exception {
+        File source = new File(this.getClass().getClassLoader()
+                .getResource(sourceFile).toURI());
+        RandomAccessFile raf = new RandomAccessFile(source, "r");
+        byte[] bytes = new byte[(int) raf.length()];
+        raf.readFully(bytes);
+        raf.close();
+        String expected = new String(bytes, "UTF-8");
+
+        SourceLoader loader = new SourceLoader();
+        CharStream buffered = loader.load(source);
+        assertEquals(expected,
+                buffered.getText(Interval.of(0, buffered.size() - 1)));
+        // Reusing the same loader:
+        buffered = loader.load(source);
+        assertEquals(expected.length(), buffered.size());
+
+        loader.setMappingThreshold(0);
+        CharStream mapped = loader.load(source);
+        assertEquals(expected,
+                mapped.getText(Interval.of(0, mapped.size() - 1)));
+    }
+
+}
@@ -0,0 +1,63 @@
+package com.obomprogramador.tools.jacana;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.obomprogramador.tools.jqana.model.defaultimpl.SourceScanner;
+
+public class TestSourceScanner {
+
+    private String rootTestResources = "unit-test-sources/java";
+
+    class Collector implements SourceScanner.SourceHandler {
+        List<String> files = new ArrayList<String>();
+        List<String> packages = new ArrayList<String>();
+
+        @Override
+        public void sourceFile(String packageName, File sourceFile) {
+            files.add(packageName + ":" + sourceFile.getName());
+        }
+
+        @Override
+        public void endOfPackage(String packageName) {
+            packages.add(packageName);
+        }
+    }
+
+    @Test
+    public void testPackageNames() throws Exception {
+        File sourceDir = new File(this.getClass().getClassLoader()
+                .getResource(rootTestResources).toURI());
+        Collector collector = new Collector();
+        new SourceScanner(sourceDir).scan(collector);
+        assertTrue(collector.files.contains("def.interfaces:XMLUnmarshaller.java"));
+        assertTrue(collector.files.contains("abc:ClassA.java"));
+        // Sub packages end before their parent package:
+        assertTrue(collector.packages.indexOf("def.interfaces") < collector.packages
+                .indexOf("def"));
+    }
+
+    @Test
+    public void testIncludesAndExcludes() throws Exception {
+        File sourceDir = new File(this.getClass().getClassLoader()
+                .getResource(rootTestResources).toURI());
+        SourceScanner scanner = new SourceScanner(sourceDir);
+        scanner.setIncludes(new String[] {"def/**"});
+        scanner.setExcludes(new String[] {"**/interfaces/", "**/Test*.java"});
+        Collector collector = new Collector();
+        scanner.scan(collector);
+        assertTrue(collector.files.contains("def:Blocks.java"));
+        assertFalse(collector.files.contains("def:TestLoopLcom4.java"));
+        assertFalse(collector.files.contains("abc:ClassA.java"));
+        assertEquals(1, collector.packages.size());
+        assertEquals("def", collector.packages.get(0));
+    }
+
+}
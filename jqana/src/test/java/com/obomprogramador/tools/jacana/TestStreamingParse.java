@@ -0,0 +1,160 @@
+package com.obomprogramador.tools.jacana;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.antlr.v4.runtime.ANTLRInputStream;
+import org.junit.Test;
+
+import com.obomprogramador.tools.jqana.context.Context;
+import com.obomprogramador.tools.jqana.model.AbstractMetricParser;
+import com.obomprogramador.tools.jqana.model.Measurement;
+import com.obomprogramador.tools.jqana.model.defaultimpl.DefaultProjectProcessor;
+import com.obomprogramador.tools.jqana.model.defaultimpl.MetricValue;
+import com.obomprogramador.tools.jqana.parsers.CyclomaticComplexityParser;
+import com.obomprogramador.tools.jqana.parsers.Lcom4Parser;
+import com.obomprogramador.tools.jqana.parsers.MultiMetricParser;
+
+public class TestStreamingParse {
+
+    private String rootTestResources = "unit-test-sources/java";
+
+    private String code = "package x;\n"
+            + "public abstract class A {\n"
+            + "    private int a;\n"
+            + "    private int b, c;\n"
+            + "    int f = (a > 0 || b > 0) ? 1 : 2;\n"
+            + "    public int getA() { return a; }\n"
+            + "    void m() {\n"
+            + "        a = ((b < c) || (c > a)) ? x(b && c) : 2;\n"
+            + "        foo(new Runnable() { public void run() { if (c) { } } });\n"
+            + "        for (int i = 0; i < b; i++) { return; }\n"
+            + "        switch (a) { case 1: return; default: n(); }\n"
+            + "    }\n"
+            + "    void n() { c++; m(); }\n"
+            + "    @Override\n"
+            + "    public String toString() { return \"\" + b; }\n"
+            + "    abstract void p();\n"
+            + "    A() { this.a = 1; }\n"
+            + "}\n";
+
+    private String anonymousClasses = "package x;\n"
+            + "public class B {\n"
+            + "    Runnable r = new Runnable() { public void run() { if (a || b) { } } };\n"
+            + "    Object o = foo(new X() { void run() { } }, e && f);\n"
+            + "    void m() {\n"
+            + "        foo(new X() { void run() { if (c || d) { } } }, e && f, g ? h : i);\n"
+            + "        foo(new X() { int v = w ? 1 : 2; }, e && f);\n"
+            + "        foo(new X() { void run() { } }).bar(x && y, z ? 1 : 2);\n"
+            + "    }\n"
+            + "}\n";
+
+    /*
+     * (non javadoc) Parse listeners (without the parse tree) must give the
+     * same measurements as the tree walk.
+     */
+    @Test
+    public void testSameMeasurements() throws Exception {
+        Context context = new Context();
+        List<Measurement> expected = parse(context, code, false);
+        List<Measurement> actual = parse(context, code, true);
+        assertEquals(6, expected.get(0).getInnerMeasurements().size());
+        for (int x = 0; x < expected.size(); x++) {
+            assertSameMeasurement(expected.get(x), actual.get(x));
+        }
+    }
+
+    /*
+     * (non javadoc) The methods of anonymous classes, passed as arguments or
+     * in field initializers, uncover the expressions that follow them, as in
+     * the tree walk.
+     */
+    @Test
+    public void testAnonymousClassArguments() throws Exception {
+        Context context = new Context();
+        List<Measurement> expected = parse(context, anonymousClasses, false);
+        List<Measurement> actual = parse(context, anonymousClasses, true);
+        Measurement m = expected.get(0).getInnerMeasurements().get(2);
+        assertEquals("m", m.getName());
+        assertEquals(16, m.getMetricValues().get(0).getValue(), 0.0);
+        for (int x = 0; x < expected.size(); x++) {
+            assertSameMeasurement(expected.get(x), actual.get(x));
+        }
+    }
+
+    @Test
+    public void testStreamingProject() throws Exception {
+        Context context = new Context();
+        File sourceDir = new File(this.getClass().getClassLoader()
+                .getResource(rootTestResources).toURI());
+        File objectDir = sourceDir.getParentFile().getParentFile();
+        Measurement expected = new DefaultProjectProcessor(context).process(
+                "Teste", sourceDir, objectDir);
+        DefaultProjectProcessor dpp = new DefaultProjectProcessor(context);
+        dpp.setStreamingParse(true);
+        Measurement actual = dpp.process("Teste", sourceDir, objectDir);
+        assertTrue(dpp.getParsingStatistics().getParsedFiles() > 0);
+        assertSameMeasurement(expected, actual);
+    }
+
+    /*
+     * (non javadoc) With a threshold of one byte, all files are parsed
+     * through unbuffered streams.
+     */
+    @Test
+    public void testLargeFiles() throws Exception {
+        Context context = new Context();
+        File sourceDir = new File(this.getClass().getClassLoader()
+                .getResource(rootTestResources).toURI());
+        File objectDir = sourceDir.getParentFile().getParentFile();
+        Measurement expected = new DefaultProjectProcessor(context).process(
+                "Teste", sourceDir, objectDir);
+        DefaultProjectProcessor dpp = new DefaultProjectProcessor(context);
+        dpp.setLargeFileThreshold(1);
+        Measurement actual = dpp.process("Teste", sourceDir, objectDir);
+        assertEquals(0, dpp.getParsingStatistics().getLlFallbacks());
+        assertSameMeasurement(expected, actual);
+    }
+
+    private List<Measurement> parse(Context context, String source,
+            boolean streaming) {
+        List<AbstractMetricParser> parsers = new ArrayList<AbstractMetricParser>();
+        parsers.add(new CyclomaticComplexityParser(new Measurement(), context));
+        parsers.add(new Lcom4Parser(new Measurement(), context));
+        MultiMetricParser parser = new MultiMetricParser(parsers);
+        parser.setStreaming(streaming);
+        parser.parse(new ANTLRInputStream(source));
+        List<Measurement> measurements = new ArrayList<Measurement>();
+        for (AbstractMetricParser metricParser : parsers) {
+            measurements.add(metricParser.getMeasurement());
+        }
+        return measurements;
+    }
+
+    private void assertSameMeasurement(Measurement expected,
+            Measurement actual) {
+        assertEquals(expected.getName(), actual.getName());
+        assertEquals(expected.getMetricValues().size(), actual
+                .getMetricValues().size());
+        for (int x = 0; x < expected.getMetricValues().size(); x++) {
+            MetricValue expectedValue = expected.getMetricValues().get(x);
+            MetricValue actualValue = actual.getMetricValues().get(x);
+            assertEquals(expectedValue.getName(), actualValue.getName());
+            assertEquals(expected.getName() + ": " + expectedValue.getName(),
+                    expectedValue.getValue(), actualValue.getValue(), 0.0);
+            assertEquals(expected.getName() + ": " + expectedValue.getName(),
+                    expectedValue.isViolated(), actualValue.isViolated());
+        }
+        assertEquals(expected.getInnerMeasurements().size(), actual
+                .getInnerMeasurements().size());
+        for (int x = 0; x < expected.getInnerMeasurements().size(); x++) {
+            assertSameMeasurement(expected.getInnerMeasurements().get(x),
+                    actual.getInnerMeasurements().get(x));
+        }
+    }
+
+}
@@ -0,0 +1,81 @@
+package com.obomprogramador.tools.jacana;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.obomprogramador.tools.jqana.context.Context;
+import com.obomprogramador.tools.jqana.model.Measurement;
+import com.obomprogramador.tools.jqana.model.Measurement.MEASUREMENT_TYPE;
+import com.obomprogramador.tools.jqana.model.MeasurementConsumer;
+import com.obomprogramador.tools.jqana.model.defaultimpl.DefaultProjectProcessor;
+
+public class TestStreamingResults {
+
+    private String rootTestResources = "unit-test-sources/java";
+
+    class Collector implements MeasurementConsumer {
+        List<String> packages = new ArrayList<String>();
+        int classes;
+        int methods;
+
+        @Override
+        public void classMeasured(Measurement packageMeasurement,
+                Measurement classMeasurement) {
+            // The package is notified after its classes:
+            assertTrue(!packages.contains(packageMeasurement.getName()));
+            classes++;
+            methods += countMethods(classMeasurement);
+        }
+
+        @Override
+        public void packageMeasured(Measurement packageMeasurement) {
+            packages.add(packageMeasurement.getName());
+        }
+    }
+
+    @Test
+    public void testPackagesAreStreamed() throws Exception {
+        Context context = new Context();
+        File sourceDir = new File(this.getClass().getClassLoader()
+                .getResource(rootTestResources).toURI());
+        File objectDir = sourceDir.getParentFile().getParentFile();
+
+        DefaultProjectProcessor dpp = new DefaultProjectProcessor(context);
+        dpp.setDetailLevel(MEASUREMENT_TYPE.CLASS_MEASUREMENT);
+        Collector collector = new Collector();
+        Measurement project = dpp.process("Teste", sourceDir, objectDir,
+                collector);
+
+        assertEquals(project.getInnerMeasurements().size(),
+                collector.packages.size());
+        int classes = 0;
+        for (int x = 0; x < collector.packages.size(); x++) {
+            Measurement pm = project.getInnerMeasurements().get(x);
+            assertEquals(pm.getName(), collector.packages.get(x));
+            for (Measurement cm : pm.getInnerMeasurements()) {
+                classes++;
+                // No method detail at class level:
+                assertEquals(0, countMethods(cm));
+            }
+        }
+        assertEquals(classes, collector.classes);
+        assertEquals(0, collector.methods);
+    }
+
+    private int countMethods(Measurement classMeasurement) {
+        int methods = 0;
+        for (Measurement inner : classMeasurement.getInnerMeasurements()) {
+            if (inner.getType() == MEASUREMENT_TYPE.METHOD_MEASUREMENT) {
+                methods++;
+            }
+        }
+        return methods;
+    }
+
+}
@@ -0,0 +1,102 @@
+package com.obomprogramador.tools.jacana;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+
+import org.antlr.v4.runtime.ANTLRInputStream;
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.tree.ParseTree;
+import org.junit.Test;
+
+import com.obomprogramador.tools.jqana.antlrparser.JavaParser;
+import com.obomprogramador.tools.jqana.model.AbstractMetricParser;
+import com.obomprogramador.tools.jqana.model.defaultimpl.SourceLoader;
+import com.obomprogramador.tools.jqana.parsers.JavaParserPool;
+import com.obomprogramador.tools.jqana.parsers.ParsingStatistics;
+
+public class TestTwoStageParsing {
+
+    private String sourceFile = "unit-test-sources/java/def/Blocks.java";
+
+    /*
+     * (non javadoc) Valid code is parsed by SLL, with the same tree of the
+     * full LL parsing.
+     */
+    @Test
+    public void testSllGivesSameTree() throws Exception {
+        File source = new File(this.getClass().getClassLoader()
+                .getResource(sourceFile).toURI());
+        CharStream chars = new SourceLoader().load(source);
+        JavaParser ll = AbstractMetricParser.newJavaParser(chars);
+        String expected = ll.compilationUnit().toStringTree(ll);
+
+        chars.seek(0);
+        ParsingStatistics statistics = new ParsingStatistics();
+        JavaParser p = AbstractMetricParser.newJavaParser(chars);
+        ParseTree tree = AbstractMetricParser.parseCompilationUnit(p,
+                statistics);
+        assertEquals(expected, tree.toStringTree(p));
+        assertEquals(1, statistics.getParsedFiles());
+        assertEquals(0, statistics.getLlFallbacks());
+    }
+
+    /*
+     * (non javadoc) Code with syntax errors falls back to full LL parsing,
+     * which recovers from errors as before.
+     */
+    @Test
+    public void testFallbackOnSyntaxError() throws Exception {
+        String code = "package x; class A { void m() { int x = ; if (x) { } } }";
+        JavaParser ll = AbstractMetricParser.newJavaParser(code);
+        String expected = ll.compilationUnit().toStringTree(ll);
+
+        ParsingStatistics statistics = new ParsingStatistics();
+        JavaParser p = AbstractMetricParser.newJavaParser(code);
+        ParseTree tree = AbstractMetricParser.parseCompilationUnit(p,
+                statistics);
+        assertEquals(expected, tree.toStringTree(p));
+        assertEquals(1, statistics.getLlFallbacks());
+    }
+
+    /*
+     * (non javadoc) The pooled parser, reset between files, gives the same
+     * trees of new parsers, even after a syntax error.
+     */
+    @Test
+    public void testPooledParser() throws Exception {
+        String[] codes = {"class A { void m() { if (a && b) { } } }",
+            "class B { int x = ; }", "class C { int y; }"};
+        JavaParserPool.warmUp();
+        for (String code : codes) {
+            JavaParser fresh = AbstractMetricParser.newJavaParser(code);
+            String expected = fresh.compilationUnit().toStringTree(fresh);
+            JavaParser pooled = JavaParserPool
+                    .getParser(new ANTLRInputStream(code));
+            ParseTree tree = AbstractMetricParser.parseCompilationUnit(
+                    pooled, null);
+            assertEquals(expected, tree.toStringTree(pooled));
+        }
+    }
+
+    /*
+     * (non javadoc) After the parsing, the pooled parser does not keep the
+     * file's tokens and chars, but the parse tree is still valid.
+     */
+    @Test
+    public void testPooledParserIsReleased() throws Exception {
+        String code = "class A { void m() { if (a && b) { } } }";
+        JavaParser fresh = AbstractMetricParser.newJavaParser(code);
+        String expected = fresh.compilationUnit().toStringTree(fresh);
+        JavaParser pooled = JavaParserPool.getParser(new ANTLRInputStream(
+                code));
+        ParseTree tree = AbstractMetricParser.parseCompilationUnit(pooled,
+                null);
+        assertEquals(0, pooled.getInputStream().size());
+        assertEquals(0, pooled.getInputStream().getTokenSource()
+                .getInputStream().size());
+        assertEquals(expected, tree.toStringTree(pooled));
+        assertEquals("classA{voidm(){if(a&&b){}}}<EOF>", tree.getText());
+    }
+
+}